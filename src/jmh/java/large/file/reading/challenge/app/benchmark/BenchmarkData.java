@@ -0,0 +1,18 @@
+package large.file.reading.challenge.app.benchmark;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Location of the files generated for benchmarks, {@code target/benchmark-data} unless the
+ * {@code benchmark.data.dir} system property is set.
+ */
+public final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    public static Path directory() {
+        return Paths.get(System.getProperty("benchmark.data.dir", "target/benchmark-data"));
+    }
+}
@@ -0,0 +1,84 @@
+package large.file.reading.challenge.app.benchmark;
+
+import large.file.reading.challenge.app.aggregate.TemperatureAggregates;
+import large.file.reading.challenge.app.parser.CsvRowParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-row cost of {@link CsvRowParser}, which replaced the String based {@code getCsvRowData},
+ * with the scalar and the vectorized delimiter scanner. {@link #parseRowsPerSecond()} reports the rows parsed
+ * per second by a single core. The vectorized scanner is only built with the {@code simd} profile, so this
+ * benchmark runs with {@code mvn -Pbenchmark,simd}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CsvRowParserBenchmark {
+
+    static final int BLOCK_ROWS = 10_000;
+
+    @Param({"false", "true"})
+    public boolean vectorized;
+
+    private CsvRowParser csvRowParser;
+
+    private final TemperatureAggregates temperatureAggregates = new TemperatureAggregates();
+
+    private ByteBuffer line;
+
+    private ByteBuffer block;
+
+    @Setup
+    public void setUp() throws IOException {
+        csvRowParser = new CsvRowParser(null, vectorized);
+        if (csvRowParser.isVectorized() != vectorized) {
+            throw new IllegalStateException("The Vector API is not available, run with the simd profile");
+        }
+        line = ByteBuffer.wrap("Warszawa;2018-09-19 05:17:32.619;9.97\n".getBytes(StandardCharsets.UTF_8));
+        Path file = SyntheticCsvGenerator.generateIfMissing(BenchmarkData.directory(), BLOCK_ROWS, 20, SyntheticCsvGenerator.DEFAULT_SEED);
+        block = ByteBuffer.wrap(Files.readAllBytes(file));
+    }
+
+    @Benchmark
+    public long parseSingleLine() {
+        line.position(0);
+        return csvRowParser.parse(line, true, temperatureAggregates);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK_ROWS)
+    public long parseBlockOfLines() {
+        block.position(0);
+        return csvRowParser.parse(block, true, temperatureAggregates);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BLOCK_ROWS)
+    public long parseRowsPerSecond() {
+        block.position(0);
+        return csvRowParser.parse(block, true, temperatureAggregates);
+    }
+}
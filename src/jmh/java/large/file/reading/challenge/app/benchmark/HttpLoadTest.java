@@ -0,0 +1,218 @@
+package large.file.reading.challenge.app.benchmark;
+
+import large.file.reading.challenge.app.LargeFileReadingApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the latency percentiles and the throughput of {@code GET /city/temperature/annual/average} over HTTP
+ * with many concurrent clients, each sending its next request as soon as the previous one is answered.
+ * It compares serving on the pool of Tomcat threads with serving on virtual threads
+ * ({@code spring.threads.virtual.enabled}, which takes effect on Java 21 and later).
+ *
+ * <p>By default the application is started in-process once for every mode of {@code loadtest.modes}, on a random
+ * port, with a generated CSV file of {@code loadtest.rows} rows and {@code loadtest.cities} cities. When
+ * {@code loadtest.url} is set, the application running at that URL is measured instead, once. The queried cities
+ * are found with the city search endpoint. Other system properties: {@code loadtest.concurrency},
+ * {@code loadtest.warmup.seconds} and {@code loadtest.duration.seconds}.</p>
+ *
+ * <p>Client and server share the CPUs of the machine when the application runs in-process, so absolute numbers
+ * are lower than with separate machines. The comparison between the modes is what matters.</p>
+ */
+public final class HttpLoadTest {
+
+    private static final Pattern JSON_STRING = Pattern.compile("\"((?:[^\"\\\\]|\\\\.)*)\"");
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private HttpLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("loadtest.concurrency", 256);
+        Duration warmup = Duration.ofSeconds(Integer.getInteger("loadtest.warmup.seconds", 5));
+        Duration duration = Duration.ofSeconds(Integer.getInteger("loadtest.duration.seconds", 20));
+        String url = System.getProperty("loadtest.url");
+
+        List<Result> results = new ArrayList<>();
+        if (url != null) {
+            results.add(run("external", url, concurrency, warmup, duration));
+        } else {
+            Path file = SyntheticCsvGenerator.generateIfMissing(BenchmarkData.directory(),
+                    Long.getLong("loadtest.rows", 1_000_000), Integer.getInteger("loadtest.cities", 1000), SyntheticCsvGenerator.DEFAULT_SEED);
+            for (String mode : System.getProperty("loadtest.modes", "platform,virtual").split(",")) {
+                boolean virtual = mode.trim().equals("virtual");
+                if (virtual && Runtime.version().feature() < 21) {
+                    System.out.println("Virtual threads need Java 21, skipping mode " + mode);
+                    continue;
+                }
+                try (ConfigurableApplicationContext context = SpringApplication.run(LargeFileReadingApplication.class,
+                        "--server.port=0",
+                        "--path.to.example.csv.file=" + file,
+                        "--csv.loader.startup.async=false",
+                        "--spring.threads.virtual.enabled=" + virtual,
+                        "--logging.level.root=WARN")) {
+                    String port = context.getEnvironment().getProperty("local.server.port");
+                    results.add(run(mode.trim(), "http://localhost:" + port, concurrency, warmup, duration));
+                }
+            }
+        }
+
+        System.out.printf("%n%-10s %11s %10s %7s %12s %9s %9s %9s %9s %9s%n",
+                "mode", "concurrency", "requests", "errors", "requests/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Result result : results) {
+            System.out.println(result);
+        }
+    }
+
+    private static Result run(String mode, String url, int concurrency, Duration warmup, Duration duration) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        try {
+            List<URI> uris = findCityUris(httpClient, url);
+            System.out.printf("Measuring %s at %s with %d clients and %d cities%n", mode, url, concurrency, uris.size());
+
+            long measureFrom = System.nanoTime() + warmup.toNanos();
+            long measureTo = measureFrom + duration.toNanos();
+            List<Future<Client>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                Client client = new Client(httpClient, uris, i);
+                futures.add(clients.submit(() -> client.run(measureFrom, measureTo)));
+            }
+
+            long[] latencies = new long[0];
+            long errors = 0;
+            for (Future<Client> future : futures) {
+                Client client = future.get();
+                int length = latencies.length;
+                latencies = Arrays.copyOf(latencies, length + client.count);
+                System.arraycopy(client.latencies, 0, latencies, length, client.count);
+                errors += client.errors;
+            }
+            Arrays.sort(latencies);
+            return new Result(mode, concurrency, latencies, errors, duration);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    /**
+     * Finds the names of the cities of the generated files with the city search endpoint.
+     */
+    private static List<URI> findCityUris(HttpClient httpClient, String url) throws IOException, InterruptedException {
+        Set<String> cities = new LinkedHashSet<>();
+        for (String prefix : SyntheticCsvGenerator.POLISH_CITIES) {
+            HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(
+                    URI.create(url + "/city/temperature/cities?limit=100&prefix=" + encode(prefix))).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Matcher matcher = JSON_STRING.matcher(response.body());
+            while (matcher.find()) {
+                cities.add(matcher.group(1));
+            }
+        }
+        if (cities.isEmpty()) {
+            throw new IllegalStateException("No cities found at " + url);
+        }
+        return cities.stream()
+                .map(city -> URI.create(url + "/city/temperature/annual/average?city=" + encode(city)))
+                .toList();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A client sending one request after another, recording the latencies of the measured requests.
+     */
+    private static final class Client {
+
+        private final HttpClient httpClient;
+
+        private final List<URI> uris;
+
+        private int next;
+
+        private long[] latencies = new long[1024];
+
+        private int count;
+
+        private long errors;
+
+        private Client(HttpClient httpClient, List<URI> uris, int first) {
+            this.httpClient = httpClient;
+            this.uris = uris;
+            this.next = first;
+        }
+
+        private Client run(long measureFrom, long measureTo) throws InterruptedException {
+            while (true) {
+                HttpRequest request = HttpRequest.newBuilder(uris.get(next++ % uris.size())).build();
+                long started = System.nanoTime();
+                if (started >= measureTo) {
+                    return this;
+                }
+                boolean successful;
+                try {
+                    successful = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+                } catch (IOException e) {
+                    successful = false;
+                }
+                if (started >= measureFrom) {
+                    if (!successful) {
+                        errors++;
+                    } else {
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - started;
+                    }
+                }
+            }
+        }
+    }
+
+    private record Result(String mode, int concurrency, long[] latencies, long errors, Duration duration) {
+
+        private double percentileMillis(double percentile) {
+            if (latencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, index)] / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder line = new StringBuilder(String.format("%-10s %11d %10d %7d %12.0f", mode, concurrency,
+                    latencies.length, errors, latencies.length / (duration.toNanos() / 1e9)));
+            for (double percentile : PERCENTILES) {
+                line.append(String.format(" %9.2f", percentileMillis(percentile)));
+            }
+            return line.append(String.format(" %9.2f", percentileMillis(100))).toString();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package large.file.reading.challenge.app.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates CSV files in the {@code Warszawa;2018-09-19 05:17:32.619;9.97} format for benchmarks.
+ * The content depends only on the number of rows, the number of cities and the seed, so the same
+ * file is produced on every machine.
+ *
+ * <p>Usage: {@code SyntheticCsvGenerator <file> <rows> [cities] [seed]}</p>
+ */
+public final class SyntheticCsvGenerator {
+
+    public static final List<String> POLISH_CITIES = List.of(
+            "Warszawa", "Kraków", "Łódź", "Wrocław", "Poznań", "Gdańsk", "Szczecin", "Bydgoszcz", "Lublin", "Białystok",
+            "Katowice", "Gdynia", "Częstochowa", "Radom", "Toruń", "Rzeszów", "Kielce", "Gliwice", "Olsztyn", "Zielona Góra");
+
+    public static final long DEFAULT_SEED = 20240714L;
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2018, 1, 1);
+
+    private static final int DAYS = 6 * 365 + 1;
+
+    private SyntheticCsvGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticCsvGenerator <file> <rows> [cities] [seed]");
+            System.exit(1);
+        }
+        int cities = args.length > 2 ? Integer.parseInt(args[2]) : POLISH_CITIES.size();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SEED;
+        generate(Paths.get(args[0]), Long.parseLong(args[1]), cities, seed);
+    }
+
+    /**
+     * Returns a generated file from the given directory, generating it first if it does not exist yet.
+     *
+     * @param directory the directory of generated files
+     * @param rows      the number of rows
+     * @param cities    the number of distinct cities
+     * @param seed      the seed of the random generator
+     * @return the generated file
+     * @throws IOException if the file cannot be written
+     */
+    public static Path generateIfMissing(Path directory, long rows, int cities, long seed) throws IOException {
+        Path file = directory.resolve("rows-" + rows + "-cities-" + cities + "-seed-" + seed + ".csv");
+        if (!Files.exists(file)) {
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            generate(tempFile, rows, cities, seed);
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return file;
+    }
+
+    /**
+     * Writes a file with the given number of rows.
+     *
+     * @param file   the file to write
+     * @param rows   the number of rows
+     * @param cities the number of distinct cities
+     * @param seed   the seed of the random generator
+     * @throws IOException if the file cannot be written
+     */
+    public static void generate(Path file, long rows, int cities, long seed) throws IOException {
+        byte[][] cityNames = new byte[cities][];
+        for (int i = 0; i < cities; i++) {
+            String cityName = POLISH_CITIES.get(i % POLISH_CITIES.size()) + (i < POLISH_CITIES.size() ? "" : " " + i / POLISH_CITIES.size());
+            cityNames[i] = (cityName + ";").getBytes(StandardCharsets.UTF_8);
+        }
+        byte[][] days = new byte[DAYS][];
+        for (int i = 0; i < DAYS; i++) {
+            days[i] = (FIRST_DAY.plusDays(i) + " ").getBytes(StandardCharsets.US_ASCII);
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        byte[] line = new byte[256];
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 20)) {
+            for (long row = 0; row < rows; row++) {
+                byte[] city = cityNames[random.nextInt(cities)];
+                byte[] day = days[random.nextInt(DAYS)];
+                int millisOfDay = random.nextInt(24 * 60 * 60 * 1000);
+                int temperature = random.nextInt(-2000, 4001);
+
+                System.arraycopy(city, 0, line, 0, city.length);
+                int length = city.length;
+                System.arraycopy(day, 0, line, length, day.length);
+                length += day.length;
+                length = writeTime(line, length, millisOfDay);
+                line[length++] = ';';
+                length = writeTemperature(line, length, temperature);
+                line[length++] = '\n';
+                out.write(line, 0, length);
+            }
+        }
+    }
+
+    private static int writeTime(byte[] line, int offset, int millisOfDay) {
+        offset = writeDigits(line, offset, millisOfDay / 3_600_000, 2);
+        line[offset++] = ':';
+        offset = writeDigits(line, offset, millisOfDay / 60_000 % 60, 2);
+        line[offset++] = ':';
+        offset = writeDigits(line, offset, millisOfDay / 1000 % 60, 2);
+        line[offset++] = '.';
+        return writeDigits(line, offset, millisOfDay % 1000, 3);
+    }
+
+    private static int writeTemperature(byte[] line, int offset, int hundredths) {
+        if (hundredths < 0) {
+            line[offset++] = '-';
+            hundredths = -hundredths;
+        }
+        int integerPart = hundredths / 100;
+        offset = writeDigits(line, offset, integerPart, integerPart >= 10 ? 2 : 1);
+        line[offset++] = '.';
+        return writeDigits(line, offset, hundredths % 100, 2);
+    }
+
+    private static int writeDigits(byte[] line, int offset, int value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            line[offset + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+}
@@ -0,0 +1,71 @@
+package large.file.reading.challenge.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import large.file.reading.challenge.app.benchmark.BenchmarkData;
+import large.file.reading.challenge.app.benchmark.SyntheticCsvGenerator;
+import large.file.reading.challenge.app.cluster.ClusterPartitioning;
+import large.file.reading.challenge.app.dto.CityTemperatureResponseDTO;
+import large.file.reading.challenge.app.store.DataStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CityTemperatureService#getAnnualAverageTemperatures(String)} called from several threads
+ * at once, over the cities of a generated CSV file. Use {@code -t} to change the number of threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CityTemperatureServiceBenchmark {
+
+    @Param({"1000"})
+    private int cities;
+
+    private CityTemperatureService cityTemperatureService;
+
+    private String[] cityNames;
+
+    @State(Scope.Thread)
+    public static class QueryState {
+
+        private int next;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        Path file = SyntheticCsvGenerator.generateIfMissing(BenchmarkData.directory(), 1_000_000, cities, SyntheticCsvGenerator.DEFAULT_SEED);
+        DataStore dataStore = new DataStore();
+        LoadProgress loadProgress = new LoadProgress();
+        CsvFileDataLoaderService csvFileDataLoaderService = new CsvFileDataLoaderService(dataStore, loadProgress, new ClusterPartitioning());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", file.toString());
+        csvFileDataLoaderService.init();
+
+        cityTemperatureService = new CityTemperatureService(dataStore, loadProgress, new ObjectMapper());
+        cityNames = dataStore.getAllStoredCities().sorted().toArray(String[]::new);
+    }
+
+    @Benchmark
+    public CityTemperatureResponseDTO getAnnualAverageTemperatures(QueryState queryState) {
+        String city = cityNames[queryState.next++ % cityNames.length];
+        return cityTemperatureService.getAnnualAverageTemperatures(city);
+    }
+}
@@ -0,0 +1,61 @@
+package large.file.reading.challenge.app.service;
+
+import large.file.reading.challenge.app.benchmark.BenchmarkData;
+import large.file.reading.challenge.app.benchmark.SyntheticCsvGenerator;
+import large.file.reading.challenge.app.cluster.ClusterPartitioning;
+import large.file.reading.challenge.app.store.DataStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full load of generated CSV files: parsing, grouping the temperatures by city and year,
+ * and publishing the annual averages. The files are generated once into {@link BenchmarkData#directory()}.
+ * The 100M rows file takes about 4 GB.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class CsvFileDataLoaderBenchmark {
+
+    @Param({"1000000", "10000000", "100000000"})
+    private long rows;
+
+    @Param({"1000"})
+    private int cities;
+
+    @Param({"false", "true"})
+    private boolean parallel;
+
+    private CsvFileDataLoaderService csvFileDataLoaderService;
+
+    @Setup
+    public void setUp() throws IOException {
+        Path file = SyntheticCsvGenerator.generateIfMissing(BenchmarkData.directory(), rows, cities, SyntheticCsvGenerator.DEFAULT_SEED);
+        csvFileDataLoaderService = new CsvFileDataLoaderService(new DataStore(), new LoadProgress(), new ClusterPartitioning());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", file.toString());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingEnabled", parallel);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingChunkSize", 256L * 1024 * 1024);
+    }
+
+    @Benchmark
+    public void loadCsvData() {
+        csvFileDataLoaderService.loadCsvData();
+    }
+}
@@ -0,0 +1,333 @@
+package large.file.reading.challenge.app.aggregate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * AggregateSpill bounds the memory used by {@link TemperatureAggregates} while loading. All aggregates created with
+ * the same spill share its memory budget. When a (city, year) pair added to any of them takes the total over
+ * the budget, those aggregates are written to a temporary run file sorted by city and year, and emptied.
+ * At the end, {@link #forEachCity} merges the runs with a k-way merge, so only the statistics of one city
+ * per run are held in memory at a time.
+ *
+ * <p>The memory used by a (city, year) pair is estimated as {@link #ESTIMATED_BYTES_PER_KEY}, which assumes readings
+ * in every month. Spilling is thread-safe, so aggregates filled by separate threads may share a spill.
+ * Run files are deleted by {@link #close()}.</p>
+ */
+public class AggregateSpill implements Closeable {
+
+    /**
+     * The estimated size of a (city, year) pair: an accumulator with 12 monthly accumulators and its map entry.
+     */
+    public static final int ESTIMATED_BYTES_PER_KEY = 768;
+
+    private static final int MAX_MERGED_RUNS = 64;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Comparator<RunReader> BY_CITY = Comparator.comparing(RunReader::getCity);
+
+    private final long maxKeys;
+
+    private final Path directory;
+
+    private final AtomicLong keys = new AtomicLong();
+
+    private final AtomicLong spilledBytes = new AtomicLong();
+
+    private final AtomicInteger spilledRuns = new AtomicInteger();
+
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * @param memoryBudget the memory budget of all aggregates in bytes
+     * @param directory    the directory of the run files
+     */
+    public AggregateSpill(long memoryBudget, Path directory) {
+        this.maxKeys = Math.max(1, memoryBudget / ESTIMATED_BYTES_PER_KEY);
+        this.directory = directory;
+    }
+
+    /**
+     * Counts new (city, year) pairs against the budget.
+     *
+     * @return {@code true} if the budget is exceeded
+     */
+    boolean reserve(int newKeys) {
+        return keys.addAndGet(newKeys) > maxKeys;
+    }
+
+    void release(int releasedKeys) {
+        keys.addAndGet(-releasedKeys);
+    }
+
+    /**
+     * Writes the aggregates to a new run file and empties them.
+     *
+     * @throws UncheckedIOException if the run file cannot be written
+     */
+    void spill(TemperatureAggregates aggregates) {
+        try {
+            Path run = Files.createTempFile(directory, "aggregates-", ".run");
+            addRun(run);
+            try (RunWriter writer = new RunWriter(run)) {
+                String[] cities = aggregates.getCities().keySet().toArray(String[]::new);
+                Arrays.sort(cities);
+                for (String city : cities) {
+                    writer.write(city, aggregates.getCities().get(city));
+                }
+            }
+            spilledRuns.incrementAndGet();
+            spilledBytes.addAndGet(Files.size(run));
+            aggregates.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Spilling aggregates to " + directory + " failed", e);
+        }
+    }
+
+    private void addRun(Path run) {
+        synchronized (runs) {
+            runs.add(run);
+        }
+    }
+
+    /**
+     * Passes the statistics of every city to the action, merging the runs spilled so far with the remaining
+     * aggregates. If nothing was spilled, the remaining aggregates are passed as they are. Otherwise they are
+     * spilled as well and the cities are passed sorted by {@link String#compareTo}, each with a new map of its years.
+     * No aggregates may be added while merging.
+     *
+     * @param remainder the aggregates which have not been spilled
+     * @param action    the action receiving every city with its accumulators keyed by year
+     * @throws UncheckedIOException if a run file cannot be written or read
+     */
+    public void forEachCity(TemperatureAggregates remainder, BiConsumer<String, Map<String, TemperatureAccumulator>> action) {
+        synchronized (runs) {
+            if (runs.isEmpty()) {
+                remainder.getCities().forEach(action);
+                return;
+            }
+            if (!remainder.getCities().isEmpty()) {
+                spill(remainder);
+            }
+            try {
+                while (runs.size() > MAX_MERGED_RUNS) {
+                    mergeOldestRuns();
+                }
+                merge(runs, action);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Merging aggregates spilled to " + directory + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Merges the oldest runs into a new run, so the number of files open at once stays bounded.
+     */
+    private void mergeOldestRuns() throws IOException {
+        List<Path> merged = new ArrayList<>(runs.subList(0, MAX_MERGED_RUNS));
+        Path run = Files.createTempFile(directory, "aggregates-", ".run");
+        runs.add(run);
+        try (RunWriter writer = new RunWriter(run)) {
+            merge(merged, (city, annualData) -> {
+                try {
+                    writer.write(city, annualData);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (Path mergedRun : merged) {
+            Files.delete(mergedRun);
+        }
+        runs.removeAll(merged);
+    }
+
+    private static void merge(List<Path> runs, BiConsumer<String, Map<String, TemperatureAccumulator>> action) throws IOException {
+        PriorityQueue<RunReader> readers = new PriorityQueue<>(runs.size(), BY_CITY);
+        try {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                if (reader.getCity() != null) {
+                    readers.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            while (!readers.isEmpty()) {
+                String city = readers.peek().getCity();
+                Map<String, TemperatureAccumulator> annualData = new HashMap<>();
+                while (!readers.isEmpty() && readers.peek().getCity().equals(city)) {
+                    RunReader reader = readers.poll();
+                    reader.readCity(annualData);
+                    if (reader.getCity() != null) {
+                        readers.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+                action.accept(city, annualData);
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * @return the number of times aggregates were spilled
+     */
+    public int getSpilledRuns() {
+        return spilledRuns.get();
+    }
+
+    /**
+     * @return the number of bytes written by spilling aggregates, excluding the runs merged from other runs
+     */
+    public long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    /**
+     * Deletes the run files.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (runs) {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+            runs.clear();
+        }
+    }
+
+    /**
+     * Writes the cities of a run. Every city is preceded by a {@code true} marker and the run ends with a {@code false}
+     * marker. A city is stored as its name, the number of its years and then every year followed by its statistics,
+     * a bit mask of the months with readings and the statistics of those months.
+     */
+    private static final class RunWriter implements Closeable {
+
+        private final DataOutputStream output;
+
+        private RunWriter(Path run) throws IOException {
+            output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE));
+        }
+
+        private void write(String city, Map<String, TemperatureAccumulator> annualData) throws IOException {
+            String[] years = annualData.keySet().toArray(String[]::new);
+            Arrays.sort(years);
+            output.writeBoolean(true);
+            output.writeUTF(city);
+            output.writeInt(years.length);
+            for (String year : years) {
+                TemperatureAccumulator accumulator = annualData.get(year);
+                output.writeUTF(year);
+                writeStatistics(accumulator);
+                int months = 0;
+                for (int month = 1; month <= 12; month++) {
+                    if (accumulator.getMonth(month) != null) {
+                        months |= 1 << month;
+                    }
+                }
+                output.writeShort(months);
+                for (int month = 1; month <= 12; month++) {
+                    if ((months & 1 << month) != 0) {
+                        writeStatistics(accumulator.getMonth(month));
+                    }
+                }
+            }
+        }
+
+        private void writeStatistics(TemperatureAccumulator accumulator) throws IOException {
+            output.writeLong(accumulator.getCount());
+            output.writeLong(accumulator.getSum());
+            output.writeLong(accumulator.getSumOfSquares());
+            output.writeInt(accumulator.getMin());
+            output.writeInt(accumulator.getMax());
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.writeBoolean(false);
+            output.close();
+        }
+    }
+
+    /**
+     * Reads the cities of a run one by one.
+     */
+    private static final class RunReader implements Closeable {
+
+        private final DataInputStream input;
+
+        private String city;
+
+        private RunReader(Path run) throws IOException {
+            input = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+            nextCity();
+        }
+
+        /**
+         * @return the city to be read next, or {@code null} at the end of the run
+         */
+        private String getCity() {
+            return city;
+        }
+
+        /**
+         * Merges the years of the current city into the map and moves on to the next city.
+         */
+        private void readCity(Map<String, TemperatureAccumulator> annualData) throws IOException {
+            int years = input.readInt();
+            for (int i = 0; i < years; i++) {
+                String year = input.readUTF();
+                TemperatureAccumulator accumulator = readStatistics();
+                int months = input.readShort();
+                TemperatureAccumulator[] monthAccumulators = new TemperatureAccumulator[12];
+                for (int month = 1; month <= 12; month++) {
+                    if ((months & 1 << month) != 0) {
+                        monthAccumulators[month - 1] = readStatistics();
+                    }
+                }
+                annualData.merge(year, new TemperatureAccumulator(accumulator.getCount(), accumulator.getSum(),
+                        accumulator.getSumOfSquares(), accumulator.getMin(), accumulator.getMax(), monthAccumulators),
+                        TemperatureAccumulator::combine);
+            }
+            nextCity();
+        }
+
+        private TemperatureAccumulator readStatistics() throws IOException {
+            return new TemperatureAccumulator(input.readLong(), input.readLong(), input.readLong(), input.readInt(), input.readInt());
+        }
+
+        private void nextCity() throws IOException {
+            city = input.readBoolean() ? input.readUTF() : null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
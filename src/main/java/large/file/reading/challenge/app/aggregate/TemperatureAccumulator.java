@@ -0,0 +1,138 @@
+package large.file.reading.challenge.app.aggregate;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * TemperatureAccumulator keeps running statistics of the temperatures measured in a single city
+ * during a single year. Temperatures are stored in hundredths of a degree, so the sum stays exact
+ * no matter how many readings are added and the memory used does not depend on their number.
+ *
+ * <p>Readings added together with their month are also accumulated in a nested accumulator per month,
+ * so statistics can be reported with monthly granularity.</p>
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TemperatureAccumulator {
+
+    private long count;
+
+    private long sum;
+
+    private long sumOfSquares;
+
+    private int min = Integer.MAX_VALUE;
+
+    private int max = Integer.MIN_VALUE;
+
+    @Getter(AccessLevel.NONE)
+    private TemperatureAccumulator[] months;
+
+    /**
+     * Creates an accumulator without monthly statistics.
+     *
+     * @param count        the number of readings
+     * @param sum          the sum of the readings in hundredths of a degree
+     * @param sumOfSquares the sum of the squared readings in hundredths of a degree
+     * @param min          the lowest reading in hundredths of a degree
+     * @param max          the highest reading in hundredths of a degree
+     */
+    public TemperatureAccumulator(long count, long sum, long sumOfSquares, int min, int max) {
+        this(count, sum, sumOfSquares, min, max, null);
+    }
+
+    /**
+     * Adds a single temperature reading expressed in hundredths of a degree.
+     *
+     * @param temperature the temperature in hundredths of a degree
+     */
+    public void addHundredths(int temperature) {
+        count++;
+        sum += temperature;
+        sumOfSquares += (long) temperature * temperature;
+        min = Math.min(min, temperature);
+        max = Math.max(max, temperature);
+    }
+
+    /**
+     * Adds a single temperature reading expressed in hundredths of a degree to this accumulator
+     * and to the accumulator of its month.
+     *
+     * @param month       the month of the reading, from 1 to 12
+     * @param temperature the temperature in hundredths of a degree
+     */
+    public void addHundredths(int month, int temperature) {
+        addHundredths(temperature);
+        getOrCreateMonth(month).addHundredths(temperature);
+    }
+
+    /**
+     * Merges the statistics of another accumulator, including its monthly statistics, into this one.
+     *
+     * @param other the accumulator to merge
+     * @return this accumulator
+     */
+    public TemperatureAccumulator combine(TemperatureAccumulator other) {
+        count += other.count;
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        if (other.months != null) {
+            for (int month = 1; month <= 12; month++) {
+                TemperatureAccumulator otherMonth = other.getMonth(month);
+                if (otherMonth != null) {
+                    getOrCreateMonth(month).combine(otherMonth);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @param month the month, from 1 to 12
+     * @return the statistics of the month, or {@code null} if no reading was added for it
+     */
+    public TemperatureAccumulator getMonth(int month) {
+        return months == null ? null : months[month - 1];
+    }
+
+    private TemperatureAccumulator getOrCreateMonth(int month) {
+        if (months == null) {
+            months = new TemperatureAccumulator[12];
+        }
+        TemperatureAccumulator accumulator = months[month - 1];
+        if (accumulator == null) {
+            accumulator = new TemperatureAccumulator();
+            months[month - 1] = accumulator;
+        }
+        return accumulator;
+    }
+
+    /**
+     * Calculates the exact average temperature rounded half up to 2 decimal places,
+     * see {@link TemperatureStatistic#averageOfHundredths(long, long)}.
+     *
+     * @return the average temperature in degrees, or {@code 0.0} if no readings were added
+     */
+    public double getAverageTemperature() {
+        return count == 0 ? 0.0 : TemperatureStatistic.averageOfHundredths(count, sum);
+    }
+
+    /**
+     * @return the lowest temperature in degrees
+     */
+    public double getMinTemperature() {
+        return min / 100.0;
+    }
+
+    /**
+     * @return the highest temperature in degrees
+     */
+    public double getMaxTemperature() {
+        return max / 100.0;
+    }
+}
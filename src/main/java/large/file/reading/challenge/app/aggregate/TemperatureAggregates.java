@@ -0,0 +1,129 @@
+package large.file.reading.challenge.app.aggregate;
+
+import large.file.reading.challenge.app.parser.CsvRowParser;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TemperatureAggregates holds a {@link TemperatureAccumulator} for every (city, year) pair seen
+ * while parsing. It receives rows directly from {@link CsvRowParser}, so no per-row objects are
+ * created, and partial aggregates built by separate threads can be merged with {@link #combine}.
+ *
+ * <p>Aggregates created with an {@link AggregateSpill} count their (city, year) pairs against its memory budget
+ * and are spilled to disk, which empties them, whenever the budget is exceeded.</p>
+ *
+ * <p>The class is not thread-safe.</p>
+ */
+public class TemperatureAggregates implements CsvRowParser.RowHandler {
+
+    private final Map<String, Map<String, TemperatureAccumulator>> cities = new HashMap<>();
+
+    private final AggregateSpill spill;
+
+    private int keys;
+
+    private int reservedKeys;
+
+    /**
+     * Creates aggregates which are only limited by the heap.
+     */
+    public TemperatureAggregates() {
+        this(null);
+    }
+
+    /**
+     * @param spill the spill whose memory budget the aggregates count against, or {@code null} for no budget
+     */
+    public TemperatureAggregates(AggregateSpill spill) {
+        this.spill = spill;
+    }
+
+    @Override
+    public void onRow(String city, String year, int month, int temperature) {
+        getOrCreate(city, year).addHundredths(month, temperature);
+        if (keys != reservedKeys) {
+            reserve();
+        }
+    }
+
+    /**
+     * Merges the statistics of a single (city, year) pair into these aggregates.
+     *
+     * @param city        the city name
+     * @param year        the year
+     * @param accumulator the statistics to merge
+     */
+    public void add(String city, String year, TemperatureAccumulator accumulator) {
+        getOrCreate(city, year).combine(accumulator);
+        if (keys != reservedKeys) {
+            reserve();
+        }
+    }
+
+    /**
+     * Merges another set of aggregates into this one. If both count against the same {@link AggregateSpill},
+     * the other aggregates are moved rather than copied and end up empty.
+     *
+     * @param other the aggregates to merge
+     * @return these aggregates
+     */
+    public TemperatureAggregates combine(TemperatureAggregates other) {
+        boolean move = spill != null && other.spill == spill;
+        if (move) {
+            other.release();
+        }
+        other.cities.forEach((city, annualData) -> annualData.forEach((year, accumulator) -> add(city, year, accumulator)));
+        if (move) {
+            other.cities.clear();
+        }
+        return this;
+    }
+
+    private TemperatureAccumulator getOrCreate(String city, String year) {
+        Map<String, TemperatureAccumulator> annualData = cities.computeIfAbsent(city, key -> new HashMap<>());
+        TemperatureAccumulator accumulator = annualData.get(year);
+        if (accumulator == null) {
+            accumulator = new TemperatureAccumulator();
+            annualData.put(year, accumulator);
+            keys++;
+        }
+        return accumulator;
+    }
+
+    private void reserve() {
+        if (spill == null) {
+            reservedKeys = keys;
+            return;
+        }
+        boolean overBudget = spill.reserve(keys - reservedKeys);
+        reservedKeys = keys;
+        if (overBudget) {
+            spill.spill(this);
+        }
+    }
+
+    private void release() {
+        if (spill != null) {
+            spill.release(reservedKeys);
+        }
+        keys = 0;
+        reservedKeys = 0;
+    }
+
+    /**
+     * Removes all aggregates after they have been spilled.
+     */
+    void clear() {
+        release();
+        cities.clear();
+    }
+
+    /**
+     * @return a read-only view of the accumulators, keyed by city and then by year
+     */
+    public Map<String, Map<String, TemperatureAccumulator>> getCities() {
+        return Collections.unmodifiableMap(cities);
+    }
+}
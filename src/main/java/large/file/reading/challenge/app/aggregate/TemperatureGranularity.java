@@ -0,0 +1,28 @@
+package large.file.reading.challenge.app.aggregate;
+
+import java.util.Locale;
+
+/**
+ * TemperatureGranularity is the period a single value of a {@link TemperatureStatistic} is calculated for.
+ */
+public enum TemperatureGranularity {
+
+    YEAR,
+    MONTH;
+
+    /**
+     * Finds a granularity by its name, ignoring case.
+     *
+     * @param name the name of the granularity
+     * @return the granularity
+     * @throws IllegalArgumentException if there is no granularity with the given name
+     */
+    public static TemperatureGranularity fromName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown granularity " + name + ", expected one of "
+                    + TemperatureStatistic.names(values()), e);
+        }
+    }
+}
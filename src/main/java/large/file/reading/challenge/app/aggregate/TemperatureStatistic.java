@@ -0,0 +1,84 @@
+package large.file.reading.challenge.app.aggregate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * TemperatureStatistic is a statistic that can be calculated from the running sums kept by
+ * {@link TemperatureAccumulator}, without looking at the individual readings again.
+ */
+public enum TemperatureStatistic {
+
+    COUNT,
+    SUM,
+    MIN,
+    MAX,
+    AVERAGE,
+    VARIANCE;
+
+    /**
+     * Calculates the statistic from running sums of readings in hundredths of a degree.
+     *
+     * @param count        the number of readings, greater than 0
+     * @param sum          the sum of the readings
+     * @param sumOfSquares the sum of the squared readings
+     * @param min          the lowest reading
+     * @param max          the highest reading
+     * @return the statistic in degrees (squared degrees for the variance) rounded to 2 decimal places,
+     * or the number of readings for {@link #COUNT}
+     */
+    public double calculate(long count, long sum, long sumOfSquares, int min, int max) {
+        double value = switch (this) {
+            case COUNT -> count;
+            case SUM -> sum / 100.0;
+            case MIN -> min / 100.0;
+            case MAX -> max / 100.0;
+            case AVERAGE -> averageOfHundredths(count, sum);
+            case VARIANCE -> {
+                double mean = (double) sum / count;
+                yield Math.max(0.0, sumOfSquares / (double) count - mean * mean) / 10000.0;
+            }
+        };
+        return BigDecimal.valueOf(value)
+                .setScale(2, RoundingMode.HALF_UP)
+                .doubleValue();
+    }
+
+    /**
+     * Calculates the exact average of readings in hundredths of a degree rounded {@link RoundingMode#HALF_UP HALF_UP}
+     * to 2 decimal places with integer arithmetic. Dividing the sum as a double first would make averages ending
+     * in exactly 5 thousandths, like 10.175, round down when the quotient lands just below them.
+     *
+     * @param count the number of readings, greater than 0
+     * @param sum   the sum of the readings
+     * @return the average in degrees
+     */
+    public static double averageOfHundredths(long count, long sum) {
+        long hundredths = (2 * Math.abs(sum) + count) / (2 * count);
+        return (sum < 0 ? -hundredths : hundredths) / 100.0;
+    }
+
+    /**
+     * Finds a statistic by its name, ignoring case.
+     *
+     * @param name the name of the statistic
+     * @return the statistic
+     * @throws IllegalArgumentException if there is no statistic with the given name
+     */
+    public static TemperatureStatistic fromName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown statistic " + name + ", expected one of " + names(values()), e);
+        }
+    }
+
+    static String names(Enum<?>[] values) {
+        return Arrays.stream(values)
+                .map(value -> value.name().toLowerCase(Locale.ROOT))
+                .collect(Collectors.joining(", "));
+    }
+}
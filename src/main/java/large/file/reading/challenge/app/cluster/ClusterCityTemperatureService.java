@@ -0,0 +1,287 @@
+package large.file.reading.challenge.app.cluster;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import large.file.reading.challenge.app.dto.DataExportDTO;
+import large.file.reading.challenge.app.exception.PeerUnavailableException;
+import large.file.reading.challenge.app.service.CityTemperatureService;
+import large.file.reading.challenge.app.service.DataExportFormat;
+import large.file.reading.challenge.app.store.CityNameIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * ClusterCityTemperatureService answers the queries about several cities in partitioned mode by scatter-gather:
+ * the query is split by the peers owning the cities, sent to all of them at once and the answers are combined.
+ * The export of all cities joins the exports of all peers.
+ * Without partitioning, or for queries forwarded by a peer, it answers from the local data only.
+ */
+@Service
+@RequiredArgsConstructor
+public class ClusterCityTemperatureService {
+
+    private static final Comparator<String> BY_NORMALIZED_NAME =
+            Comparator.comparing(CityNameIndex::normalize).thenComparing(Comparator.naturalOrder());
+
+    private static final int EXPORT_BUFFER_SIZE = 1 << 16;
+
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    private final CityTemperatureService cityTemperatureService;
+
+    private final ClusterPartitioning clusterPartitioning;
+
+    private final PeerClient peerClient;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Finds cities whose names start with a prefix on all peers, see {@link CityTemperatureService#findCities}.
+     *
+     * @param prefix    the prefix, all cities match an empty prefix
+     * @param limit     the maximum number of cities
+     * @param forwarded whether the query was forwarded by a peer
+     * @return the names of the matching cities in alphabetical order of their normalized names
+     * @throws PeerUnavailableException if a peer does not answer
+     */
+    public List<String> findCities(String prefix, int limit, boolean forwarded) {
+        List<String> localCities = cityTemperatureService.findCities(prefix, limit);
+        if (!clusterPartitioning.isEnabled() || forwarded) {
+            return localCities;
+        }
+
+        String pathAndQuery = "/city/temperature/cities?prefix=" + URLEncoder.encode(prefix == null ? "" : prefix, StandardCharsets.UTF_8)
+                + "&limit=" + limit;
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> responses = new LinkedHashMap<>();
+        for (String peer : clusterPartitioning.getPeers()) {
+            if (!peer.equals(clusterPartitioning.getSelf())) {
+                responses.put(peer, peerClient.get(peer, pathAndQuery, Map.of()));
+            }
+        }
+
+        List<String> cities = new ArrayList<>(localCities);
+        responses.forEach((peer, response) -> cities.addAll(readBody(peer, response, new TypeReference<List<String>>() {
+        })));
+        cities.sort(BY_NORMALIZED_NAME);
+        return cities.size() > limit ? List.copyOf(cities.subList(0, limit)) : cities;
+    }
+
+    /**
+     * Retrieves the annual average temperatures of several cities from the peers owning them, see
+     * {@link CityTemperatureService#streamAnnualAverageTemperatures}. The answers of all peers are gathered
+     * before the response is written. Cities whose owner does not answer get an entry with an {@code error}.
+     *
+     * @param cities    the names of the cities
+     * @param forwarded whether the query was forwarded by a peer
+     * @return a {@link StreamingResponseBody} writing the JSON array
+     */
+    public StreamingResponseBody streamAnnualAverageTemperatures(List<String> cities, boolean forwarded) {
+        if (!clusterPartitioning.isEnabled() || forwarded) {
+            return cityTemperatureService.streamAnnualAverageTemperatures(cities);
+        }
+        Set<String> uniqueCities = cityTemperatureService.validateBatch(cities);
+
+        Map<String, List<String>> citiesByOwner = new LinkedHashMap<>();
+        for (String city : uniqueCities) {
+            String owner = city == null || city.isBlank() ? clusterPartitioning.getSelf() : clusterPartitioning.getOwner(city);
+            citiesByOwner.computeIfAbsent(owner, key -> new ArrayList<>()).add(city);
+        }
+
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> responses = new LinkedHashMap<>();
+        citiesByOwner.forEach((owner, ownedCities) -> {
+            if (!owner.equals(clusterPartitioning.getSelf())) {
+                responses.put(owner, peerClient.postJson(owner, "/city/temperature/annual/average/batch", toJson(ownedCities)));
+            }
+        });
+
+        Map<String, JsonNode> entries = new HashMap<>();
+        List<String> localCities = citiesByOwner.get(clusterPartitioning.getSelf());
+        if (localCities != null) {
+            collectEntries(localCities, readLocalBatch(localCities), entries);
+        }
+        responses.forEach((owner, response) -> {
+            List<String> ownedCities = citiesByOwner.get(owner);
+            try {
+                collectEntries(ownedCities, readBody(owner, response, new TypeReference<List<JsonNode>>() {
+                }), entries);
+            } catch (PeerUnavailableException e) {
+                ownedCities.forEach(city -> entries.put(city, errorEntry(city, e.getMessage())));
+            }
+        });
+
+        return outputStream -> {
+            outputStream.write('[');
+            boolean first = true;
+            for (String city : uniqueCities) {
+                if (!first) {
+                    outputStream.write(',');
+                }
+                first = false;
+                outputStream.write(objectMapper.writeValueAsBytes(entries.get(city)));
+            }
+            outputStream.write(']');
+        };
+    }
+
+    /**
+     * Exports the annual average temperatures of the cities of all peers, see
+     * {@link CityTemperatureService#exportAnnualAverageTemperatures}. The exports of all peers are requested at
+     * once and their starts are read before the response is sent, so a peer which does not answer fails the
+     * export with {@code 502} instead of leaving it incomplete. Then the cities of this instance and of every
+     * peer are written in turn, each peer's read as it arrives. The ETag joins the ETags of all peers.
+     *
+     * @param format    the name of a {@link DataExportFormat}, case-insensitive
+     * @param forwarded whether the query was forwarded by a peer
+     * @return a {@link DataExportDTO} with the content type, the ETag and the body writing the export
+     * @throws PeerUnavailableException if a peer does not answer
+     */
+    public DataExportDTO exportAnnualAverageTemperatures(String format, boolean forwarded) {
+        if (!clusterPartitioning.isEnabled() || forwarded) {
+            return cityTemperatureService.exportAnnualAverageTemperatures(format);
+        }
+        DataExportDTO localExport = cityTemperatureService.exportCityAnnualAverageTemperatures(format);
+        DataExportFormat exportFormat = DataExportFormat.fromName(format);
+
+        String pathAndQuery = "/city/temperature/export?format=" + URLEncoder.encode(format, StandardCharsets.UTF_8);
+        Map<String, CompletableFuture<HttpResponse<InputStream>>> responses = new LinkedHashMap<>();
+        for (String peer : clusterPartitioning.getPeers()) {
+            if (!peer.equals(clusterPartitioning.getSelf())) {
+                responses.put(peer, peerClient.getStream(peer, pathAndQuery));
+            }
+        }
+
+        Map<String, InputStream> peerExports = new LinkedHashMap<>();
+        List<String> eTags = new ArrayList<>();
+        long version = localExport.getVersion();
+        try {
+            for (String peer : clusterPartitioning.getPeers()) {
+                if (peer.equals(clusterPartitioning.getSelf())) {
+                    eTags.add(localExport.getETag());
+                    continue;
+                }
+                HttpResponse<InputStream> answer = PeerClient.await(peer, responses.get(peer));
+                peerExports.put(peer, answer.body());
+                if (answer.statusCode() != 200) {
+                    throw new PeerUnavailableException("Peer " + peer + " answered with status " + answer.statusCode()
+                            + ": " + new String(answer.body().readNBytes(MAX_ERROR_LENGTH), StandardCharsets.UTF_8));
+                }
+                eTags.add(answer.headers().firstValue("ETag").orElse(""));
+                version += exportFormat.readStart(answer.body());
+            }
+        } catch (IOException e) {
+            closeAll(responses);
+            throw new PeerUnavailableException("Reading the export of a peer failed: " + e);
+        } catch (RuntimeException e) {
+            closeAll(responses);
+            throw e;
+        }
+
+        long clusterVersion = version;
+        return new DataExportDTO(localExport.getMediaType(), joinETags(eTags), clusterVersion, outputStream -> {
+            try {
+                OutputStream bufferedOutputStream = new BufferedOutputStream(outputStream, EXPORT_BUFFER_SIZE);
+                exportFormat.writeStart(clusterVersion, bufferedOutputStream);
+                localExport.getBody().writeTo(bufferedOutputStream);
+                for (InputStream peerExport : peerExports.values()) {
+                    exportFormat.transferCities(peerExport, bufferedOutputStream);
+                }
+                exportFormat.writeEnd(bufferedOutputStream);
+                bufferedOutputStream.flush();
+            } finally {
+                peerExports.values().forEach(ClusterCityTemperatureService::closeQuietly);
+            }
+        });
+    }
+
+    /**
+     * Joins the ETags of the exports of all peers into one, which changes whenever any of them does.
+     */
+    private static String joinETags(List<String> eTags) {
+        return eTags.stream()
+                .map(eTag -> eTag.replace("\"", ""))
+                .collect(Collectors.joining("+", "\"", "\""));
+    }
+
+    private static void closeAll(Map<String, CompletableFuture<HttpResponse<InputStream>>> responses) {
+        responses.values().forEach(response -> response.thenAccept(answer -> closeQuietly(answer.body())));
+    }
+
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            // nothing more can be done about it
+        }
+    }
+
+    private List<JsonNode> readLocalBatch(List<String> cities) {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try {
+            cityTemperatureService.streamAnnualAverageTemperatures(cities).writeTo(json);
+            return objectMapper.readValue(json.toByteArray(), new TypeReference<>() {
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException("Serializing the annual average temperatures failed", e);
+        }
+    }
+
+    private void collectEntries(List<String> cities, List<JsonNode> answers, Map<String, JsonNode> entries) {
+        for (int i = 0; i < cities.size(); i++) {
+            String city = cities.get(i);
+            entries.put(city, i < answers.size() ? answers.get(i) : errorEntry(city, "Data for city " + city + " was not found"));
+        }
+    }
+
+    private JsonNode errorEntry(String city, String error) {
+        Map<String, String> entry = new LinkedHashMap<>();
+        entry.put("city", city);
+        entry.put("error", error);
+        return objectMapper.valueToTree(entry);
+    }
+
+    private byte[] toJson(List<String> cities) {
+        try {
+            return objectMapper.writeValueAsBytes(cities);
+        } catch (IOException e) {
+            throw new IllegalStateException("Serializing the cities failed", e);
+        }
+    }
+
+    /**
+     * Waits for the answer of a peer and reads its JSON body.
+     *
+     * @throws PeerUnavailableException if the peer does not answer with {@code 200 OK}
+     */
+    private <T> T readBody(String peer, CompletableFuture<HttpResponse<byte[]>> response, TypeReference<T> type) {
+        HttpResponse<byte[]> answer = PeerClient.await(peer, response);
+        if (answer.statusCode() != 200) {
+            throw new PeerUnavailableException("Peer " + peer + " answered with status " + answer.statusCode()
+                    + ": " + new String(answer.body(), StandardCharsets.UTF_8));
+        }
+        try {
+            return objectMapper.readValue(answer.body(), type);
+        } catch (IOException e) {
+            throw new PeerUnavailableException("Peer " + peer + " sent an invalid answer: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package large.file.reading.challenge.app.cluster;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ClusterPartitioning holds the static configuration of a cluster of instances which split the cities between them.
+ * When {@code cluster.peers} lists the base URLs of all instances, e.g. {@code http://localhost:8081,http://localhost:8082},
+ * and {@code cluster.self} names this instance among them, every instance loads only the cities it owns according
+ * to a {@link PartitionRing} and passes queries about other cities to their owners. Without peers every instance
+ * loads and answers for all cities.
+ *
+ * <p>All instances must be configured with the same peers in the same order.</p>
+ */
+@Component
+@Slf4j
+public class ClusterPartitioning {
+
+    @Value("${cluster.peers:}")
+    private String peers = "";
+
+    @Value("${cluster.self:}")
+    private String self = "";
+
+    @Value("${cluster.virtual.nodes:128}")
+    private int virtualNodes = 128;
+
+    private PartitionRing ring;
+
+    /**
+     * Builds the ring of the configured peers.
+     *
+     * @throws IllegalStateException if peers are configured but {@code cluster.self} is not one of them
+     */
+    @PostConstruct
+    public void init() {
+        List<String> peerUrls = Arrays.stream(peers.split(","))
+                .map(ClusterPartitioning::normalizeUrl)
+                .filter(peer -> !peer.isEmpty())
+                .toList();
+        if (peerUrls.isEmpty()) {
+            ring = null;
+            return;
+        }
+        self = normalizeUrl(self);
+        if (!peerUrls.contains(self)) {
+            throw new IllegalStateException("cluster.self " + self + " is not one of cluster.peers " + peerUrls);
+        }
+        ring = new PartitionRing(peerUrls, virtualNodes);
+        log.info("Partitioned mode: {} owns a share of the cities of peers {}", self, peerUrls);
+    }
+
+    private static String normalizeUrl(String url) {
+        String trimmed = url.strip();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    /**
+     * @return {@code true} if the cities are partitioned between several peers
+     */
+    public boolean isEnabled() {
+        return ring != null;
+    }
+
+    /**
+     * @return the base URL of this instance, empty if partitioning is disabled
+     */
+    public String getSelf() {
+        return self;
+    }
+
+    /**
+     * @return the base URLs of all peers, including this instance, empty if partitioning is disabled
+     */
+    public List<String> getPeers() {
+        return ring == null ? List.of() : ring.getPeers();
+    }
+
+    /**
+     * @param city the name of a city
+     * @return the base URL of the peer owning the city, this instance's if partitioning is disabled
+     */
+    public String getOwner(String city) {
+        return ring == null ? self : ring.getOwner(city);
+    }
+
+    /**
+     * @param city the name of a city
+     * @return {@code true} if this instance loads and answers for the city
+     */
+    public boolean owns(String city) {
+        return ring == null || ring.getOwner(city).equals(self);
+    }
+
+    /**
+     * Identifies the share of the cities owned by this instance, so data derived from it is not reused
+     * after the peers change.
+     *
+     * @return an empty string if partitioning is disabled, otherwise a hex hash of the peers and this instance
+     */
+    public String getFingerprint() {
+        if (ring == null) {
+            return "";
+        }
+        return Long.toHexString(PartitionRing.hash(String.join(",", ring.getPeers()) + "|" + self + "|" + virtualNodes));
+    }
+}
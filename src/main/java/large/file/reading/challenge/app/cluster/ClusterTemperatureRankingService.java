@@ -0,0 +1,226 @@
+package large.file.reading.challenge.app.cluster;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import large.file.reading.challenge.app.aggregate.TemperatureStatistic;
+import large.file.reading.challenge.app.dto.CityRankingDTO;
+import large.file.reading.challenge.app.dto.NationalAverageTemperatureDTO;
+import large.file.reading.challenge.app.dto.YearRankingResponseDTO;
+import large.file.reading.challenge.app.exception.CityNotFoundException;
+import large.file.reading.challenge.app.exception.PeerUnavailableException;
+import large.file.reading.challenge.app.service.TemperatureRankingService;
+import large.file.reading.challenge.app.store.TemperatureRankings;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ClusterTemperatureRankingService answers the questions across all cities in partitioned mode, where every
+ * peer ranks only the cities it owns. The warmest or coldest cities are the best of the cities every peer
+ * ranks first, the rank of a city is its rank at its owner plus the number of cities ranked before it at
+ * the other peers, and the national statistics are merged from the sums and counts of all peers.
+ * Without partitioning, or for queries forwarded by a peer, it answers from the local data only.
+ */
+@Service
+@RequiredArgsConstructor
+public class ClusterTemperatureRankingService {
+
+    private static final Comparator<CityRankingDTO> WARMEST_FIRST =
+            Comparator.comparingDouble(CityRankingDTO::getAverageTemperature).reversed()
+                    .thenComparing(CityRankingDTO::getCity, TemperatureRankings.RANKING_ORDER);
+
+    private final TemperatureRankingService temperatureRankingService;
+
+    private final ClusterPartitioning clusterPartitioning;
+
+    private final PeerClient peerClient;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Retrieves the warmest or the coldest cities of a year on all peers, see
+     * {@link TemperatureRankingService#getYearRanking}.
+     *
+     * @param year      the year
+     * @param limit     the maximum number of cities
+     * @param order     {@code warmest} or {@code coldest}
+     * @param forwarded whether the query was forwarded by a peer
+     * @return a {@link YearRankingResponseDTO} with the cities of all peers
+     * @throws PeerUnavailableException if a peer does not answer
+     */
+    public YearRankingResponseDTO getYearRanking(int year, int limit, String order, boolean forwarded) {
+        YearRankingResponseDTO localRanking = temperatureRankingService.getYearRanking(year, limit, order);
+        if (!clusterPartitioning.isEnabled() || forwarded) {
+            return localRanking;
+        }
+
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> responses = scatter("/temperature/ranking?year=" + year
+                + "&limit=" + limit + "&order=" + localRanking.getOrder(), clusterPartitioning.getSelf());
+
+        int cityCount = localRanking.getCities();
+        List<CityRankingDTO> cities = new ArrayList<>(localRanking.getData());
+        for (Map.Entry<String, CompletableFuture<HttpResponse<byte[]>>> response : responses.entrySet()) {
+            YearRankingResponseDTO peerRanking = readBody(response.getKey(), response.getValue(), new TypeReference<>() {
+            });
+            cityCount += peerRanking.getCities();
+            cities.addAll(peerRanking.getData());
+        }
+
+        boolean warmest = "warmest".equals(localRanking.getOrder());
+        cities.sort(warmest ? WARMEST_FIRST : WARMEST_FIRST.reversed());
+        List<CityRankingDTO> top = new ArrayList<>(cities.subList(0, Math.min(limit, cities.size())));
+        for (int i = 0; i < top.size(); i++) {
+            top.get(i).setRank(warmest ? i + 1 : cityCount - i);
+        }
+        return new YearRankingResponseDTO(localRanking.getYear(), localRanking.getOrder(), cityCount, top);
+    }
+
+    /**
+     * Retrieves the rank of a city among the cities of all peers, see {@link TemperatureRankingService#getCityRank}.
+     *
+     * @param city      the name of the city
+     * @param year      the year
+     * @param forwarded whether the query was forwarded by a peer
+     * @return a {@link CityRankingDTO} with the rank and the average temperature of the city
+     * @throws CityNotFoundException if the owner of the city has no data for it in the given year
+     * @throws PeerUnavailableException if a peer does not answer
+     */
+    public CityRankingDTO getCityRank(String city, int year, boolean forwarded) {
+        if (!clusterPartitioning.isEnabled() || forwarded) {
+            return temperatureRankingService.getCityRank(city, year);
+        }
+        String owner = city == null || city.isBlank() ? clusterPartitioning.getSelf() : clusterPartitioning.getOwner(city);
+        if (owner.equals(clusterPartitioning.getSelf())) {
+            return addRankedBefore(temperatureRankingService.getCityRank(city, year), year, owner);
+        }
+
+        String pathAndQuery = "/temperature/ranking/city?city=" + URLEncoder.encode(city, StandardCharsets.UTF_8) + "&year=" + year;
+        HttpResponse<byte[]> answer = PeerClient.await(owner, peerClient.get(owner, pathAndQuery, Map.of()));
+        if (answer.statusCode() == 400) {
+            throw new CityNotFoundException(readError(owner, answer));
+        }
+        return addRankedBefore(readBody(owner, answer, new TypeReference<>() {
+        }), year, owner);
+    }
+
+    /**
+     * Retrieves the statistics of every year over the readings of the cities of all peers, see
+     * {@link TemperatureRankingService#getNationalAverages}.
+     *
+     * @param forwarded whether the query was forwarded by a peer
+     * @return the national statistics in chronological order
+     * @throws PeerUnavailableException if a peer does not answer
+     */
+    public List<NationalAverageTemperatureDTO> getNationalAverages(boolean forwarded) {
+        List<NationalAverageTemperatureDTO> localAverages = temperatureRankingService.getNationalAverages();
+        if (!clusterPartitioning.isEnabled() || forwarded) {
+            return localAverages;
+        }
+
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> responses = scatter("/temperature/national/average", clusterPartitioning.getSelf());
+
+        Map<String, List<NationalAverageTemperatureDTO>> averagesByYear = new TreeMap<>();
+        localAverages.forEach(average -> averagesByYear.computeIfAbsent(average.getYear(), key -> new ArrayList<>()).add(average));
+        responses.forEach((peer, response) -> readBody(peer, response, new TypeReference<List<NationalAverageTemperatureDTO>>() {
+        }).forEach(average -> averagesByYear.computeIfAbsent(average.getYear(), key -> new ArrayList<>()).add(average)));
+
+        List<NationalAverageTemperatureDTO> nationalAverages = new ArrayList<>(averagesByYear.size());
+        averagesByYear.forEach((year, averages) -> nationalAverages.add(merge(year, averages)));
+        return nationalAverages;
+    }
+
+    /**
+     * Adds the cities ranked before a city at every peer but its owner to its rank at the owner.
+     */
+    private CityRankingDTO addRankedBefore(CityRankingDTO ownerRank, int year, String owner) {
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> responses = scatter("/temperature/ranking/before?city="
+                + URLEncoder.encode(ownerRank.getCity(), StandardCharsets.UTF_8) + "&year=" + year
+                + "&averageTemperature=" + ownerRank.getAverageTemperature(), owner);
+
+        int rank = ownerRank.getRank();
+        if (!owner.equals(clusterPartitioning.getSelf())) {
+            rank += temperatureRankingService.countCitiesRankedBefore(ownerRank.getCity(), year, ownerRank.getAverageTemperature());
+        }
+        for (Map.Entry<String, CompletableFuture<HttpResponse<byte[]>>> response : responses.entrySet()) {
+            rank += readBody(response.getKey(), response.getValue(), new TypeReference<Integer>() {
+            });
+        }
+        return new CityRankingDTO(rank, ownerRank.getCity(), ownerRank.getAverageTemperature());
+    }
+
+    private static NationalAverageTemperatureDTO merge(String year, List<NationalAverageTemperatureDTO> averages) {
+        int cities = 0;
+        long count = 0;
+        long sum = 0;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (NationalAverageTemperatureDTO average : averages) {
+            cities += average.getCities();
+            count += average.getCount();
+            sum += Math.round(average.getSumTemperature() * 100);
+            min = Math.min(min, average.getMinTemperature());
+            max = Math.max(max, average.getMaxTemperature());
+        }
+        return new NationalAverageTemperatureDTO(year, cities, count, TemperatureStatistic.averageOfHundredths(count, sum),
+                min, max, sum / 100.0);
+    }
+
+    /**
+     * Sends a GET request to every peer but this instance and the excluded one.
+     */
+    private Map<String, CompletableFuture<HttpResponse<byte[]>>> scatter(String pathAndQuery, String excludedPeer) {
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> responses = new LinkedHashMap<>();
+        for (String peer : clusterPartitioning.getPeers()) {
+            if (!peer.equals(clusterPartitioning.getSelf()) && !peer.equals(excludedPeer)) {
+                responses.put(peer, peerClient.get(peer, pathAndQuery, Map.of()));
+            }
+        }
+        return responses;
+    }
+
+    private String readError(String peer, HttpResponse<byte[]> answer) {
+        try {
+            JsonNode error = objectMapper.readTree(answer.body()).get("error");
+            if (error != null) {
+                return error.asText();
+            }
+        } catch (IOException e) {
+            // reported below
+        }
+        throw new PeerUnavailableException("Peer " + peer + " answered with status " + answer.statusCode()
+                + ": " + new String(answer.body(), StandardCharsets.UTF_8));
+    }
+
+    private <T> T readBody(String peer, CompletableFuture<HttpResponse<byte[]>> response, TypeReference<T> type) {
+        return readBody(peer, PeerClient.await(peer, response), type);
+    }
+
+    /**
+     * Reads the JSON body of the answer of a peer.
+     *
+     * @throws PeerUnavailableException if the peer does not answer with {@code 200 OK}
+     */
+    private <T> T readBody(String peer, HttpResponse<byte[]> answer, TypeReference<T> type) {
+        if (answer.statusCode() != 200) {
+            throw new PeerUnavailableException("Peer " + peer + " answered with status " + answer.statusCode()
+                    + ": " + new String(answer.body(), StandardCharsets.UTF_8));
+        }
+        try {
+            return objectMapper.readValue(answer.body(), type);
+        } catch (IOException e) {
+            throw new PeerUnavailableException("Peer " + peer + " sent an invalid answer: " + e.getMessage());
+        }
+    }
+}
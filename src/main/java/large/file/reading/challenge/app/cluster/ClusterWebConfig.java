@@ -0,0 +1,24 @@
+package large.file.reading.challenge.app.cluster;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Forwards the queries about a single city to the peer owning it, see {@link PartitionForwardingInterceptor}.
+ * The rank of a city depends on the cities of all peers, so it is gathered by
+ * {@link ClusterTemperatureRankingService} instead.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class ClusterWebConfig implements WebMvcConfigurer {
+
+    private final PartitionForwardingInterceptor partitionForwardingInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(partitionForwardingInterceptor)
+                .addPathPatterns("/city/temperature/annual/average", "/city/temperature/statistics");
+    }
+}
@@ -0,0 +1,61 @@
+package large.file.reading.challenge.app.cluster;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PartitionForwardingInterceptor answers queries about a single city, given by the {@code city} parameter,
+ * by forwarding them to the peer owning the city when that is not this instance. The response of the owner,
+ * including its status, ETag and errors, is passed back as it is. Requests forwarded by a peer are always
+ * answered locally.
+ */
+@Component
+@RequiredArgsConstructor
+public class PartitionForwardingInterceptor implements HandlerInterceptor {
+
+    private static final List<String> REQUEST_HEADERS = List.of(HttpHeaders.IF_NONE_MATCH, HttpHeaders.ACCEPT);
+
+    private static final List<String> RESPONSE_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG, HttpHeaders.RETRY_AFTER);
+
+    private final ClusterPartitioning clusterPartitioning;
+
+    private final PeerClient peerClient;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        String city = request.getParameter("city");
+        if (!clusterPartitioning.isEnabled() || request.getHeader(PeerClient.FORWARDED_HEADER) != null
+                || city == null || city.isBlank() || clusterPartitioning.owns(city)) {
+            return true;
+        }
+
+        String owner = clusterPartitioning.getOwner(city);
+        String query = request.getQueryString();
+        Map<String, String> headers = new HashMap<>();
+        for (String header : REQUEST_HEADERS) {
+            String value = request.getHeader(header);
+            if (value != null) {
+                headers.put(header, value);
+            }
+        }
+        HttpResponse<byte[]> forwarded = PeerClient.await(owner,
+                peerClient.get(owner, request.getRequestURI() + (query == null ? "" : "?" + query), headers));
+
+        response.setStatus(forwarded.statusCode());
+        for (String header : RESPONSE_HEADERS) {
+            forwarded.headers().firstValue(header).ifPresent(value -> response.setHeader(header, value));
+        }
+        response.getOutputStream().write(forwarded.body());
+        return false;
+    }
+}
@@ -0,0 +1,94 @@
+package large.file.reading.challenge.app.cluster;
+
+import large.file.reading.challenge.app.store.CityNameIndex;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * PartitionRing assigns every city to one of the peers with consistent hashing. Each peer is placed on
+ * a ring of 64-bit hashes at a number of virtual nodes, and a city belongs to the peer of the first virtual node
+ * at or after the hash of its name. Adding or removing a peer therefore moves only the cities of its share.
+ *
+ * <p>Cities are hashed by their {@link CityNameIndex#normalize normalized} name, so a query for {@code lodz}
+ * is routed to the peer owning {@code Łódź}, and cities whose names only differ by case or diacritics
+ * belong to the same peer.</p>
+ */
+public final class PartitionRing {
+
+    private final List<String> peers;
+
+    private final long[] points;
+
+    private final int[] owners;
+
+    /**
+     * @param peers        the base URLs of the peers, in the same order on every peer
+     * @param virtualNodes the number of virtual nodes per peer
+     */
+    public PartitionRing(List<String> peers, int virtualNodes) {
+        if (peers.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A ring needs at least one peer and one virtual node per peer");
+        }
+        this.peers = List.copyOf(peers);
+        int size = peers.size() * virtualNodes;
+        long[] hashes = new long[size];
+        for (int i = 0; i < size; i++) {
+            hashes[i] = hash(peers.get(i / virtualNodes) + "#" + i % virtualNodes);
+        }
+        Integer[] order = IntStream.range(0, size).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingLong(i -> hashes[i]));
+
+        points = new long[size];
+        owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = order[i] / virtualNodes;
+        }
+    }
+
+    /**
+     * @param city the name of a city
+     * @return the base URL of the peer owning the city
+     */
+    public String getOwner(String city) {
+        long hash = hash(CityNameIndex.normalize(city));
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (points[middle] < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return peers.get(owners[low == points.length ? 0 : low]);
+    }
+
+    /**
+     * @return the base URLs of the peers
+     */
+    public List<String> getPeers() {
+        return peers;
+    }
+
+    /**
+     * Hashes the UTF-8 bytes of a key with 64-bit FNV-1a, followed by the finalizer of MurmurHash3 to spread
+     * keys which differ only in their last characters, such as the virtual nodes of a peer.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ hash >>> 33;
+    }
+}
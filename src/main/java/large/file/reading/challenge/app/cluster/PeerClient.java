@@ -0,0 +1,116 @@
+package large.file.reading.challenge.app.cluster;
+
+import large.file.reading.challenge.app.exception.PeerUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * PeerClient sends queries to the other instances of the cluster over HTTP. Every request carries
+ * the {@link #FORWARDED_HEADER}, so the peer answers from its own data instead of passing the query on,
+ * which keeps a query from bouncing between peers whose configuration differs.
+ */
+@Component
+@Slf4j
+public class PeerClient {
+
+    /**
+     * Marks a request sent by a peer.
+     */
+    public static final String FORWARDED_HEADER = "X-Partition-Forwarded";
+
+    @Value("${cluster.request.timeout.ms:5000}")
+    private long requestTimeoutMillis = 5000;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    /**
+     * Sends a GET request to a peer.
+     *
+     * @param peer         the base URL of the peer
+     * @param pathAndQuery the path of the request, including the encoded query string
+     * @param headers      additional headers of the request
+     * @return the future response
+     */
+    public CompletableFuture<HttpResponse<byte[]>> get(String peer, String pathAndQuery, Map<String, String> headers) {
+        HttpRequest.Builder request = newRequest(peer, pathAndQuery).GET();
+        headers.forEach(request::header);
+        return send(peer, request.build());
+    }
+
+    /**
+     * Sends a GET request to a peer whose response body is read as it arrives, for bodies too large to be
+     * held in memory. The future completes once the headers of the response are received, and the body
+     * must be closed by the caller.
+     *
+     * @param peer         the base URL of the peer
+     * @param pathAndQuery the path of the request, including the encoded query string
+     * @return the future response
+     */
+    public CompletableFuture<HttpResponse<InputStream>> getStream(String peer, String pathAndQuery) {
+        return send(peer, newRequest(peer, pathAndQuery).GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    /**
+     * Sends a POST request with a JSON body to a peer.
+     *
+     * @param peer         the base URL of the peer
+     * @param pathAndQuery the path of the request, including the encoded query string
+     * @param json         the body of the request
+     * @return the future response
+     */
+    public CompletableFuture<HttpResponse<byte[]>> postJson(String peer, String pathAndQuery, byte[] json) {
+        return send(peer, newRequest(peer, pathAndQuery)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json))
+                .build());
+    }
+
+    /**
+     * Waits for a response.
+     *
+     * @param peer     the base URL of the peer
+     * @param response the future response
+     * @return the response
+     * @throws PeerUnavailableException if the request failed or timed out
+     */
+    public static <T> HttpResponse<T> await(String peer, CompletableFuture<HttpResponse<T>> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            throw new PeerUnavailableException("Peer " + peer + " is unavailable: " + e.getCause());
+        }
+    }
+
+    private HttpRequest.Builder newRequest(String peer, String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create(peer + pathAndQuery))
+                .timeout(Duration.ofMillis(requestTimeoutMillis))
+                .header(FORWARDED_HEADER, "true");
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> send(String peer, HttpRequest request) {
+        return send(peer, request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> send(String peer, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        return httpClient.sendAsync(request, bodyHandler)
+                .whenComplete((response, failure) -> {
+                    if (failure != null) {
+                        log.warn("Request {} to peer {} failed: {}", request.uri(), peer, failure.toString());
+                    }
+                });
+    }
+}
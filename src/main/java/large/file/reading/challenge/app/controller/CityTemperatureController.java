@@ -1,19 +1,30 @@
 package large.file.reading.challenge.app.controller;
 
-import large.file.reading.challenge.app.dto.CityTemperatureResponseDTO;
+import large.file.reading.challenge.app.cluster.ClusterCityTemperatureService;
+import large.file.reading.challenge.app.cluster.PeerClient;
+import large.file.reading.challenge.app.dto.DataExportDTO;
+import large.file.reading.challenge.app.dto.SerializedCityTemperatureDTO;
+import large.file.reading.challenge.app.dto.TemperatureStatisticsResponseDTO;
 import large.file.reading.challenge.app.exception.InvalidCityException;
 import large.file.reading.challenge.app.service.CityTemperatureService;
 import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.FileNotFoundException;
+import java.util.List;
 
 /**
  * @author Jarosław Kormański
  * CityTemperatureController is a REST controller that provides an endpoint to retrieve
  * the annual average temperatures for a specified city.
+ *
+ * <p>In partitioned mode (see {@link large.file.reading.challenge.app.cluster.ClusterPartitioning}) the queries about
+ * a single city are forwarded to the peer owning it before they reach this controller, and the queries about
+ * several cities are answered by scatter-gather over all peers.</p>
  */
 @RestController
 @RequestMapping("/city/temperature")
@@ -23,15 +34,119 @@ public class CityTemperatureController {
 
     private final CityTemperatureService cityTemperatureService;
 
+    private final ClusterCityTemperatureService clusterCityTemperatureService;
+
     /**
      * Retrieves the annual average temperatures for a specified city.
      *
+     * <p>The body is the JSON serialized when the data was loaded. The response carries the ETag of the
+     * dataset, and Spring answers with {@code 304 Not Modified} and no body when it matches the
+     * {@code If-None-Match} header of the request.</p>
+     *
      * @param city the name of the city
-     * @return a ResponseEntity containing the CityTemperatureResponseDTO with the city's temperature data and the response status
+     * @return a ResponseEntity containing the city's temperature data as JSON
      */
     @GetMapping("/annual/average")
-    public ResponseEntity<CityTemperatureResponseDTO> getAnnualAverageTemperatures(@RequestParam("city")  String city) {
-        CityTemperatureResponseDTO response = cityTemperatureService.getAnnualAverageTemperatures(city);
-        return new ResponseEntity<>(response, response.getStatus());
+    public ResponseEntity<byte[]> getAnnualAverageTemperatures(@RequestParam("city")  String city) {
+        SerializedCityTemperatureDTO response = cityTemperatureService.getSerializedAnnualAverageTemperatures(city);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(response.getETag())
+                .body(response.getJson());
+    }
+
+    /**
+     * Retrieves a statistic of the temperatures of a city, e.g.
+     * {@code ?city=Warszawa&fromYear=2019&toYear=2021&statistic=variance&granularity=month}.
+     *
+     * @param city        the name of the city
+     * @param fromYear    the first year, inclusive, all years when omitted
+     * @param toYear      the last year, inclusive, all years when omitted
+     * @param statistic   one of count, sum, min, max, average and variance
+     * @param granularity year or month
+     * @return a ResponseEntity containing the values of the statistic and its value over the whole range
+     */
+    @GetMapping("/statistics")
+    public ResponseEntity<TemperatureStatisticsResponseDTO> getTemperatureStatistics(
+            @RequestParam("city") String city,
+            @RequestParam(value = "fromYear", required = false) Integer fromYear,
+            @RequestParam(value = "toYear", required = false) Integer toYear,
+            @RequestParam(value = "statistic", defaultValue = "average") String statistic,
+            @RequestParam(value = "granularity", defaultValue = "year") String granularity) {
+        return ResponseEntity.ok(cityTemperatureService.getTemperatureStatistics(city, fromYear, toYear, statistic, granularity));
+    }
+
+    /**
+     * Finds cities whose names start with a prefix, ignoring case, Polish diacritics and surrounding whitespace,
+     * e.g. {@code ?prefix=lod} finds {@code Łódź}.
+     *
+     * @param prefix    the prefix of the city names
+     * @param limit     the maximum number of cities
+     * @param forwarded the header marking a query forwarded by a peer
+     * @return a ResponseEntity containing the names of the matching cities in alphabetical order
+     */
+    @GetMapping("/cities")
+    public ResponseEntity<List<String>> findCities(@RequestParam(value = "prefix", defaultValue = "") String prefix,
+                                                   @RequestParam(value = "limit", defaultValue = "10") int limit,
+                                                   @RequestHeader(value = PeerClient.FORWARDED_HEADER, required = false) String forwarded) {
+        return ResponseEntity.ok(clusterCityTemperatureService.findCities(prefix, limit, forwarded != null));
+    }
+
+    /**
+     * Retrieves the annual average temperatures for several cities in one response, e.g.
+     * {@code ?city=Warszawa&city=Kraków}. Unknown cities get an entry with an {@code error}.
+     *
+     * @param cities    the names of the cities
+     * @param forwarded the header marking a query forwarded by a peer
+     * @return a ResponseEntity streaming a JSON array with one entry per city
+     */
+    @GetMapping("/annual/average/batch")
+    public ResponseEntity<StreamingResponseBody> getAnnualAverageTemperaturesBatch(
+            @RequestParam("city") List<String> cities,
+            @RequestHeader(value = PeerClient.FORWARDED_HEADER, required = false) String forwarded) {
+        return streamBatch(cities, forwarded != null);
+    }
+
+    /**
+     * Retrieves the annual average temperatures for the cities listed in a JSON array in the request body.
+     * Unknown cities get an entry with an {@code error}.
+     *
+     * @param cities    the names of the cities
+     * @param forwarded the header marking a query forwarded by a peer
+     * @return a ResponseEntity streaming a JSON array with one entry per city
+     */
+    @PostMapping("/annual/average/batch")
+    public ResponseEntity<StreamingResponseBody> postAnnualAverageTemperaturesBatch(
+            @RequestBody List<String> cities,
+            @RequestHeader(value = PeerClient.FORWARDED_HEADER, required = false) String forwarded) {
+        return streamBatch(cities, forwarded != null);
+    }
+
+    /**
+     * Exports the annual average temperatures of all cities of one version of the dataset, e.g.
+     * {@code ?format=ndjson} for one line of JSON per city or {@code ?format=binary} for compact binary frames,
+     * see {@link large.file.reading.challenge.app.service.DataExportFormat}. In partitioned mode the exports of
+     * all peers are joined.
+     *
+     * @param format    ndjson or binary
+     * @param forwarded the header marking a query forwarded by a peer
+     * @return a ResponseEntity streaming the export, with the ETag of the dataset
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportAnnualAverageTemperatures(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @RequestHeader(value = PeerClient.FORWARDED_HEADER, required = false) String forwarded) {
+        DataExportDTO export = clusterCityTemperatureService.exportAnnualAverageTemperatures(format, forwarded != null);
+        return ResponseEntity.ok()
+                .contentType(export.getMediaType())
+                .eTag(export.getETag())
+                .body(export.getBody());
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamBatch(List<String> cities, boolean forwarded) {
+        StreamingResponseBody body = clusterCityTemperatureService.streamAnnualAverageTemperatures(cities, forwarded);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
 }
@@ -0,0 +1,44 @@
+package large.file.reading.challenge.app.controller;
+
+import large.file.reading.challenge.app.dto.LoadProgressDTO;
+import large.file.reading.challenge.app.dto.MalformedRowDTO;
+import large.file.reading.challenge.app.service.LoadProgress;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * LoadProgressController is a REST controller that reports the progress of loading the CSV file.
+ */
+@RestController
+@RequestMapping("/load")
+@AllArgsConstructor
+public class LoadProgressController {
+
+    private final LoadProgress loadProgress;
+
+    /**
+     * Retrieves the progress of the current or the last load.
+     *
+     * @return a ResponseEntity containing the bytes and rows processed so far and the parsing rate
+     */
+    @GetMapping("/progress")
+    public ResponseEntity<LoadProgressDTO> getLoadProgress() {
+        return ResponseEntity.ok(loadProgress.toDTO());
+    }
+
+    /**
+     * Retrieves the malformed rows found by the current or the last load, up to {@code csv.loader.quarantine.size}
+     * of them, with the file and the offset of each row.
+     *
+     * @return a ResponseEntity containing the malformed rows
+     */
+    @GetMapping("/quarantine")
+    public ResponseEntity<List<MalformedRowDTO>> getQuarantine() {
+        return ResponseEntity.ok(loadProgress.getQuarantine());
+    }
+}
@@ -0,0 +1,92 @@
+package large.file.reading.challenge.app.controller;
+
+import large.file.reading.challenge.app.cluster.ClusterTemperatureRankingService;
+import large.file.reading.challenge.app.cluster.PeerClient;
+import large.file.reading.challenge.app.dto.CityRankingDTO;
+import large.file.reading.challenge.app.dto.NationalAverageTemperatureDTO;
+import large.file.reading.challenge.app.dto.YearRankingResponseDTO;
+import large.file.reading.challenge.app.service.TemperatureRankingService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * TemperatureRankingController is a REST controller that provides endpoints comparing the temperatures
+ * of all cities, answered from indexes built when the data is loaded.
+ *
+ * <p>In partitioned mode (see {@link large.file.reading.challenge.app.cluster.ClusterPartitioning}) the answers
+ * of all peers are combined, see {@link ClusterTemperatureRankingService}.</p>
+ */
+@RestController
+@RequestMapping("/temperature")
+@AllArgsConstructor
+public class TemperatureRankingController {
+
+    private final TemperatureRankingService temperatureRankingService;
+
+    private final ClusterTemperatureRankingService clusterTemperatureRankingService;
+
+    /**
+     * Retrieves the warmest or the coldest cities of a year, e.g. {@code ?year=2021&limit=10&order=warmest}.
+     *
+     * @param year      the year
+     * @param limit     the maximum number of cities
+     * @param order     {@code warmest} or {@code coldest}
+     * @param forwarded the header marking a query forwarded by a peer
+     * @return a ResponseEntity containing the cities ordered by their annual average temperature
+     */
+    @GetMapping("/ranking")
+    public ResponseEntity<YearRankingResponseDTO> getYearRanking(@RequestParam("year") int year,
+                                                                 @RequestParam(value = "limit", defaultValue = "10") int limit,
+                                                                 @RequestParam(value = "order", defaultValue = "warmest") String order,
+                                                                 @RequestHeader(value = PeerClient.FORWARDED_HEADER, required = false) String forwarded) {
+        return ResponseEntity.ok(clusterTemperatureRankingService.getYearRanking(year, limit, order, forwarded != null));
+    }
+
+    /**
+     * Retrieves the rank of a city among all cities in a year, from the warmest.
+     *
+     * @param city      the name of the city
+     * @param year      the year
+     * @param forwarded the header marking a query forwarded by a peer
+     * @return a ResponseEntity containing the rank and the annual average temperature of the city
+     */
+    @GetMapping("/ranking/city")
+    public ResponseEntity<CityRankingDTO> getCityRank(@RequestParam("city") String city, @RequestParam("year") int year,
+                                                      @RequestHeader(value = PeerClient.FORWARDED_HEADER, required = false) String forwarded) {
+        return ResponseEntity.ok(clusterTemperatureRankingService.getCityRank(city, year, forwarded != null));
+    }
+
+    /**
+     * Counts the cities of this instance ranked before a city in a year, asked by the peers in partitioned mode
+     * to rank the cities they own.
+     *
+     * @param city               the name of the city
+     * @param year               the year
+     * @param averageTemperature the annual average temperature of the city
+     * @return a ResponseEntity containing the number of cities ranked before the city
+     */
+    @GetMapping("/ranking/before")
+    public ResponseEntity<Integer> countCitiesRankedBefore(@RequestParam("city") String city, @RequestParam("year") int year,
+                                                           @RequestParam("averageTemperature") double averageTemperature) {
+        return ResponseEntity.ok(temperatureRankingService.countCitiesRankedBefore(city, year, averageTemperature));
+    }
+
+    /**
+     * Retrieves the average, lowest and highest temperature of every year over the readings of all cities.
+     *
+     * @param forwarded the header marking a query forwarded by a peer
+     * @return a ResponseEntity containing the national statistics per year
+     */
+    @GetMapping("/national/average")
+    public ResponseEntity<List<NationalAverageTemperatureDTO>> getNationalAverages(
+            @RequestHeader(value = PeerClient.FORWARDED_HEADER, required = false) String forwarded) {
+        return ResponseEntity.ok(clusterTemperatureRankingService.getNationalAverages(forwarded != null));
+    }
+}
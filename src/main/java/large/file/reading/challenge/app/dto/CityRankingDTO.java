@@ -0,0 +1,20 @@
+package large.file.reading.challenge.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CityRankingDTO {
+
+    private int rank;
+
+    private String city;
+
+    private double averageTemperature;
+
+}
@@ -1,16 +0,0 @@
-package large.file.reading.challenge.app.dto;
-
-import lombok.Getter;
-import lombok.Setter;
-
-@Getter
-@Setter
-public class CsvRowData {
-
-    private String city;
-
-    private String year;
-
-    private double temperature;
-
-}
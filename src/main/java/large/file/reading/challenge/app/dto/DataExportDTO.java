@@ -0,0 +1,24 @@
+package large.file.reading.challenge.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * An export of the annual average temperatures of all cities, written when the response is sent, together
+ * with its content type and the ETag of the dataset it comes from.
+ */
+@Getter
+@AllArgsConstructor
+public class DataExportDTO {
+
+    private MediaType mediaType;
+
+    private String eTag;
+
+    private long version;
+
+    private StreamingResponseBody body;
+
+}
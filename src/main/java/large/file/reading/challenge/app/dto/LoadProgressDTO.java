@@ -0,0 +1,30 @@
+package large.file.reading.challenge.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoadProgressDTO {
+
+    private String state;
+
+    private boolean ready;
+
+    private long bytesTotal;
+
+    private long bytesProcessed;
+
+    private long rowsProcessed;
+
+    private long malformedRows;
+
+    private long rowsPerSecond;
+
+    private long elapsedMillis;
+
+}
@@ -0,0 +1,23 @@
+package large.file.reading.challenge.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class MalformedRowDTO {
+
+    private String file;
+
+    /**
+     * The offset of the first byte of the row in the file, in decompressed bytes for compressed files.
+     */
+    private long offset;
+
+    private String line;
+
+}
@@ -0,0 +1,32 @@
+package large.file.reading.challenge.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class NationalAverageTemperatureDTO {
+
+    private String year;
+
+    private int cities;
+
+    private long count;
+
+    private double averageTemperature;
+
+    private double minTemperature;
+
+    private double maxTemperature;
+
+    /**
+     * The sum of the temperatures of all readings, which the statistics of the partitions of a cluster are
+     * merged with.
+     */
+    private double sumTemperature;
+
+}
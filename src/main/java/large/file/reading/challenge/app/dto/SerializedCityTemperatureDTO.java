@@ -0,0 +1,20 @@
+package large.file.reading.challenge.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The JSON response of a city as it was serialized when the data was loaded, together with the ETag
+ * of the dataset it comes from.
+ */
+@Getter
+@AllArgsConstructor
+public class SerializedCityTemperatureDTO {
+
+    private String city;
+
+    private byte[] json;
+
+    private String eTag;
+
+}
@@ -0,0 +1,24 @@
+package large.file.reading.challenge.app.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TemperatureStatisticDTO {
+
+    private String year;
+
+    private Integer month;
+
+    private long count;
+
+    private double value;
+
+}
@@ -0,0 +1,26 @@
+package large.file.reading.challenge.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TemperatureStatisticsResponseDTO {
+
+    private String city;
+
+    private String statistic;
+
+    private String granularity;
+
+    private List<TemperatureStatisticDTO> data;
+
+    private TemperatureStatisticDTO total;
+
+}
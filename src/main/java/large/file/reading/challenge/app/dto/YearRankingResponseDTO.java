@@ -0,0 +1,24 @@
+package large.file.reading.challenge.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class YearRankingResponseDTO {
+
+    private String year;
+
+    private String order;
+
+    private int cities;
+
+    private List<CityRankingDTO> data;
+
+}
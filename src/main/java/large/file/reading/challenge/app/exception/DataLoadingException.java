@@ -0,0 +1,10 @@
+package large.file.reading.challenge.app.exception;
+
+/**
+ * Thrown when a query arrives before the initial load of the data has finished.
+ */
+public class DataLoadingException extends RuntimeException {
+    public DataLoadingException(String message) {
+        super(message);
+    }
+}
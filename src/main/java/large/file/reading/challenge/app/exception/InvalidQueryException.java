@@ -0,0 +1,7 @@
+package large.file.reading.challenge.app.exception;
+
+public class InvalidQueryException extends RuntimeException {
+    public InvalidQueryException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package large.file.reading.challenge.app.exception;
+
+/**
+ * Thrown when a peer owning a partition of the cities does not answer a forwarded query.
+ */
+public class PeerUnavailableException extends RuntimeException {
+    public PeerUnavailableException(String message) {
+        super(message);
+    }
+}
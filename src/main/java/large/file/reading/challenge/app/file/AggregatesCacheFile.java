@@ -0,0 +1,425 @@
+package large.file.reading.challenge.app.file;
+
+import large.file.reading.challenge.app.aggregate.TemperatureAccumulator;
+import large.file.reading.challenge.app.aggregate.TemperatureAggregates;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+
+/**
+ * AggregatesCacheFile stores {@link CachedAggregates} in a compact binary file, so that after a restart
+ * the aggregates can be read back instead of parsing the whole CSV file again.
+ *
+ * <p>The file consists of a header identifying the source CSV file (size, last modified date and
+ * {@link FilePrefixChecksum}), a dictionary of city names, a column of years and one column per statistic
+ * with a row for every (city, year) pair, followed by the same statistic columns with 12 rows, one per month,
+ * for every (city, year) pair. Months without readings have a count of 0. It ends with a CRC32C checksum of all preceding bytes, so a truncated or
+ * corrupted file is detected and ignored.</p>
+ *
+ * <p>The file is written and read sequentially through a buffer of {@value #DEFAULT_BUFFER_SIZE} bytes rather than
+ * mapped as a whole, as a single mapping cannot exceed 2 GiB, which millions of (city, year) pairs reach.</p>
+ */
+@Slf4j
+public final class AggregatesCacheFile {
+
+    static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private static final int MAGIC = 0x4C465243;
+
+    private static final int FORMAT_VERSION = 3;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 1 + 4 + 4;
+
+    private static final int STATISTICS_ROW_SIZE = 8 + 8 + 8 + 4 + 4;
+
+    private static final int ROW_SIZE = 2 + STATISTICS_ROW_SIZE * 13;
+
+    private static final TemperatureAccumulator NO_READINGS = new TemperatureAccumulator();
+
+    private AggregatesCacheFile() {
+    }
+
+    /**
+     * Writes the aggregates to the given file. The file is written aside and moved into place,
+     * so readers never see a partially written file.
+     *
+     * @param path             the cache file
+     * @param cachedAggregates the aggregates and the identity of their source file
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, CachedAggregates cachedAggregates) throws IOException {
+        write(path, cachedAggregates, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize the size of the write buffer, at least 8 bytes
+     */
+    static void write(Path path, CachedAggregates cachedAggregates, int bufferSize) throws IOException {
+        Map<String, Map<String, TemperatureAccumulator>> cities = cachedAggregates.getAggregates().getCities();
+        int rows = 0;
+        for (Map<String, TemperatureAccumulator> annualData : cities.values()) {
+            rows += annualData.size();
+        }
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tempFile = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                Output output = new Output(channel, bufferSize);
+                output.putInt(MAGIC);
+                output.putInt(FORMAT_VERSION);
+                output.putLong(cachedAggregates.getSourceSize());
+                output.putLong(cachedAggregates.getSourceLastModified());
+                output.putLong(cachedAggregates.getSourceChecksum());
+                output.putByte(cachedAggregates.isSourceEndsWithLineBreak() ? 1 : 0);
+                output.putInt(cities.size());
+                output.putInt(rows);
+
+                for (String city : cities.keySet()) {
+                    byte[] cityName = city.getBytes(StandardCharsets.UTF_8);
+                    output.putShort(cityName.length);
+                    output.putBytes(cityName);
+                }
+                for (Map<String, TemperatureAccumulator> annualData : cities.values()) {
+                    output.putInt(annualData.size());
+                }
+                writeColumns(output, cities.values(), rows);
+
+                long checksum = output.finish();
+                output.putLong(checksum);
+                output.flush();
+                channel.force(true);
+            }
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Reads the aggregates from the given file.
+     *
+     * @param path the cache file
+     * @return the cached aggregates, or an empty optional if the file does not exist or is corrupted
+     */
+    public static Optional<CachedAggregates> read(Path path) {
+        return read(path, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize the size of the read buffer, at least 8 bytes
+     */
+    static Optional<CachedAggregates> read(Path path, int bufferSize) {
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + 8) {
+                throw new IllegalStateException("unexpected size " + size);
+            }
+            Input input = new Input(channel, size - 8, bufferSize);
+            if (input.getInt() != MAGIC || input.getInt() != FORMAT_VERSION) {
+                throw new IllegalStateException("unknown format");
+            }
+            long sourceSize = input.getLong();
+            long sourceLastModified = input.getLong();
+            long sourceChecksum = input.getLong();
+            boolean sourceEndsWithLineBreak = input.getByte() == 1;
+            int cityCount = input.getInt();
+            int rows = input.getInt();
+            if (cityCount < 0 || rows < 0 || HEADER_SIZE + 6L * cityCount + (long) rows * ROW_SIZE + 8 > size) {
+                throw new IllegalStateException("unexpected size " + size);
+            }
+
+            String[] cityNames = new String[cityCount];
+            for (int i = 0; i < cityCount; i++) {
+                byte[] cityName = new byte[input.getShort() & 0xFFFF];
+                input.getBytes(cityName);
+                cityNames[i] = new String(cityName, StandardCharsets.UTF_8);
+            }
+            int[] rowsPerCity = new int[cityCount];
+            for (int i = 0; i < cityCount; i++) {
+                rowsPerCity[i] = input.getInt();
+            }
+            if (input.position() + (long) rows * ROW_SIZE + 8 != size) {
+                throw new IllegalStateException("unexpected size " + size);
+            }
+
+            TemperatureAggregates aggregates = readColumns(input, cityNames, rowsPerCity, rows);
+            ByteBuffer trailer = ByteBuffer.allocate(8);
+            while (trailer.hasRemaining()) {
+                if (channel.read(trailer, size - 8 + trailer.position()) < 0) {
+                    throw new BufferUnderflowException();
+                }
+            }
+            if (input.checksum() != trailer.getLong(0)) {
+                throw new IllegalStateException("checksum mismatch");
+            }
+            log.info("Read aggregates of {} cities from cache file {}", cityCount, path);
+            return Optional.of(new CachedAggregates(sourceSize, sourceLastModified, sourceChecksum, sourceEndsWithLineBreak, aggregates));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring cache file {}: {}", path, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static void writeColumns(Output output, Iterable<Map<String, TemperatureAccumulator>> cities, int rows) throws IOException {
+        TemperatureAccumulator[] annual = new TemperatureAccumulator[rows];
+        TemperatureAccumulator[] monthly = new TemperatureAccumulator[rows * 12];
+
+        int row = 0;
+        for (Map<String, TemperatureAccumulator> annualData : cities) {
+            for (Map.Entry<String, TemperatureAccumulator> entry : annualData.entrySet()) {
+                TemperatureAccumulator accumulator = entry.getValue();
+                output.putShort(Short.parseShort(entry.getKey()));
+                annual[row] = accumulator;
+                for (int month = 1; month <= 12; month++) {
+                    TemperatureAccumulator monthAccumulator = accumulator.getMonth(month);
+                    monthly[row * 12 + month - 1] = monthAccumulator != null ? monthAccumulator : NO_READINGS;
+                }
+                row++;
+            }
+        }
+        writeStatistics(output, annual);
+        writeStatistics(output, monthly);
+    }
+
+    private static void writeStatistics(Output output, TemperatureAccumulator[] accumulators) throws IOException {
+        for (TemperatureAccumulator accumulator : accumulators) {
+            output.putLong(accumulator.getCount());
+        }
+        for (TemperatureAccumulator accumulator : accumulators) {
+            output.putLong(accumulator.getSum());
+        }
+        for (TemperatureAccumulator accumulator : accumulators) {
+            output.putLong(accumulator.getSumOfSquares());
+        }
+        for (TemperatureAccumulator accumulator : accumulators) {
+            output.putInt(accumulator.getMin());
+        }
+        for (TemperatureAccumulator accumulator : accumulators) {
+            output.putInt(accumulator.getMax());
+        }
+    }
+
+    private static TemperatureAggregates readColumns(Input input, String[] cityNames, int[] rowsPerCity, int rows) throws IOException {
+        short[] years = new short[rows];
+        for (int row = 0; row < rows; row++) {
+            years[row] = input.getShort();
+        }
+        TemperatureAccumulator[] annual = readStatistics(input, rows);
+        TemperatureAccumulator[] monthly = readStatistics(input, rows * 12);
+
+        TemperatureAggregates aggregates = new TemperatureAggregates();
+        String[] yearNames = new String[10000];
+        int row = 0;
+        for (int city = 0; city < cityNames.length; city++) {
+            for (int i = 0; i < rowsPerCity[city]; i++, row++) {
+                short year = years[row];
+                if (yearNames[year] == null) {
+                    yearNames[year] = String.format("%04d", year);
+                }
+                TemperatureAccumulator[] months = new TemperatureAccumulator[12];
+                for (int month = 0; month < 12; month++) {
+                    TemperatureAccumulator monthAccumulator = monthly[row * 12 + month];
+                    months[month] = monthAccumulator.getCount() > 0 ? monthAccumulator : null;
+                }
+                TemperatureAccumulator accumulator = annual[row];
+                aggregates.add(cityNames[city], yearNames[year], new TemperatureAccumulator(accumulator.getCount(),
+                        accumulator.getSum(), accumulator.getSumOfSquares(), accumulator.getMin(), accumulator.getMax(), months));
+            }
+        }
+        return aggregates;
+    }
+
+    private static TemperatureAccumulator[] readStatistics(Input input, int rows) throws IOException {
+        long[] counts = new long[rows];
+        long[] sums = new long[rows];
+        long[] sumsOfSquares = new long[rows];
+        for (int row = 0; row < rows; row++) {
+            counts[row] = input.getLong();
+        }
+        for (int row = 0; row < rows; row++) {
+            sums[row] = input.getLong();
+        }
+        for (int row = 0; row < rows; row++) {
+            sumsOfSquares[row] = input.getLong();
+        }
+        int[] mins = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            mins[row] = input.getInt();
+        }
+
+        TemperatureAccumulator[] accumulators = new TemperatureAccumulator[rows];
+        for (int row = 0; row < rows; row++) {
+            accumulators[row] = new TemperatureAccumulator(counts[row], sums[row], sumsOfSquares[row], mins[row], input.getInt());
+        }
+        return accumulators;
+    }
+
+    /**
+     * Writes to a channel through a buffer, keeping a CRC32C checksum of the bytes written.
+     */
+    private static final class Output {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer;
+
+        private final CRC32C crc = new CRC32C();
+
+        private boolean checksummed = true;
+
+        Output(FileChannel channel, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        void putByte(int value) throws IOException {
+            ensureRemaining(1).put((byte) value);
+        }
+
+        void putShort(int value) throws IOException {
+            ensureRemaining(2).putShort((short) value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(4).putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensureRemaining(8).putLong(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                int length = Math.min(ensureRemaining(1).remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        /**
+         * Writes the buffered bytes and stops checksumming the bytes written afterwards.
+         *
+         * @return the checksum of the bytes written so far
+         */
+        long finish() throws IOException {
+            flush();
+            checksummed = false;
+            return crc.getValue();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            if (checksummed) {
+                crc.update(buffer.duplicate());
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private ByteBuffer ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Reads a channel up to a given end through a buffer, keeping a CRC32C checksum of the bytes read.
+     */
+    private static final class Input {
+
+        private final FileChannel channel;
+
+        private final long end;
+
+        private final ByteBuffer buffer;
+
+        private final CRC32C crc = new CRC32C();
+
+        private long filled;
+
+        Input(FileChannel channel, long end, int bufferSize) {
+            this.channel = channel;
+            this.end = end;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize).limit(0);
+        }
+
+        byte getByte() throws IOException {
+            return ensureRemaining(1).get();
+        }
+
+        short getShort() throws IOException {
+            return ensureRemaining(2).getShort();
+        }
+
+        int getInt() throws IOException {
+            return ensureRemaining(4).getInt();
+        }
+
+        long getLong() throws IOException {
+            return ensureRemaining(8).getLong();
+        }
+
+        void getBytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                int length = Math.min(ensureRemaining(1).remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        /**
+         * @return the position in the channel of the next byte to read
+         */
+        long position() {
+            return filled - buffer.remaining();
+        }
+
+        /**
+         * @return the checksum of all bytes up to the end, which must have been read
+         */
+        long checksum() {
+            if (position() != end) {
+                throw new IllegalStateException("unexpected size " + end);
+            }
+            return crc.getValue();
+        }
+
+        private ByteBuffer ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return buffer;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                int start = buffer.position();
+                buffer.limit((int) Math.min(buffer.capacity(), start + end - filled));
+                int read = filled < end ? channel.read(buffer, filled) : -1;
+                if (read < 0) {
+                    throw new BufferUnderflowException();
+                }
+                crc.update(buffer.duplicate().position(start).limit(start + read));
+                filled += read;
+            }
+            return buffer.flip();
+        }
+    }
+}
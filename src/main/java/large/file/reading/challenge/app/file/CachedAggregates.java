@@ -0,0 +1,25 @@
+package large.file.reading.challenge.app.file;
+
+import large.file.reading.challenge.app.aggregate.TemperatureAggregates;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * CachedAggregates are the aggregates of a CSV file together with the identity of the file
+ * they were computed from, as stored by {@link AggregatesCacheFile}.
+ */
+@Getter
+@AllArgsConstructor
+public class CachedAggregates {
+
+    private final long sourceSize;
+
+    private final long sourceLastModified;
+
+    private final long sourceChecksum;
+
+    private final boolean sourceEndsWithLineBreak;
+
+    private final TemperatureAggregates aggregates;
+
+}
@@ -0,0 +1,78 @@
+package large.file.reading.challenge.app.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * CompressionFormat is the format of a CSV file, detected from the magic bytes at its beginning rather than
+ * from its name. Only codecs available in the JDK are supported.
+ */
+public enum CompressionFormat {
+
+    NONE(new byte[0]) {
+        @Override
+        public InputStream decompress(InputStream input) {
+            return input;
+        }
+    },
+
+    /**
+     * gzip (RFC 1952), including files made of several concatenated gzip members.
+     */
+    GZIP(new byte[]{(byte) 0x1f, (byte) 0x8b}) {
+        @Override
+        public InputStream decompress(InputStream input) throws IOException {
+            return new GZIPInputStream(input, INPUT_BUFFER_SIZE);
+        }
+    };
+
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_MAGIC_BYTES = 2;
+
+    private final byte[] magicBytes;
+
+    CompressionFormat(byte[] magicBytes) {
+        this.magicBytes = magicBytes;
+    }
+
+    /**
+     * Wraps a stream of compressed bytes.
+     *
+     * @param input the compressed bytes
+     * @return a stream of the decompressed bytes
+     * @throws IOException if the header of the compressed data cannot be read
+     */
+    public abstract InputStream decompress(InputStream input) throws IOException;
+
+    /**
+     * @param channel the channel of the file
+     * @return the format of the file, {@link #NONE} if it does not start with the magic bytes of a known format
+     * @throws IOException if the file cannot be read
+     */
+    public static CompressionFormat detect(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(MAX_MAGIC_BYTES);
+        int read = Math.max(0, channel.read(header, 0));
+        for (CompressionFormat format : values()) {
+            if (format != NONE && format.matches(header, read)) {
+                return format;
+            }
+        }
+        return NONE;
+    }
+
+    private boolean matches(ByteBuffer header, int length) {
+        if (length < magicBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < magicBytes.length; i++) {
+            if (header.get(i) != magicBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
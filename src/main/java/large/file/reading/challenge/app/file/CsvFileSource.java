@@ -0,0 +1,104 @@
+package large.file.reading.challenge.app.file;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * CsvFileSource resolves the configured CSV location to the files, called shards, which are loaded together.
+ * The location is either:
+ * <ul>
+ *   <li>a single file,</li>
+ *   <li>a directory, in which case all of its regular files except hidden ones are shards,</li>
+ *   <li>a glob pattern in the file name part, such as {@code /data/temperatures-*.csv}, matched against
+ *       the files of the directory.</li>
+ * </ul>
+ * Subdirectories are never descended into.
+ */
+public final class CsvFileSource {
+
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    private final String location;
+
+    private final Path directory;
+
+    private final Predicate<Path> fileNameFilter;
+
+    private CsvFileSource(String location, Path directory, Predicate<Path> fileNameFilter) {
+        this.location = location;
+        this.directory = directory;
+        this.fileNameFilter = fileNameFilter;
+    }
+
+    /**
+     * @param location the path of a file or directory, or a glob pattern
+     * @return the source of the location
+     */
+    public static CsvFileSource of(String location) {
+        int separator = Math.max(location.lastIndexOf('/'), location.lastIndexOf('\\'));
+        String fileNamePart = location.substring(separator + 1);
+        if (fileNamePart.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0)) {
+            Path directory = separator < 0 ? Paths.get("") : Paths.get(location.substring(0, separator + 1));
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + fileNamePart);
+            return new CsvFileSource(location, directory.toAbsolutePath(), matcher::matches);
+        }
+
+        Path path = Paths.get(location).toAbsolutePath();
+        if (Files.isDirectory(path)) {
+            return new CsvFileSource(location, path, fileName -> !fileName.toString().startsWith("."));
+        }
+        Path fileName = path.getFileName();
+        return new CsvFileSource(location, path.getParent(), fileName::equals);
+    }
+
+    /**
+     * @return the directory containing the shards
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param fileName the name of a file in {@link #getDirectory()}
+     * @return {@code true} if the file is a shard of this source, provided it is a regular file
+     */
+    public boolean matches(Path fileName) {
+        return fileNameFilter.test(fileName);
+    }
+
+    /**
+     * Lists the shards which currently exist.
+     *
+     * @return the regular files matching the location, sorted by path
+     * @throws IOException if the directory cannot be listed
+     */
+    public List<Path> listFiles() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, file -> matches(file.getFileName()))) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    @Override
+    public String toString() {
+        return location;
+    }
+}
@@ -0,0 +1,116 @@
+package large.file.reading.challenge.app.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32C;
+
+/**
+ * Computes a checksum identifying the first {@code length} bytes of a file, to tell an append-only file
+ * from one that was truncated or rewritten. Every byte of the prefix is read, so a rewrite anywhere in it,
+ * even one keeping the length of the file, changes the checksum. CRC32C is computed with hardware
+ * instructions, so this costs about as much as reading the file, far less than parsing it.
+ *
+ * <p>The checksum of a file being parsed is better computed from the bytes the parser reads, so the file
+ * is read only once. Ranges of the file read separately, such as the chunks parsed in parallel, are
+ * checksummed with {@link CRC32C} too and their checksums are joined with {@link #combine}.</p>
+ */
+public final class FilePrefixChecksum {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The reversed Castagnoli polynomial of CRC32C.
+     */
+    private static final long POLYNOMIAL = 0x82F63B78L;
+
+    private FilePrefixChecksum() {
+    }
+
+    /**
+     * @param channel the channel of the file
+     * @param length  the length of the prefix
+     * @return the checksum of the prefix
+     * @throws IOException if the file cannot be read
+     */
+    public static long of(FileChannel channel, long length) throws IOException {
+        CRC32C crc = new CRC32C();
+        update(crc, channel, ByteBuffer.allocateDirect(BUFFER_SIZE), 0, length);
+        return crc.getValue();
+    }
+
+    /**
+     * Computes the checksum of two consecutive ranges of bytes from the checksums of both ranges, without
+     * reading them again, like {@code crc32_combine} of zlib: the first checksum is shifted over as many
+     * zero bits as the second range has, by multiplying it with powers of the matrix of a one bit shift.
+     *
+     * @param checksum         the CRC32C of the first range, {@code 0} if it is empty
+     * @param appendedChecksum the CRC32C of the second range
+     * @param appendedLength   the length of the second range in bytes
+     * @return the CRC32C of both ranges one after the other
+     */
+    public static long combine(long checksum, long appendedChecksum, long appendedLength) {
+        if (appendedLength <= 0) {
+            return checksum;
+        }
+        long[] even = new long[Integer.SIZE];
+        long[] odd = new long[Integer.SIZE];
+        odd[0] = POLYNOMIAL;
+        for (int n = 1; n < Integer.SIZE; n++) {
+            odd[n] = 1L << (n - 1);
+        }
+        square(even, odd);
+        square(odd, even);
+
+        long combined = checksum;
+        long length = appendedLength;
+        while (true) {
+            square(even, odd);
+            if ((length & 1) != 0) {
+                combined = multiply(even, combined);
+            }
+            length >>= 1;
+            if (length == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((length & 1) != 0) {
+                combined = multiply(odd, combined);
+            }
+            length >>= 1;
+            if (length == 0) {
+                break;
+            }
+        }
+        return combined ^ appendedChecksum;
+    }
+
+    private static long multiply(long[] matrix, long vector) {
+        long product = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                product ^= matrix[i];
+            }
+        }
+        return product;
+    }
+
+    private static void square(long[] square, long[] matrix) {
+        for (int n = 0; n < Integer.SIZE; n++) {
+            square[n] = multiply(matrix, matrix[n]);
+        }
+    }
+
+    private static void update(CRC32C crc, FileChannel channel, ByteBuffer buffer, long start, long end) throws IOException {
+        long position = start;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("File is shorter than " + end + " bytes");
+            }
+            crc.update(buffer.flip());
+            position += read;
+        }
+    }
+}
@@ -1,31 +1,225 @@
 package large.file.reading.challenge.app.file.watcher;
 
-import large.file.reading.challenge.app.service.CityTemperatureService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import large.file.reading.challenge.app.file.CsvFileSource;
 import large.file.reading.challenge.app.service.CsvFileDataLoaderService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
 
+
+/**
+ * Watches the CSV files and triggers {@link CsvFileDataLoaderService#checkIsFileChanged()} when they change.
+ *
+ * <p>By default the directory of the files is watched with a {@link WatchService}, and only events concerning
+ * files of the {@link CsvFileSource} are considered. Bursts of events are debounced, and a load is only
+ * triggered once the files have stopped growing for {@code file.watcher.debounce.ms}, so a writer is not
+ * interrupted halfway through. Polling of the files is used only when the directory cannot be watched,
+ * when watching fails, or when {@code file.watcher.mode} is set to {@code polling}.</p>
+ *
+ * <p>Whether the file system delivers events is not detected: the JDK falls back to an internal polling
+ * {@link WatchService} on some platforms, and network file systems may not report changes made by other
+ * hosts at all. Polling is chosen explicitly with {@code file.watcher.mode=polling} for those.</p>
+ */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class FileWatcherScheduler {
 
+    private static final String POLLING_MODE = "polling";
+
     private final CsvFileDataLoaderService csvFileDataLoaderService;
 
+    @Value("${path.to.example.csv.file}")
+    private String csvFilePath;
+
+    @Value("${file.watcher.mode:events}")
+    private String mode;
+
+    @Value("${file.watcher.debounce.ms:500}")
+    private long debounceMillis;
+
+    @Value("${file.watcher.max.delay.ms:10000}")
+    private long maxDelayMillis;
+
+    private volatile boolean pollingEnabled;
+
+    private WatchService watchService;
+
+    private Thread watcherThread;
+
     /**
-     * Periodically checks if the file being watched has been modified.
-     * This method is executed at a fixed rate, specified in milliseconds.
+     * Starts watching the directory of the CSV files for events, or enables polling if that is not possible.
+     */
+    @PostConstruct
+    public void start() {
+        if (POLLING_MODE.equalsIgnoreCase(mode)) {
+            enablePolling("polling mode is configured");
+            return;
+        }
+
+        CsvFileSource source = CsvFileSource.of(csvFilePath);
+        Path directory = source.getDirectory();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException | UnsupportedOperationException e) {
+            closeWatchService();
+            enablePolling("directory " + directory + " cannot be watched: " + e.getMessage());
+            return;
+        }
+
+        watcherThread = new Thread(() -> watchEvents(source), "csv-file-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        log.info("Watching {} for changes", source);
+    }
+
+    @PreDestroy
+    public void stop() {
+        closeWatchService();
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+        }
+    }
+
+    /**
+     * Periodically checks if the files being watched have been modified. It is a fallback used only when
+     * change events are not available, the interval is specified in milliseconds by {@code file.watcher.poll.interval.ms}.
      *
      * <p>If the file watcher scheduler is enabled in the {@link CsvFileDataLoaderService},
-     * it will check if the file has changed.</p>
+     * it will check if the files have changed.</p>
      */
-    @Scheduled(fixedRate = 5000)
+    @Scheduled(fixedDelayString = "${file.watcher.poll.interval.ms:5000}")
     public void watchFile() {
-        if (csvFileDataLoaderService.isFileWatcherSchedulerEnabled()) {
+        if (pollingEnabled && csvFileDataLoaderService.isFileWatcherSchedulerEnabled()) {
+            csvFileDataLoaderService.checkIsFileChanged();
+        }
+    }
+
+    /**
+     * Waits for events concerning the watched files and triggers a check once the files are quiet. A check
+     * which fails is logged and watching goes on. If watching itself fails, or an {@link Error} such as
+     * an {@link OutOfMemoryError} escapes, the files are polled instead, so changes are still picked up.
+     *
+     * @param source the watched files
+     */
+    private void watchEvents(CsvFileSource source) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean fileChanged = containsFileEvent(key, source);
+                if (!key.reset()) {
+                    enablePolling("the watched directory is no longer accessible");
+                    return;
+                }
+                if (fileChanged) {
+                    awaitQuietFiles(source);
+                    checkFiles();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Watch service of {} was closed", csvFilePath);
+        } catch (RuntimeException | Error e) {
+            log.error("Watching {} for changes failed", csvFilePath, e);
+            closeWatchService();
+            enablePolling("watching for change events failed");
+        }
+    }
+
+    private void checkFiles() {
+        try {
             csvFileDataLoaderService.checkIsFileChanged();
+        } catch (RuntimeException e) {
+            log.error("Checking {} for changes failed", csvFilePath, e);
+        }
+    }
+
+    /**
+     * Waits until no event has concerned the files for {@code file.watcher.debounce.ms} and their total size
+     * did not change in that time. Files that keep changing are checked after {@code file.watcher.max.delay.ms}
+     * at the latest.
+     *
+     * @param source the watched files
+     */
+    private void awaitQuietFiles(CsvFileSource source) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        long size = totalSize(source);
+
+        while (System.nanoTime() < deadline) {
+            WatchKey key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                boolean fileChanged = containsFileEvent(key, source);
+                key.reset();
+                if (fileChanged) {
+                    continue;
+                }
+            }
+            long currentSize = totalSize(source);
+            if (currentSize == size) {
+                return;
+            }
+            size = currentSize;
+        }
+        log.info("{} is still being written to, checking it anyway", csvFilePath);
+    }
+
+    /**
+     * @return the total size of the watched files, or {@code -1} if they cannot be listed
+     */
+    private static long totalSize(CsvFileSource source) {
+        long size = 0;
+        try {
+            for (Path file : source.listFiles()) {
+                size += Files.size(file);
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return size;
+    }
+
+    private static boolean containsFileEvent(WatchKey key, CsvFileSource source) {
+        boolean fileChanged = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || source.matches((Path) event.context())) {
+                fileChanged = true;
+            }
+        }
+        return fileChanged;
+    }
+
+    private void enablePolling(String reason) {
+        log.info("Polling {} for changes because {}", csvFilePath, reason);
+        pollingEnabled = true;
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("Error closing watch service of {}", csvFilePath, e);
+            }
         }
     }
 
@@ -0,0 +1,71 @@
+package large.file.reading.challenge.app.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import large.file.reading.challenge.app.store.DataSnapshot;
+import large.file.reading.challenge.app.store.DataStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the size of the data currently published in the {@link DataStore} as gauges: the version and the age
+ * of the snapshot, the number of cities and (city, year) rows, and the estimated heap size of the snapshot.
+ * The age is {@code NaN} until the first snapshot is published.
+ *
+ * <p>The hits, misses and evictions of the hot tier of a tiered store are exposed as counters, so its hit rate
+ * can be computed in Prometheus, e.g. {@code rate(data_store_hot_tier_requests_total{result="hit"}[5m])}
+ * divided by the rate of all requests, and the hot tier sized by {@code store.tiered.hot.max.bytes}.</p>
+ */
+@Component
+@RequiredArgsConstructor
+public class DataStoreMetrics implements MeterBinder {
+
+    private final DataStore dataStore;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("data.snapshot.version", dataStore, store -> store.getSnapshot().getVersion())
+                .description("Version of the published data snapshot")
+                .register(registry);
+        TimeGauge.builder("data.snapshot.age", dataStore, TimeUnit.MILLISECONDS, DataStoreMetrics::getSnapshotAgeMillis)
+                .description("Time since the published data snapshot was built")
+                .register(registry);
+        Gauge.builder("data.store.cities", dataStore, store -> store.getSnapshot().getCityCount())
+                .description("Cities in the published data snapshot")
+                .register(registry);
+        Gauge.builder("data.store.rows", dataStore, store -> store.getSnapshot().getRowCount())
+                .description("Annual (city, year) rows in the published data snapshot")
+                .register(registry);
+        Gauge.builder("data.store.memory", dataStore, store -> store.getSnapshot().getMemoryFootprint())
+                .description("Estimated heap size of the published data snapshot")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+
+        FunctionCounter.builder("data.store.hot.tier.requests", dataStore, store -> store.getHotTierStats().hitCount())
+                .description("Reads of cities answered by the hot tier of the tiered store")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("data.store.hot.tier.requests", dataStore, store -> store.getHotTierStats().missCount())
+                .description("Reads of cities answered by the hot tier of the tiered store")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("data.store.hot.tier.evictions", dataStore, store -> store.getHotTierStats().evictionCount())
+                .description("Cities evicted from the hot tier of the tiered store")
+                .register(registry);
+        Gauge.builder("data.store.hot.tier.size", dataStore, store -> store.getSnapshot().getHotTierBytes())
+                .description("Estimated heap size of the cities in the hot tier of the tiered store")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+    }
+
+    private static double getSnapshotAgeMillis(DataStore dataStore) {
+        DataSnapshot snapshot = dataStore.getSnapshot();
+        return snapshot.getVersion() == 0 ? Double.NaN : System.currentTimeMillis() - snapshot.getCreatedAtMillis();
+    }
+}
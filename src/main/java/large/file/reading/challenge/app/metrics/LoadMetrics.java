@@ -0,0 +1,77 @@
+package large.file.reading.challenge.app.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import large.file.reading.challenge.app.service.LoadProgress;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the totals of all loads of the CSV files recorded by {@link LoadProgress} as meters:
+ * <ul>
+ *   <li>{@code csv.load.bytes}, {@code csv.load.rows} and {@code csv.load.malformed} counters,</li>
+ *   <li>a {@code csv.load.bytes.read} counter of the bytes read from the files, including the bytes read
+ *       to checksum them,</li>
+ *   <li>{@code csv.load.spill.runs} and {@code csv.load.spill.bytes} counters of aggregates spilled to disk,</li>
+ *   <li>a {@code csv.load.phase} timer per {@link LoadProgress.Phase}, counting finished loads,</li>
+ *   <li>a {@code csv.load} timer of the finished loads, tagged with their result.</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class LoadMetrics implements MeterBinder {
+
+    private final LoadProgress loadProgress;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("csv.load.bytes", loadProgress, LoadProgress::getTotalBytesProcessed)
+                .description("Bytes of the CSV files processed by all loads, compressed bytes for compressed files")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        FunctionCounter.builder("csv.load.bytes.read", loadProgress, LoadProgress::getTotalBytesRead)
+                .description("Bytes read from the CSV files by all loads, including the bytes read only to checksum them")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        FunctionCounter.builder("csv.load.rows", loadProgress, LoadProgress::getTotalRowsProcessed)
+                .description("Rows parsed by all loads")
+                .baseUnit("rows")
+                .register(registry);
+        FunctionCounter.builder("csv.load.malformed", loadProgress, LoadProgress::getTotalMalformedRows)
+                .description("Malformed rows found by all loads")
+                .baseUnit("rows")
+                .register(registry);
+        FunctionCounter.builder("csv.load.spill.runs", loadProgress, LoadProgress::getTotalSpilledRuns)
+                .description("Run files of aggregates spilled to disk by all loads to stay within the memory budget")
+                .baseUnit("runs")
+                .register(registry);
+        FunctionCounter.builder("csv.load.spill.bytes", loadProgress, LoadProgress::getTotalSpilledBytes)
+                .description("Bytes of aggregates spilled to disk by all loads")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+
+        for (LoadProgress.Phase phase : LoadProgress.Phase.values()) {
+            FunctionTimer.builder("csv.load.phase", loadProgress,
+                            progress -> progress.getLoads(true) + progress.getLoads(false),
+                            progress -> progress.getTotalPhaseNanos(phase), TimeUnit.NANOSECONDS)
+                    .description("Time spent in a phase of the loads, added up over parallel threads")
+                    .tag("phase", phase.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+
+        for (boolean successful : new boolean[]{true, false}) {
+            FunctionTimer.builder("csv.load", loadProgress,
+                            progress -> progress.getLoads(successful),
+                            progress -> progress.getTotalLoadNanos(successful), TimeUnit.NANOSECONDS)
+                    .description("Finished loads of the CSV files and their duration")
+                    .tag("result", successful ? "success" : "failure")
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package large.file.reading.challenge.app.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+
+/**
+ * CityNameTable interns city names read directly from UTF-8 encoded bytes. It is a small
+ * open addressing hash table keyed by the raw bytes of the name, so a city that was already
+ * seen is resolved to its {@link String} without decoding or allocating anything.
+ *
+ * <p>An optional filter decides once per distinct name whether the city is accepted. Names of rejected
+ * cities are remembered too, so their rows are recognized as rejected with a single lookup.</p>
+ *
+ * <p>The table is not thread-safe, every parsing thread is expected to use its own instance.</p>
+ */
+public class CityNameTable {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private byte[][] keys = new byte[INITIAL_CAPACITY][];
+
+    private int[] hashes = new int[INITIAL_CAPACITY];
+
+    private String[] names = new String[INITIAL_CAPACITY];
+
+    private boolean[] accepted = new boolean[INITIAL_CAPACITY];
+
+    private final Predicate<String> filter;
+
+    private int size;
+
+    /**
+     * Creates a table accepting all cities.
+     */
+    public CityNameTable() {
+        this(null);
+    }
+
+    /**
+     * @param filter decides which cities are accepted, or {@code null} to accept all cities
+     */
+    public CityNameTable(Predicate<String> filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Returns the city name stored in the given range of the buffer.
+     *
+     * @param buffer the buffer containing UTF-8 encoded bytes
+     * @param start  the index of the first byte of the name (inclusive)
+     * @param end    the index of the last byte of the name (exclusive)
+     * @return the interned city name, or {@code null} if the city is rejected by the filter
+     */
+    public String get(ByteBuffer buffer, int start, int end) {
+        int hash = hash(buffer, start, end);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && matches(keys[slot], buffer, start, end)) {
+                return accepted[slot] ? names[slot] : null;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        byte[] key = new byte[end - start];
+        buffer.get(start, key);
+        String name = new String(key, StandardCharsets.UTF_8);
+        boolean isAccepted = filter == null || filter.test(name);
+        keys[slot] = key;
+        hashes[slot] = hash;
+        names[slot] = name;
+        accepted[slot] = isAccepted;
+
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+        return isAccepted ? name : null;
+    }
+
+    /**
+     * @return the number of distinct city names in the table, rejected ones included
+     */
+    public int size() {
+        return size;
+    }
+
+    private static int hash(ByteBuffer buffer, int start, int end) {
+        int hash = 0x811c9dc5;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ buffer.get(i)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buffer.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void resize() {
+        byte[][] oldKeys = keys;
+        int[] oldHashes = hashes;
+        String[] oldNames = names;
+        boolean[] oldAccepted = accepted;
+
+        keys = new byte[oldKeys.length * 2][];
+        hashes = new int[oldKeys.length * 2];
+        names = new String[oldKeys.length * 2];
+        accepted = new boolean[oldKeys.length * 2];
+        int mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+                names[slot] = oldNames[i];
+                accepted[slot] = oldAccepted[i];
+            }
+        }
+    }
+}
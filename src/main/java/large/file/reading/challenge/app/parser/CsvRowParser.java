@@ -0,0 +1,297 @@
+package large.file.reading.challenge.app.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+
+/**
+ * CsvRowParser parses rows in the {@code Warszawa;2018-09-19 05:17:32.619;9.97} format straight
+ * from UTF-8 encoded bytes. It locates the {@code ';'} separators, reads the 4-digit year and the
+ * 2-digit month from the beginning of the timestamp and parses the fixed-point temperature into an int of hundredths of
+ * a degree. Temperatures with more precision than hundredths make the line malformed. City names and years are
+ * interned, so parsing a row does not allocate any objects.
+ *
+ * <p>A city filter makes the parser skip the rows of the cities it rejects right after their city name
+ * has been looked up, without parsing their timestamp and temperature.</p>
+ *
+ * <p>The separators and line breaks are found by a {@link DelimiterScanner}, in bulk for up to
+ * {@value #SCANNED_POSITIONS} positions at a time. The vectorized scanner compares whole blocks of bytes
+ * with SIMD instructions, it is only built with the {@code simd} Maven profile, needs the JVM to be started
+ * with {@code --add-modules jdk.incubator.vector} and is replaced by the scalar scanner, with the same results,
+ * when either is missing.</p>
+ *
+ * <p>The parser is not thread-safe, every parsing thread is expected to use its own instance.</p>
+ */
+public class CsvRowParser {
+
+    private static final int SCANNED_POSITIONS = 1024;
+
+    private final CityNameTable cityNames;
+
+    private final DelimiterScanner delimiterScanner;
+
+    private final int[] delimiters = new int[SCANNED_POSITIONS];
+
+    private final String[] years = new String[10000];
+
+    /**
+     * Creates a parser of the rows of all cities.
+     */
+    public CsvRowParser() {
+        this(null);
+    }
+
+    /**
+     * @param cityFilter decides, once per distinct city, whether its rows are parsed or skipped,
+     *                   or {@code null} to parse the rows of all cities
+     */
+    public CsvRowParser(Predicate<String> cityFilter) {
+        this(cityFilter, false);
+    }
+
+    /**
+     * @param cityFilter decides, once per distinct city, whether its rows are parsed or skipped,
+     *                   or {@code null} to parse the rows of all cities
+     * @param vectorized whether to find the delimiters with the Vector API when it is available
+     */
+    public CsvRowParser(Predicate<String> cityFilter, boolean vectorized) {
+        this.cityNames = new CityNameTable(cityFilter);
+        this.delimiterScanner = DelimiterScanner.create(vectorized);
+    }
+
+    /**
+     * @return {@code true} if the delimiters are found with the Vector API
+     */
+    public boolean isVectorized() {
+        return DelimiterScanner.isVectorized(delimiterScanner);
+    }
+
+    /**
+     * Receives every parsed row.
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+
+        /**
+         * @param city        the interned city name
+         * @param year        the interned year
+         * @param month       the month, from 1 to 12
+         * @param temperature the temperature in hundredths of a degree
+         */
+        void onRow(String city, String year, int month, int temperature);
+    }
+
+    /**
+     * Receives every line which cannot be parsed.
+     */
+    @FunctionalInterface
+    public interface MalformedLineHandler {
+
+        /**
+         * Called with the bytes of the malformed line, without the line break. To abort parsing,
+         * the handler throws an exception.
+         *
+         * @param buffer the buffer being parsed
+         * @param start  the index of the first byte of the line in the buffer
+         * @param end    the index after the last byte of the line in the buffer
+         */
+        void onMalformedLine(ByteBuffer buffer, int start, int end);
+    }
+
+    /**
+     * Parses the lines between the position and the limit of the buffer. Lines are terminated
+     * by {@code \n} or {@code \r\n}, blank lines are skipped.
+     *
+     * <p>When {@code endOfInput} is {@code false}, an incomplete line at the end of the buffer is
+     * left unparsed and the position of the buffer is set to its first byte, so the caller can
+     * compact the buffer and read more data. Otherwise the last line is parsed even without
+     * a line break and the buffer is fully consumed.</p>
+     *
+     * @param buffer     the buffer to parse
+     * @param endOfInput whether the buffer ends with the last line of the input
+     * @param handler    the handler receiving the parsed rows
+     * @return the number of parsed rows
+     * @throws IllegalArgumentException if a line is malformed
+     */
+    public long parse(ByteBuffer buffer, boolean endOfInput, RowHandler handler) {
+        return parse(buffer, endOfInput, handler, CsvRowParser::throwMalformedLine);
+    }
+
+    /**
+     * Parses the lines between the position and the limit of the buffer like {@link #parse(ByteBuffer, boolean, RowHandler)},
+     * but passes malformed lines to a handler and carries on with the next line.
+     *
+     * @param buffer               the buffer to parse
+     * @param endOfInput           whether the buffer ends with the last line of the input
+     * @param handler              the handler receiving the parsed rows
+     * @param malformedLineHandler the handler receiving the malformed lines
+     * @return the number of parsed rows, malformed lines and skipped rows excluded
+     */
+    public long parse(ByteBuffer buffer, boolean endOfInput, RowHandler handler, MalformedLineHandler malformedLineHandler) {
+        int limit = buffer.limit();
+        int lineStart = buffer.position();
+        int citySeparator = -1;
+        int timestampSeparator = -1;
+        long rows = 0;
+
+        for (int scanned = lineStart; scanned < limit; ) {
+            int count = delimiterScanner.scan(buffer, scanned, limit, delimiters);
+            for (int d = 0; d < count; d++) {
+                int position = delimiters[d];
+                if (buffer.get(position) == '\n') {
+                    rows += parseLine(buffer, lineStart, position, citySeparator, timestampSeparator, handler, malformedLineHandler);
+                    lineStart = position + 1;
+                    citySeparator = -1;
+                    timestampSeparator = -1;
+                } else if (citySeparator < 0) {
+                    citySeparator = position;
+                } else if (timestampSeparator < 0) {
+                    timestampSeparator = position;
+                }
+            }
+            scanned = count < delimiters.length ? limit : delimiters[count - 1] + 1;
+        }
+        if (endOfInput && lineStart < limit) {
+            rows += parseLine(buffer, lineStart, limit, citySeparator, timestampSeparator, handler, malformedLineHandler);
+            lineStart = limit;
+        }
+
+        buffer.position(lineStart);
+        return rows;
+    }
+
+    /**
+     * Parses a line whose first two {@code ';'} separators were found by the scanner, {@code -1} if missing.
+     */
+    private int parseLine(ByteBuffer buffer, int start, int end, int citySeparator, int timestampSeparator,
+                          RowHandler handler, MalformedLineHandler malformedLineHandler) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end == start) {
+            return 0;
+        }
+
+        if (citySeparator <= start || timestampSeparator < 0) {
+            malformedLineHandler.onMalformedLine(buffer, start, end);
+            return 0;
+        }
+
+        String city = cityNames.get(buffer, start, citySeparator);
+        if (city == null) {
+            return 0;
+        }
+        String year = parseYear(buffer, citySeparator + 1, timestampSeparator);
+        int month = parseMonth(buffer, citySeparator + 1, timestampSeparator);
+        int temperature = parseTemperature(buffer, timestampSeparator + 1, end);
+        if (year == null || month == 0 || temperature == Integer.MIN_VALUE) {
+            malformedLineHandler.onMalformedLine(buffer, start, end);
+            return 0;
+        }
+
+        handler.onRow(city, year, month, temperature);
+        return 1;
+    }
+
+    /**
+     * Reads the year from the first 4 digits of the timestamp, which must be followed by {@code '-'}.
+     *
+     * @return the interned year, or {@code null} if the timestamp does not start with a year
+     */
+    private String parseYear(ByteBuffer buffer, int start, int end) {
+        if (end - start < 5 || buffer.get(start + 4) != '-') {
+            return null;
+        }
+        int year = 0;
+        for (int i = start; i < start + 4; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return null;
+            }
+            year = year * 10 + digit;
+        }
+
+        String interned = years[year];
+        if (interned == null) {
+            byte[] digits = new byte[4];
+            buffer.get(start, digits);
+            interned = new String(digits, StandardCharsets.US_ASCII);
+            years[year] = interned;
+        }
+        return interned;
+    }
+
+    /**
+     * Reads the month from the 2 digits following the year of the timestamp.
+     *
+     * @return the month from 1 to 12, or {@code 0} if the timestamp does not contain a valid month
+     */
+    private static int parseMonth(ByteBuffer buffer, int start, int end) {
+        if (end - start < 7) {
+            return 0;
+        }
+        int tens = buffer.get(start + 5) - '0';
+        int units = buffer.get(start + 6) - '0';
+        if (tens < 0 || tens > 1 || units < 0 || units > 9) {
+            return 0;
+        }
+        int month = tens * 10 + units;
+        return month <= 12 ? month : 0;
+    }
+
+    /**
+     * Parses a fixed-point number such as {@code -9.44} into hundredths. Numbers with non-zero digits beyond
+     * the second decimal place, such as {@code 12.345}, cannot be stored exactly and are rejected rather than
+     * rounded, so they never change the statistics silently; trailing zeros such as {@code 12.340} are accepted.
+     *
+     * @return the temperature in hundredths, or {@link Integer#MIN_VALUE} if the value is not a number
+     */
+    private static int parseTemperature(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long value = 0;
+        int integerDigits = 0;
+        for (; i < end && buffer.get(i) != '.'; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9 || ++integerDigits > 7) {
+                return Integer.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+
+        int fractionDigits = 0;
+        if (i < end) {
+            i++;
+            for (; i < end; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return Integer.MIN_VALUE;
+                }
+                if (fractionDigits < 2) {
+                    value = value * 10 + digit;
+                } else if (digit != 0) {
+                    return Integer.MIN_VALUE;
+                }
+                fractionDigits++;
+            }
+        }
+        if (integerDigits == 0 && fractionDigits == 0) {
+            return Integer.MIN_VALUE;
+        }
+        for (; fractionDigits < 2; fractionDigits++) {
+            value *= 10;
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    private static void throwMalformedLine(ByteBuffer buffer, int start, int end) {
+        byte[] line = new byte[end - start];
+        buffer.get(start, line);
+        throw new IllegalArgumentException("Malformed line: " + new String(line, StandardCharsets.UTF_8));
+    }
+}
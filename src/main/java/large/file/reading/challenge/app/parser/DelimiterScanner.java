@@ -0,0 +1,56 @@
+package large.file.reading.challenge.app.parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * DelimiterScanner finds the positions of the field separators {@code ';'} and the line breaks {@code '\n'}
+ * in a range of a buffer, so {@link CsvRowParser} can split lines into fields without looking at every byte
+ * again. Implementations must report exactly the same positions.
+ */
+interface DelimiterScanner {
+
+    /**
+     * The name of the scanner using the Vector API, which is only compiled with the {@code simd} Maven profile
+     */
+    String VECTOR_SCANNER_CLASS = "large.file.reading.challenge.app.parser.VectorDelimiterScanner";
+
+    /**
+     * Finds the positions of {@code ';'} and {@code '\n'} in ascending order, until the end of the range
+     * or until the array of positions is full.
+     *
+     * @param buffer    the buffer to scan
+     * @param start     the index of the first byte to scan
+     * @param end       the index after the last byte to scan
+     * @param positions receives the positions
+     * @return the number of positions found, {@code positions.length} if scanning stopped before the end
+     * of the range, in which case it continues after the last position found
+     */
+    int scan(ByteBuffer buffer, int start, int end, int[] positions);
+
+    /**
+     * Creates the vectorized scanner if it is asked for and can be used, otherwise the scalar one.
+     * The vectorized scanner is only compiled with the {@code simd} Maven profile and needs the JVM to be
+     * started with {@code --add-modules jdk.incubator.vector}, so it is looked up by name.
+     *
+     * @param vectorized whether to use the Vector API when it is available
+     * @return the scanner
+     */
+    static DelimiterScanner create(boolean vectorized) {
+        if (vectorized && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (DelimiterScanner) Class.forName(VECTOR_SCANNER_CLASS).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // built without the simd profile, parse with the scalar scanner
+            }
+        }
+        return new ScalarDelimiterScanner();
+    }
+
+    /**
+     * @param scanner a scanner
+     * @return {@code true} if the scanner uses the Vector API
+     */
+    static boolean isVectorized(DelimiterScanner scanner) {
+        return scanner.getClass().getName().equals(VECTOR_SCANNER_CLASS);
+    }
+}
@@ -0,0 +1,33 @@
+package large.file.reading.challenge.app.parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds delimiters by comparing one byte at a time.
+ */
+final class ScalarDelimiterScanner implements DelimiterScanner {
+
+    @Override
+    public int scan(ByteBuffer buffer, int start, int end, int[] positions) {
+        return scan(buffer, start, end, positions, 0);
+    }
+
+    /**
+     * Scans like {@link #scan(ByteBuffer, int, int, int[])}, appending to the positions found before.
+     *
+     * @param count the number of positions found before
+     * @return the number of positions found before and now
+     */
+    static int scan(ByteBuffer buffer, int start, int end, int[] positions, int count) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == ';' || b == '\n') {
+                positions[count++] = i;
+                if (count == positions.length) {
+                    return count;
+                }
+            }
+        }
+        return count;
+    }
+}
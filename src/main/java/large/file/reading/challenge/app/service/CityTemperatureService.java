@@ -1,26 +1,42 @@
 package large.file.reading.challenge.app.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
+import large.file.reading.challenge.app.aggregate.TemperatureGranularity;
+import large.file.reading.challenge.app.aggregate.TemperatureStatistic;
 import org.springframework.beans.factory.annotation.Value;
 import large.file.reading.challenge.app.dto.AnnualAverageTemperatureDTO;
 import large.file.reading.challenge.app.dto.CityTemperatureResponseDTO;
-import large.file.reading.challenge.app.dto.CsvRowData;
+import large.file.reading.challenge.app.dto.DataExportDTO;
+import large.file.reading.challenge.app.dto.SerializedCityTemperatureDTO;
+import large.file.reading.challenge.app.dto.TemperatureStatisticsResponseDTO;
 import large.file.reading.challenge.app.exception.CityNotFoundException;
+import large.file.reading.challenge.app.exception.DataLoadingException;
 import large.file.reading.challenge.app.exception.InvalidCityException;
+import large.file.reading.challenge.app.exception.InvalidQueryException;
+import large.file.reading.challenge.app.store.CityStatistics;
+import large.file.reading.challenge.app.store.DataSnapshot;
 import large.file.reading.challenge.app.store.DataStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -41,20 +57,31 @@ import java.util.stream.Stream;
 @Slf4j
 public class CityTemperatureService {
 
+    private static final int EXPORT_BUFFER_SIZE = 1 << 16;
+
     private final DataStore dataStore;
 
+    private final LoadProgress loadProgress;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${city.batch.max.cities:1000}")
+    private int batchMaxCities = 1000;
+
+    @Value("${city.search.max.limit:100}")
+    private int searchMaxLimit = 100;
+
     /**
      * Retrieves the annual average temperatures for a given city.
      *
      * @param city the name of the city
      * @return a {@link CityTemperatureResponseDTO} containing the city's annual average temperatures and the HTTP status
      * @throws InvalidCityException if the city parameter is null or empty
+     * @throws DataLoadingException if the initial load of the data has not finished yet
      * @throws CityNotFoundException if no data is found for the given city
      */
     public CityTemperatureResponseDTO getAnnualAverageTemperatures(String city) {
-        if (city == null || city.trim().isEmpty()) {
-            throw new InvalidCityException("City cannot be null or empty");
-        }
+        validateRequest(city);
 
         List<AnnualAverageTemperatureDTO> annualAverageTemperatureDTOList = dataStore.getData(city);
 
@@ -64,4 +91,226 @@ public class CityTemperatureService {
 
         return new CityTemperatureResponseDTO(city, annualAverageTemperatureDTOList, HttpStatus.OK);
     }
+
+    /**
+     * Retrieves the annual average temperatures for a given city, already serialized to JSON when the data was loaded.
+     * The city is matched ignoring case, Polish diacritics and surrounding whitespace.
+     *
+     * @param city the name of the city
+     * @return a {@link SerializedCityTemperatureDTO} containing the JSON response and the ETag of the dataset
+     * @throws InvalidCityException if the city parameter is null or empty
+     * @throws DataLoadingException if the initial load of the data has not finished yet
+     * @throws CityNotFoundException if no data is found for the given city
+     */
+    public SerializedCityTemperatureDTO getSerializedAnnualAverageTemperatures(String city) {
+        validateRequest(city);
+
+        DataSnapshot snapshot = dataStore.getSnapshot();
+        String storedCity = snapshot.resolveCity(city);
+
+        if (null == storedCity) {
+            throw new CityNotFoundException("Data for city " + city +  " was not found");
+        }
+
+        return new SerializedCityTemperatureDTO(storedCity, snapshot.getJson(storedCity), snapshot.getETag());
+    }
+
+    /**
+     * Calculates a statistic of the temperatures of a city for every year, or every month, in a range of years.
+     * The values come from the statistics accumulated while loading the data, so the time taken depends only
+     * on the number of years in the range. The city is matched like in {@link #getSerializedAnnualAverageTemperatures}.
+     *
+     * @param city        the name of the city
+     * @param fromYear    the first year, inclusive, or {@code null} for no lower bound
+     * @param toYear      the last year, inclusive, or {@code null} for no upper bound
+     * @param statistic   the name of a {@link TemperatureStatistic}, case-insensitive
+     * @param granularity the name of a {@link TemperatureGranularity}, case-insensitive
+     * @return a {@link TemperatureStatisticsResponseDTO} with the values and the statistic over the whole range
+     * @throws InvalidCityException if the city parameter is null or empty
+     * @throws InvalidQueryException if the statistic, the granularity or the range of years is invalid
+     * @throws DataLoadingException if the initial load of the data has not finished yet
+     * @throws CityNotFoundException if no data is found for the given city
+     */
+    public TemperatureStatisticsResponseDTO getTemperatureStatistics(String city, Integer fromYear, Integer toYear,
+                                                                     String statistic, String granularity) {
+        TemperatureStatistic temperatureStatistic;
+        TemperatureGranularity temperatureGranularity;
+        try {
+            temperatureStatistic = TemperatureStatistic.fromName(statistic);
+            temperatureGranularity = TemperatureGranularity.fromName(granularity);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidQueryException(e.getMessage());
+        }
+        int from = fromYear == null ? Integer.MIN_VALUE : fromYear;
+        int to = toYear == null ? Integer.MAX_VALUE : toYear;
+        if (from > to) {
+            throw new InvalidQueryException("fromYear cannot be greater than toYear");
+        }
+        validateRequest(city);
+
+        DataSnapshot snapshot = dataStore.getSnapshot();
+        String storedCity = snapshot.resolveCity(city);
+        CityStatistics cityStatistics = storedCity == null ? null : snapshot.getStatistics(storedCity);
+
+        if (null == cityStatistics) {
+            throw new CityNotFoundException("Data for city " + city +  " was not found");
+        }
+
+        return new TemperatureStatisticsResponseDTO(storedCity,
+                temperatureStatistic.name().toLowerCase(Locale.ROOT),
+                temperatureGranularity.name().toLowerCase(Locale.ROOT),
+                cityStatistics.query(from, to, temperatureStatistic, temperatureGranularity == TemperatureGranularity.MONTH),
+                cityStatistics.total(from, to, temperatureStatistic));
+    }
+
+    /**
+     * Streams the annual average temperatures of several cities as a JSON array, in the order the cities were
+     * requested, with duplicates removed. All cities are read from the same snapshot of the data. A city that
+     * is empty or unknown gets an entry with an {@code error} instead of failing the whole request.
+     *
+     * @param cities the names of the cities
+     * @return a {@link StreamingResponseBody} writing the JSON array
+     * @throws InvalidCityException if no city or more than {@code city.batch.max.cities} cities are requested
+     * @throws DataLoadingException if the initial load of the data has not finished yet
+     */
+    public StreamingResponseBody streamAnnualAverageTemperatures(List<String> cities) {
+        Set<String> uniqueCities = validateBatch(cities);
+
+        DataSnapshot snapshot = dataStore.getSnapshot();
+        return outputStream -> writeAnnualAverageTemperatures(snapshot, uniqueCities, outputStream);
+    }
+
+    /**
+     * Validates a request for the annual average temperatures of several cities.
+     *
+     * @param cities the names of the cities
+     * @return the cities in the order they were requested, with duplicates removed
+     * @throws InvalidCityException if no city or more than {@code city.batch.max.cities} cities are requested
+     * @throws DataLoadingException if the initial load of the data has not finished yet
+     */
+    public Set<String> validateBatch(List<String> cities) {
+        if (cities == null || cities.isEmpty()) {
+            throw new InvalidCityException("At least one city must be requested");
+        }
+        Set<String> uniqueCities = new LinkedHashSet<>(cities);
+        if (uniqueCities.size() > batchMaxCities) {
+            throw new InvalidCityException("At most " + batchMaxCities + " cities can be requested at once");
+        }
+        if (!loadProgress.isInitialLoadCompleted()) {
+            throw new DataLoadingException("Data is still loading, please retry later");
+        }
+        return uniqueCities;
+    }
+
+    private void writeAnnualAverageTemperatures(DataSnapshot snapshot, Set<String> cities, OutputStream outputStream) throws IOException {
+        outputStream.write('[');
+        boolean first = true;
+        for (String city : cities) {
+            if (!first) {
+                outputStream.write(',');
+            }
+            first = false;
+
+            byte[] json = city == null || city.trim().isEmpty() ? null : snapshot.getJson(city);
+            if (json != null) {
+                outputStream.write(json);
+            } else {
+                Map<String, String> error = new LinkedHashMap<>();
+                error.put("city", city);
+                error.put("error", city == null || city.trim().isEmpty()
+                        ? "City cannot be null or empty"
+                        : "Data for city " + city + " was not found");
+                outputStream.write(objectMapper.writeValueAsBytes(error));
+            }
+        }
+        outputStream.write(']');
+    }
+
+    /**
+     * Exports the annual average temperatures of all cities of the current snapshot, so that the whole dataset
+     * can be pulled with a single request. All cities are read from the same snapshot, even when a reload
+     * publishes a new one during the export.
+     *
+     * <p>The cities are written one at a time through a buffer of a fixed size, so the memory used does not
+     * depend on the number of cities. Writes block while the client does not read, so a slow client holds back
+     * the export instead of having it buffered.</p>
+     *
+     * @param format the name of a {@link DataExportFormat}, case-insensitive
+     * @return a {@link DataExportDTO} with the content type, the ETag and version of the dataset and the body
+     * writing the export
+     * @throws InvalidQueryException if the format is unknown
+     * @throws DataLoadingException if the initial load of the data has not finished yet
+     */
+    public DataExportDTO exportAnnualAverageTemperatures(String format) {
+        return export(format, true);
+    }
+
+    /**
+     * Exports the annual average temperatures of all cities like {@link #exportAnnualAverageTemperatures}, but
+     * without the start and the end of the format, so the cities can be joined with the cities of the exports
+     * of other peers, see {@link DataExportFormat#transferCities}.
+     *
+     * @param format the name of a {@link DataExportFormat}, case-insensitive
+     * @return a {@link DataExportDTO} with the content type, the ETag and version of the dataset and the body
+     * writing the cities
+     * @throws InvalidQueryException if the format is unknown
+     * @throws DataLoadingException if the initial load of the data has not finished yet
+     */
+    public DataExportDTO exportCityAnnualAverageTemperatures(String format) {
+        return export(format, false);
+    }
+
+    private DataExportDTO export(String format, boolean whole) {
+        DataExportFormat exportFormat;
+        try {
+            exportFormat = DataExportFormat.fromName(format);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidQueryException(e.getMessage());
+        }
+        if (!loadProgress.isInitialLoadCompleted()) {
+            throw new DataLoadingException("Data is still loading, please retry later");
+        }
+
+        DataSnapshot snapshot = dataStore.getSnapshot();
+        return new DataExportDTO(exportFormat.getMediaType(), snapshot.getETag(), snapshot.getVersion(), outputStream -> {
+            OutputStream bufferedOutputStream = new BufferedOutputStream(outputStream, EXPORT_BUFFER_SIZE);
+            if (whole) {
+                exportFormat.write(snapshot, bufferedOutputStream);
+            } else {
+                exportFormat.writeCities(snapshot, bufferedOutputStream);
+            }
+            bufferedOutputStream.flush();
+        });
+    }
+
+    /**
+     * Finds cities whose names start with a prefix, for autocompletion. The prefix is matched ignoring case,
+     * Polish diacritics and surrounding whitespace.
+     *
+     * @param prefix the prefix, all cities match an empty prefix
+     * @param limit  the maximum number of cities, from 1 to {@code city.search.max.limit}
+     * @return the names of the matching cities in alphabetical order
+     * @throws InvalidQueryException if the limit is invalid
+     * @throws DataLoadingException if the initial load of the data has not finished yet
+     */
+    public List<String> findCities(String prefix, int limit) {
+        if (limit < 1 || limit > searchMaxLimit) {
+            throw new InvalidQueryException("limit must be between 1 and " + searchMaxLimit);
+        }
+        if (!loadProgress.isInitialLoadCompleted()) {
+            throw new DataLoadingException("Data is still loading, please retry later");
+        }
+
+        return dataStore.getSnapshot().findCitiesStartingWith(prefix == null ? "" : prefix, limit);
+    }
+
+    private void validateRequest(String city) {
+        if (city == null || city.trim().isEmpty()) {
+            throw new InvalidCityException("City cannot be null or empty");
+        }
+
+        if (!loadProgress.isInitialLoadCompleted()) {
+            throw new DataLoadingException("Data is still loading, please retry later");
+        }
+    }
 }
@@ -1,24 +1,60 @@
 package large.file.reading.challenge.app.service;
 
 import jakarta.annotation.PostConstruct;
+import large.file.reading.challenge.app.aggregate.AggregateSpill;
+import large.file.reading.challenge.app.aggregate.TemperatureAccumulator;
+import large.file.reading.challenge.app.aggregate.TemperatureAggregates;
+import large.file.reading.challenge.app.cluster.ClusterPartitioning;
 import large.file.reading.challenge.app.dto.AnnualAverageTemperatureDTO;
-import large.file.reading.challenge.app.dto.CsvRowData;
+import large.file.reading.challenge.app.file.AggregatesCacheFile;
+import large.file.reading.challenge.app.file.CachedAggregates;
+import large.file.reading.challenge.app.file.CompressionFormat;
+import large.file.reading.challenge.app.file.CsvFileSource;
+import large.file.reading.challenge.app.file.FilePrefixChecksum;
+import large.file.reading.challenge.app.parser.CsvRowParser;
+import large.file.reading.challenge.app.store.CityStatistics;
 import large.file.reading.challenge.app.store.DataStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.zip.CRC32C;
 
 /**
  * Class for handling loading data from csv file
@@ -28,155 +64,890 @@ import java.util.stream.Stream;
 @Slf4j
 public class CsvFileDataLoaderService {
 
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int MAX_QUARANTINED_LINE_LENGTH = 1024;
+
+    private static final Block END_OF_BLOCKS = new Block(ByteBuffer.allocate(0), -1);
+
+    /**
+     * A block of complete lines of a decompressed file.
+     *
+     * @param buffer the lines
+     * @param offset the offset of the first line in the decompressed file
+     */
+    private record Block(ByteBuffer buffer, long offset) {
+    }
+
+    /**
+     * The temperatures parsed from a range of a file.
+     *
+     * @param aggregates the temperatures grouped by city and year
+     * @param checksum   the CRC32C of the bytes of the range, computed while they were parsed
+     */
+    private record ParsedRange(TemperatureAggregates aggregates, long checksum) {
+    }
+
     private final DataStore dataStore;
 
+    private final LoadProgress loadProgress;
+
+    private final ClusterPartitioning clusterPartitioning;
+
     @Value("${path.to.example.csv.file}")
     private String csvFilePath;
 
-    private long csvFileLastModified;
+    @Value("${csv.loader.parallel.enabled:false}")
+    private boolean parallelLoadingEnabled;
+
+    @Value("${csv.loader.parallel.threads:0}")
+    private int parallelLoadingThreads;
+
+    @Value("${csv.loader.parallel.chunk.size.bytes:268435456}")
+    private long parallelLoadingChunkSize;
+
+    @Value("${csv.loader.incremental.enabled:true}")
+    private boolean incrementalLoadingEnabled;
+
+    @Value("${csv.cache.dir:}")
+    private String cacheDirectory = "";
+
+    @Value("${csv.loader.startup.async:true}")
+    private boolean asyncStartupEnabled;
+
+    @Value("${csv.loader.shards.threads:0}")
+    private int shardLoadingThreads;
+
+    @Value("${csv.loader.malformed.rows.max:0}")
+    private long maxMalformedRows;
+
+    @Value("${csv.loader.decompression.block.size.bytes:1048576}")
+    private int decompressionBlockSize = READ_BUFFER_SIZE;
+
+    @Value("${csv.loader.decompression.queue.blocks:16}")
+    private int decompressionQueueBlocks = 16;
+
+    @Value("${csv.loader.aggregation.memory.budget.bytes:0}")
+    private long aggregationMemoryBudget;
+
+    @Value("${csv.loader.aggregation.spill.dir:}")
+    private String spillDirectory = "";
+
+    @Value("${csv.parser.simd.enabled:false}")
+    private boolean simdParsingEnabled;
+
+    /**
+     * Spring Boot's application task executor, which is shut down with the application context
+     */
+    @Autowired
+    @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    private TaskExecutor taskExecutor;
+
+    private Map<Path, CachedAggregates> loadedShards = Map.of();
+
+    private AggregateSpill aggregateSpill;
 
     private boolean fileWatcherEnabled;
 
+    /**
+     * Starts the initial load. With {@code csv.loader.startup.async} enabled the load runs in the background
+     * on the application task executor, so the web server starts right away and queries are answered with 503
+     * until the load finishes.
+     */
     @PostConstruct
     public void init() {
-        loadCsvData();
+        if (simdParsingEnabled && !newCsvRowParser().isVectorized()) {
+            log.warn("csv.parser.simd.enabled needs a build with the simd Maven profile and the JVM to be started with --add-modules jdk.incubator.vector, parsing without SIMD");
+        }
+        if (asyncStartupEnabled) {
+            taskExecutor.execute(this::loadInitialDataInBackground);
+        } else {
+            loadInitialData();
+        }
+    }
+
+    private void loadInitialData() {
+        if (!restoreAggregatesFromCache()) {
+            loadCsvData();
+        }
+        if (!loadProgress.isInitialLoadCompleted()) {
+            loadProgress.finish(false);
+        }
+    }
+
+    /**
+     * Runs the initial load on the task executor. Errors which escape the load, which would otherwise end up
+     * in the executor's thread, are logged and recorded as a failed load, so queries stop waiting for it.
+     */
+    void loadInitialDataInBackground() {
+        try {
+            loadInitialData();
+        } catch (RuntimeException | Error e) {
+            log.error("Initial load of {} failed", csvFilePath, e);
+            loadProgress.finish(false);
+        }
+    }
+
+    /**
+     * Restores the aggregates saved in the cache files by a previous run, one cache file per CSV file.
+     * If none of the CSV files has changed since (same size, last modified date and checksum), the aggregates
+     * are published right away and no CSV file needs to be parsed at all. The aggregates of files which have
+     * only been appended to, or which have not changed while others did, are restored as well, so that
+     * {@link #loadCsvData()} parses just the appended rows and the changed files.
+     *
+     * @return {@code true} if the cached aggregates were published
+     */
+    synchronized boolean restoreAggregatesFromCache() {
+        if (cacheDirectory.isBlank() || aggregationMemoryBudget > 0) {
+            return false;
+        }
+        List<Path> files = listCsvFiles();
+        if (files.isEmpty()) {
+            return false;
+        }
+
+        Map<Path, CachedAggregates> restoredShards = new LinkedHashMap<>();
+        boolean allUnchanged = true;
+        for (Path file : files) {
+            Optional<CachedAggregates> cachedAggregates = AggregatesCacheFile.read(getCacheFilePath(file));
+            if (cachedAggregates.isEmpty()) {
+                allUnchanged = false;
+                continue;
+            }
+
+            CachedAggregates cached = cachedAggregates.get();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long lastModified = file.toFile().lastModified();
+                long fileSize = channel.size();
+                boolean unchanged = fileSize == cached.getSourceSize() && lastModified == cached.getSourceLastModified();
+                boolean appended = fileSize > cached.getSourceSize() && isIncrementalLoadingEnabled();
+                if (!(unchanged || appended) || !isPrefixUnchanged(channel, cached)) {
+                    log.info("Cache file {} is stale, loading file {}", getCacheFilePath(file), file);
+                    allUnchanged = false;
+                    continue;
+                }
+                restoredShards.put(file, cached);
+                allUnchanged &= unchanged;
+            } catch (IOException e) {
+                log.warn("Error validating cache file {}", getCacheFilePath(file), e);
+                allUnchanged = false;
+            }
+        }
+
+        loadedShards = restoredShards;
+        if (!allUnchanged) {
+            return false;
+        }
+
+        calculateAnnualAverageTemperature(mergeShards(restoredShards.values()));
+        loadProgress.finish(true);
+        fileWatcherEnabled = true;
+        log.info("Restored data of {} from {} cache file(s) in {}", csvFilePath, restoredShards.size(), cacheDirectory);
+        return true;
     }
 
     /**
-     * Synchronized method to load and process the CSV data from the file specified
-     * by {@code csvFilePath}. This method performs the following steps:
+     * Synchronized method to load and process the CSV data from the files specified
+     * by {@code csvFilePath}, which is a single file, a directory or a glob pattern (see {@link CsvFileSource}).
+     * This method performs the following steps:
      * <ol>
-     *   <li>Clears the data cache.</li>
      *   <li>Disables the file watcher during data loading.</li>
-     *   <li>Checks if the CSV file exists.</li>
-     *   <li>If the file exists, logs the start of data loading.</li>
-     *   <li>Reads the CSV file line by line and converts each line to a {@code CsvRowData} object.</li>
-     *   <li>Groups the temperatures by year and city.</li>
-     *   <li>Calculates the annual average temperature for each city.</li>
+     *   <li>Lists the CSV files, called shards. If there is none, the previous data is kept.</li>
+     *   <li>Parses the raw bytes of every shard with a {@link CsvRowParser} and groups the temperatures
+     *       by year and city. Shards are loaded concurrently on up to {@code csv.loader.shards.threads} threads.
+     *       When {@code csv.loader.parallel.enabled} is set, a shard is memory-mapped and split into
+     *       newline-aligned chunks which are parsed concurrently. A gzip-compressed shard is decompressed
+     *       on a dedicated thread while it is being parsed.
+     *       If a shard has only grown since the previous load, just the appended bytes are parsed
+     *       and folded into its previously loaded aggregates, so a shard which has not changed is not parsed
+     *       at all. Shards which no longer exist are dropped.</li>
+     *   <li>Merges the aggregates of all shards, calculates the annual average temperature for each city and
+     *       publishes the results in the data store in one atomic swap. Until then, and whenever loading
+     *       any of the shards fails, the previous data stays available.</li>
+     *   <li>With {@code csv.loader.aggregation.memory.budget.bytes} set, the aggregates built while parsing
+     *       are kept within that budget by spilling them to sorted run files in {@code csv.loader.aggregation.spill.dir},
+     *       which are merged city by city when publishing (see {@link AggregateSpill}). The aggregates of the shards
+     *       are not kept after publishing then, so every load parses all shards and no cache files are written.</li>
      *   <li>Logs the completion of data loading.</li>
      *   <li>Handles any {@link IOException} that occurs during file reading.</li>
-     *   <li>Updates the {@code csvFileLastModified} timestamp to the last modified date of the CSV file.</li>
      * </ol>
-     * Finally, the file watcher is re-enabled after data loading.
+     * Finally, the file watcher is re-enabled after data loading, even if an {@link Error} escapes it.
      */
     synchronized void loadCsvData() {
-        dataStore.clearCache();
         fileWatcherEnabled = false;
+        try {
+            List<Path> files = listCsvFiles();
+            if (!files.isEmpty()) {
+                log.info("loadCsvData started");
 
-        if (csvFileExists()) {
-            log.info("loadCsvData started");
+                try (AggregateSpill spill = aggregationMemoryBudget > 0 ? new AggregateSpill(aggregationMemoryBudget, getSpillDirectory()) : null) {
+                    aggregateSpill = spill;
+                    loadProgress.start(estimateBytesToLoad(files));
+                    Map<Path, CachedAggregates> shards = loadShards(files);
 
-            try (Stream<String> lines = Files.lines(Paths.get(csvFilePath))) {
-                Stream<CsvRowData> csvRowDataStream = lines.map(this::getCsvRowData);
-                Map<String, Map<String, List<Double>>> temperaturesGroupedByYearAndCity = groupTemperaturesByYearAndCity(csvRowDataStream);
-                calculateAnnualAverageTemperature(temperaturesGroupedByYearAndCity);
-                log.info("loadCsvData finished");
-            } catch (IOException e) {
-                log.error("Error reading data from file {}", csvFilePath, e);
+                    calculateAnnualAverageTemperature(mergeShards(shards.values()));
+                    if (spill != null) {
+                        loadProgress.spilled(spill.getSpilledRuns(), spill.getSpilledBytes());
+                        log.info("Spilled aggregates {} times, {} bytes in total", spill.getSpilledRuns(), spill.getSpilledBytes());
+                        shards.replaceAll((file, shard) -> withoutAggregates(shard));
+                    }
+                    loadProgress.finish(true);
+                    shards.forEach((file, shard) -> {
+                        if (shard != loadedShards.get(file)) {
+                            saveAggregatesToCache(file, shard);
+                        }
+                    });
+                    loadedShards = shards;
+                    log.info("loadCsvData finished");
+                } catch (IOException | RuntimeException e) {
+                    loadProgress.finish(false);
+                    log.error("Error reading data from {}", csvFilePath, e);
+                } finally {
+                    aggregateSpill = null;
+                }
             }
+        } finally {
+            fileWatcherEnabled = true;
+        }
+    }
 
-            csvFileLastModified = getCsvFileLastModifedDate();
+    private List<Path> listCsvFiles() {
+        try {
+            return CsvFileSource.of(csvFilePath).listFiles();
+        } catch (IOException e) {
+            log.error("Error listing CSV files of {}", csvFilePath, e);
+            return List.of();
         }
+    }
 
-        fileWatcherEnabled = true;
+    private boolean isIncrementalLoadingEnabled() {
+        return incrementalLoadingEnabled && aggregationMemoryBudget <= 0;
+    }
+
+    private Path getSpillDirectory() {
+        return Paths.get(spillDirectory.isBlank() ? System.getProperty("java.io.tmpdir") : spillDirectory);
+    }
+
+    /**
+     * @return new aggregates, counting against the memory budget of the current load if there is one
+     */
+    private TemperatureAggregates newAggregates() {
+        return new TemperatureAggregates(aggregateSpill);
+    }
+
+    /**
+     * Keeps only the identity of a shard, which is enough to detect whether it changed.
+     */
+    private static CachedAggregates withoutAggregates(CachedAggregates shard) {
+        return new CachedAggregates(shard.getSourceSize(), shard.getSourceLastModified(), shard.getSourceChecksum(),
+                shard.isSourceEndsWithLineBreak(), new TemperatureAggregates());
+    }
+
+    private long estimateBytesToLoad(List<Path> files) {
+        long bytes = 0;
+        for (Path file : files) {
+            long fileSize = file.toFile().length();
+            CachedAggregates previous = loadedShards.get(file);
+            boolean appended = isIncrementalLoadingEnabled() && previous != null && fileSize >= previous.getSourceSize();
+            bytes += appended ? fileSize - previous.getSourceSize() : fileSize;
+        }
+        return bytes;
     }
 
     /**
-     * Groups temperatures by year and city from a stream of CsvRowData.
+     * Loads the given shards. A single shard is loaded on the calling thread, several shards on a bounded pool
+     * of {@code csv.loader.shards.threads} threads.
      *
-     * @param csvRowDataStream a stream of CsvRowData objects
-     * @return a map where the key is the city name and the value is another map.
-     *         This inner map's key is the year and the value is a list of temperatures for that year.
+     * @param files the shards, sorted by path
+     * @return the aggregates of every shard, in the order of {@code files}
+     * @throws IOException if any of the shards cannot be loaded
      */
-    private Map<String, Map<String, List<Double>>> groupTemperaturesByYearAndCity(Stream<CsvRowData> csvRowDataStream) {
-        return csvRowDataStream
-                .collect(Collectors.groupingBy(
-                        CsvRowData::getCity,
-                        Collectors.groupingBy(
-                                CsvRowData::getYear,
-                                Collectors.mapping(CsvRowData::getTemperature, Collectors.toList())
-                        )
-                ));
+    private Map<Path, CachedAggregates> loadShards(List<Path> files) throws IOException {
+        Map<Path, CachedAggregates> shards = new LinkedHashMap<>();
+        if (files.size() == 1) {
+            Path file = files.get(0);
+            shards.put(file, loadShard(file, loadedShards.get(file)));
+            return shards;
+        }
+
+        int threads = Math.min(files.size(), shardLoadingThreads > 0 ? shardLoadingThreads : Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Map<Path, CachedAggregates> previousShards = loadedShards;
+        Path file = null;
+        try {
+            Map<Path, Future<CachedAggregates>> results = new LinkedHashMap<>();
+            for (Path shard : files) {
+                results.put(shard, executor.submit(() -> loadShard(shard, previousShards.get(shard))));
+            }
+            for (Map.Entry<Path, Future<CachedAggregates>> result : results.entrySet()) {
+                file = result.getKey();
+                shards.put(file, result.getValue().get());
+            }
+            return shards;
+        } catch (ExecutionException e) {
+            throw new IOException("Loading of file " + file + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Loading of " + csvFilePath + " was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     /**
-     * Calculates the annual average temperature for each city and stores the results in the data store.
+     * Loads a single shard. The aggregates loaded previously are never modified, so they stay intact
+     * if loading fails. Compressed shards are always loaded as a whole when they have changed.
+     *
+     * <p>The checksum of the shard is computed from the bytes as they are parsed, so a changed shard is read
+     * once. Only when the shard may have been appended to are the previously loaded bytes read beforehand,
+     * to confirm they have not changed.</p>
      *
-     * @param temperaturesGroupedByYearAndCity a map where the key is the city name and the value is another map.
-     *                                         This inner map's key is the year and the value is a list of temperatures for that year.
+     * @param file     the shard
+     * @param previous the aggregates loaded from the shard previously, or {@code null}
+     * @return the aggregates of the shard, which are {@code previous} itself if the shard has not changed
+     * @throws IOException if the file cannot be read
      */
-    private void calculateAnnualAverageTemperature(Map<String, Map<String, List<Double>>> temperaturesGroupedByYearAndCity) {
-        temperaturesGroupedByYearAndCity.forEach((city, annualData) -> {
-            List<AnnualAverageTemperatureDTO> cityAnnualTemperatureAverages = annualData.entrySet().stream()
-                    .map(entry -> {
-                        double averageTemperature = entry.getValue().stream()
-                                .mapToDouble(val -> val)
-                                .average()
-                                .orElse(0.0);
-                        // Round to 2 decimal places
-                        double roundedAverageTemperature = BigDecimal.valueOf(averageTemperature)
-                                .setScale(2, RoundingMode.HALF_UP)
-                                .doubleValue();
-                        return new AnnualAverageTemperatureDTO(entry.getKey(), roundedAverageTemperature);
-                    })
-                    .collect(Collectors.toList());
-            dataStore.addData(city, cityAnnualTemperatureAverages);
-        });
-    }
-
-    private CsvRowData getCsvRowData(String line) {
-        CsvRowData csvRowData = new CsvRowData();
-        String[] lineParts = line.split(";");
-        csvRowData.setCity(lineParts[0]);
-        csvRowData.setYear(lineParts[1].split("-")[0]);
-        csvRowData.setTemperature(Double.valueOf(lineParts[2]));
-        return csvRowData;
+    private CachedAggregates loadShard(Path file, CachedAggregates previous) throws IOException {
+        long lastModified = file.toFile().lastModified();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            CompressionFormat compressionFormat = CompressionFormat.detect(channel);
+            boolean appended = isAppendCandidate(fileSize, previous)
+                    && (compressionFormat == CompressionFormat.NONE || fileSize == previous.getSourceSize())
+                    && isPrefixUnchanged(channel, previous);
+            TemperatureAggregates aggregates;
+            long checksum;
+
+            if (appended && fileSize == previous.getSourceSize()) {
+                return lastModified == previous.getSourceLastModified() ? previous
+                        : new CachedAggregates(fileSize, lastModified, previous.getSourceChecksum(),
+                        previous.isSourceEndsWithLineBreak(), previous.getAggregates());
+            } else if (compressionFormat != CompressionFormat.NONE) {
+                ParsedRange parsed = readCompressedTemperatures(file, compressionFormat);
+                aggregates = parsed.aggregates();
+                checksum = parsed.checksum();
+            } else if (appended) {
+                log.info("File {} grew from {} to {} bytes, loading appended rows only", file, previous.getSourceSize(), fileSize);
+                ParsedRange parsed = readTemperatures(file, channel, previous.getSourceSize(), fileSize);
+                long mergeStarted = System.nanoTime();
+                aggregates = new TemperatureAggregates()
+                        .combine(previous.getAggregates())
+                        .combine(parsed.aggregates());
+                loadProgress.phase(LoadProgress.Phase.AGGREGATE, System.nanoTime() - mergeStarted);
+                checksum = FilePrefixChecksum.combine(previous.getSourceChecksum(), parsed.checksum(), fileSize - previous.getSourceSize());
+            } else {
+                ParsedRange parsed = readTemperatures(file, channel, 0, fileSize);
+                aggregates = parsed.aggregates();
+                checksum = parsed.checksum();
+            }
+            return new CachedAggregates(fileSize, lastModified, checksum, endsWithLineBreak(channel, fileSize), aggregates);
+        }
     }
 
     /**
-     * Checks if the file watcher is enabled.
+     * Merges the aggregates of the shards into new aggregates, leaving the aggregates of every shard intact.
      *
-     * @return {@code true} if the file watcher is enabled, {@code false} otherwise.
+     * @param shards the loaded shards
+     * @return the aggregates of all shards
      */
-    public boolean isFileWatcherSchedulerEnabled() {
-        return fileWatcherEnabled;
+    private TemperatureAggregates mergeShards(Collection<CachedAggregates> shards) {
+        if (shards.size() == 1) {
+            return shards.iterator().next().getAggregates();
+        }
+        long started = System.nanoTime();
+        TemperatureAggregates merged = newAggregates();
+        shards.forEach(shard -> merged.combine(shard.getAggregates()));
+        loadProgress.phase(LoadProgress.Phase.AGGREGATE, System.nanoTime() - started);
+        return merged;
     }
 
     /**
-     * Retrieves the last modified date of the CSV file specified by {@code csvFilePath}.
+     * Saves the aggregates of a shard to its cache file, if {@code csv.cache.dir} is configured.
      *
-     * @return the last modified date of the CSV file in milliseconds since epoch.
+     * @param file  the shard
+     * @param shard the aggregates loaded from the shard
      */
-    private long getCsvFileLastModifedDate() {
-        return new File(csvFilePath).lastModified();
+    private void saveAggregatesToCache(Path file, CachedAggregates shard) {
+        if (cacheDirectory.isBlank() || aggregationMemoryBudget > 0) {
+            return;
+        }
+        try {
+            AggregatesCacheFile.write(getCacheFilePath(file), shard);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Error writing cache file {}", getCacheFilePath(file), e);
+        }
+    }
+
+    private Path getCacheFilePath(Path file) {
+        String fingerprint = clusterPartitioning.getFingerprint();
+        String partition = fingerprint.isEmpty() ? "" : "." + fingerprint;
+        return Paths.get(cacheDirectory, file.getFileName() + partition + ".aggregates");
     }
 
     /**
-     * Checks if the CSV file specified by {@code csvFilePath} exists.
+     * @return a parser skipping the rows of cities owned by other peers in partitioned mode, vectorized
+     * if {@code csv.parser.simd.enabled}
+     */
+    private CsvRowParser newCsvRowParser() {
+        return new CsvRowParser(clusterPartitioning.isEnabled() ? clusterPartitioning::owns : null, simdParsingEnabled);
+    }
+
+    /**
+     * Checks if the file may only have been appended to since the previous load, which is confirmed by comparing
+     * the checksum of the previously loaded bytes. The previous load must have ended with a complete line,
+     * otherwise the appended bytes could be the continuation of its last row.
      *
-     * @return {@code true} if the CSV file exists, {@code false} otherwise.
+     * @param fileSize the current size of the file
+     * @param previous the aggregates loaded from the file previously, or {@code null}
+     * @return {@code true} if only the bytes after the previously loaded ones need to be parsed, provided
+     * the previously loaded ones have not changed
      */
-    private boolean csvFileExists() {
-        return new File(csvFilePath).exists();
+    private boolean isAppendCandidate(long fileSize, CachedAggregates previous) {
+        return isIncrementalLoadingEnabled()
+                && previous != null
+                && previous.isSourceEndsWithLineBreak()
+                && fileSize >= previous.getSourceSize();
     }
 
     /**
-     * Checks if the CSV file has been changed since the last check. If the file has been modified,
-     * it logs the modification and loads the CSV data. If the file has been deleted, it logs the deletion.
+     * Reads the previously loaded bytes of a file and compares their checksum with the one computed when
+     * they were loaded.
+     *
+     * @param channel  the channel of the file
+     * @param previous the aggregates loaded from the file previously
+     * @return {@code true} if the previously loaded bytes have not changed
+     * @throws IOException if the file cannot be read
      */
-    public void checkIsFileChanged() {
+    private boolean isPrefixUnchanged(FileChannel channel, CachedAggregates previous) throws IOException {
+        loadProgress.read(previous.getSourceSize());
+        return FilePrefixChecksum.of(channel, previous.getSourceSize()) == previous.getSourceChecksum();
+    }
 
-        if (csvFileExists()) {
-            if (getCsvFileLastModifedDate() > csvFileLastModified) {
-                log.info("File {} was modified", csvFilePath);
-                loadCsvData();
+    private ParsedRange readTemperatures(Path file, FileChannel channel, long start, long end) throws IOException {
+        return parallelLoadingEnabled
+                ? readTemperaturesInParallel(file, channel, start, end)
+                : readTemperaturesSequentially(file, channel, start, end);
+    }
+
+    /**
+     * Reads the given range of the CSV file on the calling thread, parsing it block by block.
+     *
+     * @param file    the CSV file
+     * @param channel the channel of the CSV file
+     * @param start   the position of the first byte to read
+     * @param end     the position after the last byte to read
+     * @return temperatures grouped by city and year, and the checksum of the range
+     * @throws IOException if the file cannot be read
+     */
+    private ParsedRange readTemperaturesSequentially(Path file, FileChannel channel, long start, long end) throws IOException {
+        TemperatureAggregates temperatureAggregates = newAggregates();
+        CsvRowParser csvRowParser = newCsvRowParser();
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        CRC32C checksum = new CRC32C();
+
+        long position = start;
+        while (position < end) {
+            if (buffer.remaining() > end - position) {
+                buffer.limit(buffer.position() + (int) (end - position));
+            }
+            long readStarted = System.nanoTime();
+            int readStart = buffer.position();
+            int read = channel.read(buffer, position);
+            loadProgress.phase(LoadProgress.Phase.READ, System.nanoTime() - readStarted);
+            if (read < 0) {
+                break;
+            }
+            checksum.update(buffer.array(), buffer.arrayOffset() + readStart, read);
+            loadProgress.read(read);
+            position += read;
+            buffer.flip();
+            int parseStart = buffer.position();
+            long rows = parse(csvRowParser, buffer, false, temperatureAggregates, file, position - buffer.limit());
+            loadProgress.processed(buffer.position() - parseStart, rows);
+            if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+                // a single line does not fit into the buffer
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer);
+            } else {
+                buffer.compact();
+            }
+        }
+        buffer.flip();
+        int parseStart = buffer.position();
+        long rows = parse(csvRowParser, buffer, true, temperatureAggregates, file, position - buffer.limit());
+        loadProgress.processed(buffer.position() - parseStart, rows);
+        return new ParsedRange(temperatureAggregates, checksum.getValue());
+    }
+
+    /**
+     * Parses a buffer and records the time spent in {@link LoadProgress.Phase#PARSE}. Malformed lines are
+     * skipped and recorded in the quarantine of the {@link LoadProgress}, until there are more than
+     * {@code csv.loader.malformed.rows.max} of them in the current load. Then the load is aborted,
+     * so the previous data stays published.
+     *
+     * @param file   the CSV file
+     * @param offset the offset of the first byte of the buffer in the file
+     * @return the number of parsed rows
+     * @throws IllegalArgumentException if there are too many malformed lines
+     */
+    private long parse(CsvRowParser csvRowParser, ByteBuffer buffer, boolean endOfInput, TemperatureAggregates temperatureAggregates,
+                       Path file, long offset) {
+        long started = System.nanoTime();
+        try {
+            return csvRowParser.parse(buffer, endOfInput, temperatureAggregates,
+                    (malformedBuffer, start, end) -> quarantineMalformedLine(file, offset + start, malformedBuffer, start, end));
+        } finally {
+            loadProgress.phase(LoadProgress.Phase.PARSE, System.nanoTime() - started);
+        }
+    }
+
+    private void quarantineMalformedLine(Path file, long offset, ByteBuffer buffer, int start, int end) {
+        long malformedRows = loadProgress.malformed(file.toString(), offset, () -> toLine(buffer, start, end));
+        if (malformedRows > maxMalformedRows) {
+            throw new IllegalArgumentException(String.format("Malformed line at offset %d of file %s: %s (%d malformed rows, at most %d allowed)",
+                    offset, file, toLine(buffer, start, end), malformedRows, maxMalformedRows));
+        }
+    }
+
+    private static String toLine(ByteBuffer buffer, int start, int end) {
+        byte[] line = new byte[Math.min(end - start, MAX_QUARANTINED_LINE_LENGTH)];
+        buffer.get(start, line);
+        return new String(line, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the given range of the CSV file by memory-mapping newline-aligned chunks of it and grouping
+     * each chunk on a separate worker thread. The partial aggregates of every chunk are merged at the end,
+     * and so are the checksums the workers compute of their chunks before parsing them.
+     *
+     * @param file    the CSV file
+     * @param channel the channel of the CSV file
+     * @param start   the position of the first byte to read
+     * @param end     the position after the last byte to read
+     * @return temperatures grouped by city and year, and the checksum of the range
+     * @throws IOException if the file cannot be read or a worker fails
+     */
+    private ParsedRange readTemperaturesInParallel(Path file, FileChannel channel, long start, long end) throws IOException {
+        int threads = parallelLoadingThreads > 0 ? parallelLoadingThreads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<long[]> chunks = splitIntoChunks(channel, start, end, threads);
+            List<Future<ParsedRange>> partialResults = new ArrayList<>();
+            for (long[] chunk : chunks) {
+                partialResults.add(executor.submit(() -> {
+                    long mapStarted = System.nanoTime();
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+                    CRC32C checksum = new CRC32C();
+                    checksum.update(buffer.duplicate());
+                    loadProgress.read(buffer.capacity());
+                    loadProgress.phase(LoadProgress.Phase.READ, System.nanoTime() - mapStarted);
+                    TemperatureAggregates partialAggregates = newAggregates();
+                    long rows = parse(newCsvRowParser(), buffer, true, partialAggregates, file, chunk[0]);
+                    loadProgress.processed(buffer.capacity(), rows);
+                    return new ParsedRange(partialAggregates, checksum.getValue());
+                }));
+            }
+
+            TemperatureAggregates temperatureAggregates = newAggregates();
+            long checksum = 0;
+            for (int i = 0; i < chunks.size(); i++) {
+                ParsedRange partialResult = partialResults.get(i).get();
+                long mergeStarted = System.nanoTime();
+                temperatureAggregates.combine(partialResult.aggregates());
+                loadProgress.phase(LoadProgress.Phase.AGGREGATE, System.nanoTime() - mergeStarted);
+                checksum = FilePrefixChecksum.combine(checksum, partialResult.checksum(), chunks.get(i)[1] - chunks.get(i)[0]);
+            }
+            return new ParsedRange(temperatureAggregates, checksum);
+        } catch (ExecutionException e) {
+            throw new IOException("Parsing of file " + file + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Parsing of file " + file + " was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads a compressed CSV file. The file is decompressed on a dedicated thread, which cuts the decompressed
+     * bytes into blocks of about {@code csv.loader.decompression.block.size.bytes} ending with a complete line.
+     * The blocks are handed to the parsing threads through a queue bounded to {@code csv.loader.decompression.queue.blocks}
+     * blocks, so decompression and parsing overlap while the memory used stays constant. There is one parsing
+     * thread, or {@code csv.loader.parallel.threads} of them when {@code csv.loader.parallel.enabled} is set.
+     * Progress is reported in compressed bytes, as the decompressed size is not known upfront, and the checksum
+     * is computed of the compressed bytes too.
+     *
+     * @param file              the CSV file
+     * @param compressionFormat the compression format of the file
+     * @return temperatures grouped by city and year, and the checksum of the file
+     * @throws IOException if the file cannot be read or decompressed, or a worker fails
+     */
+    private ParsedRange readCompressedTemperatures(Path file, CompressionFormat compressionFormat) throws IOException {
+        int parsingThreads = !parallelLoadingEnabled ? 1
+                : parallelLoadingThreads > 0 ? parallelLoadingThreads : Runtime.getRuntime().availableProcessors();
+        BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(Math.max(1, decompressionQueueBlocks));
+        ExecutorService executor = Executors.newFixedThreadPool(parsingThreads + 1);
+        CompletionService<TemperatureAggregates> workers = new ExecutorCompletionService<>(executor);
+        CRC32C checksum = new CRC32C();
+
+        try {
+            workers.submit(() -> {
+                decompressIntoBlocks(file, compressionFormat, blocks, parsingThreads, checksum);
+                return null;
+            });
+            for (int i = 0; i < parsingThreads; i++) {
+                workers.submit(() -> parseBlocks(file, blocks));
+            }
+
+            TemperatureAggregates temperatureAggregates = newAggregates();
+            for (int i = 0; i <= parsingThreads; i++) {
+                TemperatureAggregates partialAggregates = workers.take().get();
+                if (partialAggregates != null) {
+                    long mergeStarted = System.nanoTime();
+                    temperatureAggregates.combine(partialAggregates);
+                    loadProgress.phase(LoadProgress.Phase.AGGREGATE, System.nanoTime() - mergeStarted);
+                }
+            }
+            return new ParsedRange(temperatureAggregates, checksum.getValue());
+        } catch (ExecutionException e) {
+            throw new IOException("Reading of compressed file " + file + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Reading of compressed file " + file + " was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Decompresses the file into blocks of complete lines and puts them into the queue, followed by
+     * one {@link #END_OF_BLOCKS} marker for each parsing thread. Every compressed byte, including any
+     * trailing bytes the decompressor stops before, is added to the checksum.
+     */
+    private void decompressIntoBlocks(Path file, CompressionFormat compressionFormat, BlockingQueue<Block> blocks,
+                                      int parsingThreads, CRC32C checksum) throws IOException, InterruptedException {
+        try (InputStream compressed = new FilterInputStream(Files.newInputStream(file)) {
+                 @Override
+                 public int read() throws IOException {
+                     int read = super.read();
+                     if (read >= 0) {
+                         checksum.update(read);
+                         loadProgress.read(1);
+                         loadProgress.processed(1, 0);
+                     }
+                     return read;
+                 }
+
+                 @Override
+                 public int read(byte[] bytes, int offset, int length) throws IOException {
+                     int read = super.read(bytes, offset, length);
+                     if (read > 0) {
+                         checksum.update(bytes, offset, read);
+                         loadProgress.read(read);
+                         loadProgress.processed(read, 0);
+                     }
+                     return read;
+                 }
+
+                 @Override
+                 public long skip(long length) throws IOException {
+                     byte[] skipped = new byte[(int) Math.min(length, READ_BUFFER_SIZE)];
+                     return Math.max(read(skipped, 0, skipped.length), 0);
+                 }
+             };
+             InputStream input = compressionFormat.decompress(compressed)) {
+            ByteBuffer block = ByteBuffer.allocate(decompressionBlockSize);
+            long blockOffset = 0;
+            long readStarted = System.nanoTime();
+            int read;
+            while ((read = input.read(block.array(), block.position(), block.remaining())) >= 0) {
+                loadProgress.phase(LoadProgress.Phase.READ, System.nanoTime() - readStarted);
+                block.position(block.position() + read);
+                if (!block.hasRemaining()) {
+                    int blockSize = block.position();
+                    block = handOverCompleteLines(block, blockOffset, blocks);
+                    blockOffset += blockSize - block.position();
+                }
+                readStarted = System.nanoTime();
+            }
+            if (block.flip().hasRemaining()) {
+                blocks.put(new Block(block, blockOffset));
+            }
+            compressed.transferTo(OutputStream.nullOutputStream());
+        }
+        for (int i = 0; i < parsingThreads; i++) {
+            blocks.put(END_OF_BLOCKS);
+        }
+    }
+
+    /**
+     * Puts the complete lines of a full block into the queue.
+     *
+     * @return a new block starting with the incomplete line at the end of the full block
+     */
+    private ByteBuffer handOverCompleteLines(ByteBuffer block, long blockOffset, BlockingQueue<Block> blocks) throws InterruptedException {
+        int lineEnd = block.position();
+        while (lineEnd > 0 && block.get(lineEnd - 1) != '\n') {
+            lineEnd--;
+        }
+        if (lineEnd == 0) {
+            // a single line does not fit into the block
+            return ByteBuffer.allocate(block.capacity() * 2).put(block.flip());
+        }
+
+        ByteBuffer nextBlock = ByteBuffer.allocate(Math.max(decompressionBlockSize, block.position() - lineEnd));
+        nextBlock.put(block.array(), lineEnd, block.position() - lineEnd);
+        blocks.put(new Block(block.flip().limit(lineEnd), blockOffset));
+        return nextBlock;
+    }
+
+    /**
+     * Parses the blocks taken from the queue until an {@link #END_OF_BLOCKS} marker is taken.
+     *
+     * @return temperatures grouped by city and year
+     */
+    private TemperatureAggregates parseBlocks(Path file, BlockingQueue<Block> blocks) throws InterruptedException {
+        TemperatureAggregates partialAggregates = newAggregates();
+        CsvRowParser csvRowParser = newCsvRowParser();
+        for (Block block = blocks.take(); block != END_OF_BLOCKS; block = blocks.take()) {
+            long rows = parse(csvRowParser, block.buffer(), true, partialAggregates, file, block.offset());
+            loadProgress.processed(0, rows);
+        }
+        return partialAggregates;
+    }
+
+    /**
+     * Splits the file into chunks of roughly equal size, each ending right after a line break
+     * (or at the end of the file). Chunks never exceed {@code csv.loader.parallel.chunk.size.bytes}
+     * by more than one line, which keeps them within the limits of a single {@link MappedByteBuffer}.
+     *
+     * @param channel the channel of the CSV file
+     * @param start   the position of the first byte to read
+     * @param end     the position after the last byte to read
+     * @param threads the number of worker threads
+     * @return a list of {@code [start, end)} byte ranges
+     * @throws IOException if the file cannot be read
+     */
+    private List<long[]> splitIntoChunks(FileChannel channel, long start, long end, int threads) throws IOException {
+        long chunkSize = Math.max(1, Math.min(parallelLoadingChunkSize, (end - start + threads - 1) / threads));
+        List<long[]> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+
+        long chunkStart = start;
+        while (chunkStart < end) {
+            long chunkEnd = Math.min(chunkStart + chunkSize, end);
+            while (chunkEnd < end && !endsWithLineBreak(channel, chunkEnd)) {
+                chunkEnd = Math.min(nextLineStart(channel, chunkEnd, probe), end);
+            }
+            chunks.add(new long[]{chunkStart, chunkEnd});
+            chunkStart = chunkEnd;
+        }
+        return chunks;
+    }
+
+    /**
+     * @param channel  the channel of the CSV file
+     * @param position a position in the file
+     * @return {@code true} if the byte right before the position is a line break or the position is 0
+     * @throws IOException if the file cannot be read
+     */
+    private boolean endsWithLineBreak(FileChannel channel, long position) throws IOException {
+        if (position == 0) {
+            return true;
+        }
+        ByteBuffer probe = ByteBuffer.allocate(1);
+        return channel.read(probe, position - 1) == 1 && probe.get(0) == '\n';
+    }
+
+    private long nextLineStart(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+        probe.clear();
+        int read = channel.read(probe, position);
+        if (read <= 0) {
+            return channel.size();
+        }
+        for (int i = 0; i < read; i++) {
+            if (probe.get(i) == '\n') {
+                return position + i + 1;
             }
+        }
+        return position + read;
+    }
+
+    /**
+     * Calculates the annual average temperature for each city and publishes the results in the data store
+     * as a single new snapshot, together with an immutable copy of the statistics of each city.
+     * Aggregates spilled during the current load are merged in city by city.
+     *
+     * @param temperaturesGroupedByYearAndCity the temperatures accumulated per city and year
+     */
+    private void calculateAnnualAverageTemperature(TemperatureAggregates temperaturesGroupedByYearAndCity) {
+        long started = System.nanoTime();
+        Map<String, List<AnnualAverageTemperatureDTO>> annualAverageTemperatures = new HashMap<>();
+        Map<String, CityStatistics> statistics = new HashMap<>();
+        BiConsumer<String, Map<String, TemperatureAccumulator>> collector = (city, annualData) -> {
+            List<AnnualAverageTemperatureDTO> cityAnnualTemperatureAverages = annualData.entrySet().stream()
+                    .map(entry -> new AnnualAverageTemperatureDTO(entry.getKey(), entry.getValue().getAverageTemperature()))
+                    .collect(Collectors.toUnmodifiableList());
+            annualAverageTemperatures.put(city, cityAnnualTemperatureAverages);
+            statistics.put(city, CityStatistics.of(annualData));
+        };
+        if (aggregateSpill != null) {
+            aggregateSpill.forEachCity(temperaturesGroupedByYearAndCity, collector);
         } else {
-            if (csvFileLastModified > 0) {
-                log.info("File {} was deleted", csvFilePath);
-                csvFileLastModified = 0;
+            temperaturesGroupedByYearAndCity.getCities().forEach(collector);
+        }
+        long publishStarted = System.nanoTime();
+        loadProgress.phase(LoadProgress.Phase.AGGREGATE, publishStarted - started);
+        dataStore.publish(annualAverageTemperatures, statistics);
+        loadProgress.phase(LoadProgress.Phase.PUBLISH, System.nanoTime() - publishStarted);
+    }
+
+    /**
+     * Checks if the file watcher is enabled.
+     *
+     * @return {@code true} if the file watcher is enabled, {@code false} otherwise.
+     */
+    public boolean isFileWatcherSchedulerEnabled() {
+        return fileWatcherEnabled;
+    }
+
+    /**
+     * Checks if the CSV files have been changed since the last load. If a file has been modified, added or
+     * removed, it logs the modification and loads the CSV data, which parses only the changed files.
+     * If all files have been deleted, it logs the deletion and keeps the previous data.
+     * Besides the last modified date, the size of every file is compared, so changes made within
+     * the granularity of the file system timestamps are not missed.
+     */
+    public void checkIsFileChanged() {
+        synchronized (this) {
+            List<Path> files = listCsvFiles();
+            if (!files.isEmpty()) {
+                if (isChangedSinceLastLoad(files)) {
+                    log.info("Files of {} were modified", csvFilePath);
+                    loadCsvData();
+                }
+            } else {
+                if (!loadedShards.isEmpty()) {
+                    log.info("Files of {} were deleted", csvFilePath);
+                    loadedShards = Map.of();
+                }
+            }
+        }
+    }
+
+    private boolean isChangedSinceLastLoad(List<Path> files) {
+        if (!loadedShards.keySet().equals(Set.copyOf(files))) {
+            return true;
+        }
+        for (Path file : files) {
+            CachedAggregates loaded = loadedShards.get(file);
+            File csvFile = file.toFile();
+            if (csvFile.lastModified() != loaded.getSourceLastModified() || csvFile.length() != loaded.getSourceSize()) {
+                return true;
             }
         }
+        return false;
     }
 
 }
@@ -0,0 +1,211 @@
+package large.file.reading.challenge.app.service;
+
+import large.file.reading.challenge.app.dto.AnnualAverageTemperatureDTO;
+import large.file.reading.challenge.app.store.DataSnapshot;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * DataExportFormat is the format of an export of the annual average temperatures of all cities, see
+ * {@link CityTemperatureService#exportAnnualAverageTemperatures}.
+ *
+ * <p>An export is a start, the cities and an end. In partitioned mode the cities of the exports of all peers
+ * are joined into one export between a single start and end, see {@link #readStart} and {@link #transferCities}.</p>
+ */
+public enum DataExportFormat {
+
+    /**
+     * One line per city with the JSON served by {@code /city/temperature/annual/average}.
+     */
+    NDJSON(MediaType.parseMediaType("application/x-ndjson")) {
+        @Override
+        public void writeCities(DataSnapshot snapshot, OutputStream outputStream) throws IOException {
+            snapshot.forEachCity((city, json, data) -> {
+                outputStream.write(json);
+                outputStream.write('\n');
+            });
+        }
+
+        @Override
+        public void transferCities(InputStream export, OutputStream outputStream) throws IOException {
+            export.transferTo(outputStream);
+        }
+    },
+
+    /**
+     * Big-endian binary frames. The export starts with the magic number {@code 0x54454D50}, the format version
+     * and the version of the dataset, as int, int and long. Every city follows in a frame: the length of the rest
+     * of the frame as an int, the name of the city and the number of years, as a short length followed by UTF-8
+     * bytes and an int, and then every year as a short length followed by UTF-8 bytes and its average as a double.
+     * A frame length of 0 ends the export. In partitioned mode the version of the dataset is the sum of the
+     * versions of all peers, which grows whenever any of them publishes new data.
+     */
+    BINARY(MediaType.APPLICATION_OCTET_STREAM) {
+        @Override
+        public void writeStart(long version, OutputStream outputStream) throws IOException {
+            DataOutputStream out = new DataOutputStream(outputStream);
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(BINARY_FORMAT_VERSION);
+            out.writeLong(version);
+        }
+
+        @Override
+        public void writeCities(DataSnapshot snapshot, OutputStream outputStream) throws IOException {
+            DataOutputStream out = new DataOutputStream(outputStream);
+            ByteArrayOutputStream frameBytes = new ByteArrayOutputStream();
+            DataOutputStream frame = new DataOutputStream(frameBytes);
+            snapshot.forEachCity((city, json, data) -> {
+                frameBytes.reset();
+                writeFrame(frame, city, data);
+                out.writeInt(frameBytes.size());
+                frameBytes.writeTo(out);
+            });
+        }
+
+        @Override
+        public void writeEnd(OutputStream outputStream) throws IOException {
+            new DataOutputStream(outputStream).writeInt(0);
+        }
+
+        @Override
+        public long readStart(InputStream export) throws IOException {
+            DataInputStream in = new DataInputStream(export);
+            int magic = in.readInt();
+            int formatVersion = in.readInt();
+            if (magic != BINARY_MAGIC || formatVersion != BINARY_FORMAT_VERSION) {
+                throw new IOException(String.format("Unexpected binary export start %08x, format version %d", magic, formatVersion));
+            }
+            return in.readLong();
+        }
+
+        @Override
+        public void transferCities(InputStream export, OutputStream outputStream) throws IOException {
+            DataInputStream in = new DataInputStream(export);
+            DataOutputStream out = new DataOutputStream(outputStream);
+            for (int frameLength = in.readInt(); frameLength != 0; frameLength = in.readInt()) {
+                out.writeInt(frameLength);
+                out.write(in.readNBytes(frameLength));
+            }
+        }
+    };
+
+    static final int BINARY_MAGIC = 0x54454D50;
+
+    static final int BINARY_FORMAT_VERSION = 1;
+
+    private final MediaType mediaType;
+
+    DataExportFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * @return the content type of the export
+     */
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Writes a whole export of a snapshot: the start, the data of all cities one city at a time and the end.
+     *
+     * @param snapshot     the snapshot to export
+     * @param outputStream the stream to write to, not closed
+     * @throws IOException if writing fails
+     */
+    void write(DataSnapshot snapshot, OutputStream outputStream) throws IOException {
+        writeStart(snapshot.getVersion(), outputStream);
+        writeCities(snapshot, outputStream);
+        writeEnd(outputStream);
+    }
+
+    /**
+     * Writes the start of an export, nothing by default.
+     *
+     * @param version      the version of the dataset
+     * @param outputStream the stream to write to, not closed
+     * @throws IOException if writing fails
+     */
+    public void writeStart(long version, OutputStream outputStream) throws IOException {
+    }
+
+    /**
+     * Writes the data of all cities of a snapshot, one city at a time.
+     *
+     * @param snapshot     the snapshot to export
+     * @param outputStream the stream to write to, not closed
+     * @throws IOException if writing fails
+     */
+    public abstract void writeCities(DataSnapshot snapshot, OutputStream outputStream) throws IOException;
+
+    /**
+     * Writes the end of an export, nothing by default.
+     *
+     * @param outputStream the stream to write to, not closed
+     * @throws IOException if writing fails
+     */
+    public void writeEnd(OutputStream outputStream) throws IOException {
+    }
+
+    /**
+     * Reads the start of a whole export.
+     *
+     * @param export the export
+     * @return the version of the dataset written in the start, {@code 0} if the format has none
+     * @throws IOException if reading fails or the start is not one of this format
+     */
+    public long readStart(InputStream export) throws IOException {
+        return 0;
+    }
+
+    /**
+     * Copies the cities of a whole export, whose start was read with {@link #readStart}, up to its end.
+     *
+     * @param export       the export
+     * @param outputStream the stream to write the cities to, not closed
+     * @throws IOException if reading or writing fails
+     */
+    public abstract void transferCities(InputStream export, OutputStream outputStream) throws IOException;
+
+    /**
+     * Finds a format by its name, ignoring case.
+     *
+     * @param name the name of the format
+     * @return the format
+     * @throws IllegalArgumentException if there is no format with the given name
+     */
+    public static DataExportFormat fromName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format " + name + ", expected one of "
+                    + Arrays.stream(values()).map(value -> value.name().toLowerCase(Locale.ROOT)).collect(Collectors.joining(", ")), e);
+        }
+    }
+
+    private static void writeFrame(DataOutputStream frame, String city, List<AnnualAverageTemperatureDTO> data) throws IOException {
+        writeString(frame, city);
+        frame.writeInt(data.size());
+        for (AnnualAverageTemperatureDTO dto : data) {
+            writeString(frame, dto.getYear());
+            frame.writeDouble(dto.getAverageTemperature());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
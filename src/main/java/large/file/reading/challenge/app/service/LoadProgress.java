@@ -0,0 +1,303 @@
+package large.file.reading.challenge.app.service;
+
+import large.file.reading.challenge.app.dto.LoadProgressDTO;
+import large.file.reading.challenge.app.dto.MalformedRowDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * LoadProgress tracks the progress of the current (or the last) load of the CSV file, so that clients
+ * and orchestrators can tell a slow load from a hung one. It also records whether the initial load
+ * after startup has finished, which is when queries can be answered.
+ *
+ * <p>Besides the current load, totals over all loads since startup are kept: bytes, rows, malformed rows,
+ * the time spent in every {@link Phase} and the number and duration of the loads. They only ever grow,
+ * so they can be exposed as counters.</p>
+ */
+@Component
+public class LoadProgress {
+
+    /**
+     * The state of the current or the last load.
+     */
+    public enum State {
+        NOT_STARTED, LOADING, LOADED, FAILED
+    }
+
+    /**
+     * The phases of a load. Times of phases running on several threads at once are added up.
+     */
+    public enum Phase {
+        /**
+         * Reading the file, or reading and decompressing it for compressed files. Page faults of
+         * memory-mapped files are counted as {@link #PARSE}.
+         */
+        READ,
+        /**
+         * Parsing the rows and grouping the temperatures by city and year.
+         */
+        PARSE,
+        /**
+         * Merging the partial aggregates and calculating the statistics of every city.
+         */
+        AGGREGATE,
+        /**
+         * Building the snapshot of the data store and publishing it.
+         */
+        PUBLISH
+    }
+
+    private final LongAdder bytesProcessed = new LongAdder();
+
+    private final LongAdder rowsProcessed = new LongAdder();
+
+    private final AtomicLong malformedRows = new AtomicLong();
+
+    private final List<MalformedRowDTO> quarantine = new ArrayList<>();
+
+    private final LongAdder totalBytesProcessed = new LongAdder();
+
+    private final LongAdder totalRowsProcessed = new LongAdder();
+
+    private final LongAdder totalBytesRead = new LongAdder();
+
+    private final LongAdder totalMalformedRows = new LongAdder();
+
+    private final LongAdder totalSpilledRuns = new LongAdder();
+
+    private final LongAdder totalSpilledBytes = new LongAdder();
+
+    private final LongAdder[] totalPhaseNanos = Stream.generate(LongAdder::new)
+            .limit(Phase.values().length)
+            .toArray(LongAdder[]::new);
+
+    /**
+     * The number of failed and successful loads, indexed by {@link #resultIndex(boolean)}.
+     */
+    private final AtomicLong[] loads = {new AtomicLong(), new AtomicLong()};
+
+    private final AtomicLong[] totalLoadNanos = {new AtomicLong(), new AtomicLong()};
+
+    @Value("${csv.loader.quarantine.size:100}")
+    private int quarantineSize = 100;
+
+    private volatile State state = State.NOT_STARTED;
+
+    private volatile boolean initialLoadCompleted;
+
+    private volatile long bytesTotal;
+
+    private volatile long startedNanos;
+
+    private volatile long finishedNanos;
+
+    /**
+     * Marks the start of a load.
+     *
+     * @param bytesToProcess the number of bytes that are going to be parsed
+     */
+    public void start(long bytesToProcess) {
+        bytesProcessed.reset();
+        rowsProcessed.reset();
+        malformedRows.set(0);
+        synchronized (quarantine) {
+            quarantine.clear();
+        }
+        bytesTotal = bytesToProcess;
+        startedNanos = System.nanoTime();
+        finishedNanos = 0;
+        state = State.LOADING;
+    }
+
+    /**
+     * Records that a part of the input was parsed. Safe to call from several parsing threads.
+     *
+     * @param bytes the number of parsed bytes
+     * @param rows  the number of parsed rows
+     */
+    public void processed(long bytes, long rows) {
+        bytesProcessed.add(bytes);
+        rowsProcessed.add(rows);
+        totalBytesProcessed.add(bytes);
+        totalRowsProcessed.add(rows);
+    }
+
+    /**
+     * Records bytes read from a file, whether to parse them or to checksum them. Safe to call from several threads.
+     *
+     * @param bytes the number of bytes read, compressed bytes for compressed files
+     */
+    public void read(long bytes) {
+        totalBytesRead.add(bytes);
+    }
+
+    /**
+     * Records a row which could not be parsed. The first {@code csv.loader.quarantine.size} malformed rows
+     * of a load are kept in the quarantine. Safe to call from several parsing threads.
+     *
+     * @param file   the file containing the row
+     * @param offset the offset of the row in the file
+     * @param line   supplies the content of the row, called only if the row is kept
+     * @return the number of malformed rows of the current load, including this one
+     */
+    public long malformed(String file, long offset, Supplier<String> line) {
+        totalMalformedRows.increment();
+        long malformed = malformedRows.incrementAndGet();
+        if (malformed <= quarantineSize) {
+            MalformedRowDTO row = new MalformedRowDTO(file, offset, line.get());
+            synchronized (quarantine) {
+                if (quarantine.size() < quarantineSize) {
+                    quarantine.add(row);
+                }
+            }
+        }
+        return malformed;
+    }
+
+    /**
+     * Records aggregates spilled to disk by the current load to stay within its memory budget.
+     *
+     * @param runs  the number of run files written
+     * @param bytes the size of the run files in bytes
+     */
+    public void spilled(long runs, long bytes) {
+        totalSpilledRuns.add(runs);
+        totalSpilledBytes.add(bytes);
+    }
+
+    /**
+     * Records time spent in a phase of the load. Safe to call from several threads.
+     *
+     * @param phase the phase
+     * @param nanos the time spent in nanoseconds
+     */
+    public void phase(Phase phase, long nanos) {
+        totalPhaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * Marks the end of a load, successful or not. After the first call, queries are answered.
+     *
+     * @param successful whether the data was loaded and published
+     */
+    public void finish(boolean successful) {
+        finishedNanos = System.nanoTime();
+        if (state == State.LOADING) {
+            int result = resultIndex(successful);
+            loads[result].incrementAndGet();
+            totalLoadNanos[result].addAndGet(finishedNanos - startedNanos);
+        }
+        state = successful ? State.LOADED : State.FAILED;
+        initialLoadCompleted = true;
+    }
+
+    /**
+     * @return {@code true} once the first load after startup has finished, successfully or not
+     */
+    public boolean isInitialLoadCompleted() {
+        return initialLoadCompleted;
+    }
+
+    /**
+     * @return a snapshot of the current progress
+     */
+    public LoadProgressDTO toDTO() {
+        long started = startedNanos;
+        long finished = finishedNanos;
+        long elapsedNanos = started == 0 ? 0 : (finished != 0 ? finished : System.nanoTime()) - started;
+        long rows = rowsProcessed.sum();
+        long rowsPerSecond = elapsedNanos == 0 ? 0 : rows * 1_000_000_000L / elapsedNanos;
+        return new LoadProgressDTO(state.name(), initialLoadCompleted, bytesTotal, bytesProcessed.sum(), rows,
+                malformedRows.get(), rowsPerSecond, elapsedNanos / 1_000_000);
+    }
+
+    /**
+     * @return the malformed rows kept from the current or the last load, sorted by file and offset
+     */
+    public List<MalformedRowDTO> getQuarantine() {
+        List<MalformedRowDTO> rows;
+        synchronized (quarantine) {
+            rows = new ArrayList<>(quarantine);
+        }
+        rows.sort(Comparator.comparing(MalformedRowDTO::getFile).thenComparingLong(MalformedRowDTO::getOffset));
+        return rows;
+    }
+
+    /**
+     * @return the number of bytes processed by all loads since startup
+     */
+    public long getTotalBytesProcessed() {
+        return totalBytesProcessed.sum();
+    }
+
+    /**
+     * @return the number of bytes read from the files by all loads since startup, see {@link #read(long)}
+     */
+    public long getTotalBytesRead() {
+        return totalBytesRead.sum();
+    }
+
+    /**
+     * @return the number of rows parsed by all loads since startup
+     */
+    public long getTotalRowsProcessed() {
+        return totalRowsProcessed.sum();
+    }
+
+    /**
+     * @return the number of malformed rows found by all loads since startup
+     */
+    public long getTotalMalformedRows() {
+        return totalMalformedRows.sum();
+    }
+
+    /**
+     * @return the number of times aggregates were spilled to disk by all loads since startup
+     */
+    public long getTotalSpilledRuns() {
+        return totalSpilledRuns.sum();
+    }
+
+    /**
+     * @return the number of bytes of aggregates spilled to disk by all loads since startup
+     */
+    public long getTotalSpilledBytes() {
+        return totalSpilledBytes.sum();
+    }
+
+    /**
+     * @param phase a phase of the load
+     * @return the time spent in the phase by all loads since startup, in nanoseconds
+     */
+    public long getTotalPhaseNanos(Phase phase) {
+        return totalPhaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * @param successful whether to count successful or failed loads
+     * @return the number of finished loads since startup
+     */
+    public long getLoads(boolean successful) {
+        return loads[resultIndex(successful)].get();
+    }
+
+    /**
+     * @param successful whether to count successful or failed loads
+     * @return the total duration of the finished loads since startup, in nanoseconds
+     */
+    public long getTotalLoadNanos(boolean successful) {
+        return totalLoadNanos[resultIndex(successful)].get();
+    }
+
+    private static int resultIndex(boolean successful) {
+        return successful ? 1 : 0;
+    }
+}
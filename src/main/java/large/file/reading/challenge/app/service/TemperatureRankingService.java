@@ -0,0 +1,123 @@
+package large.file.reading.challenge.app.service;
+
+import large.file.reading.challenge.app.dto.CityRankingDTO;
+import large.file.reading.challenge.app.dto.NationalAverageTemperatureDTO;
+import large.file.reading.challenge.app.dto.YearRankingResponseDTO;
+import large.file.reading.challenge.app.exception.CityNotFoundException;
+import large.file.reading.challenge.app.exception.DataLoadingException;
+import large.file.reading.challenge.app.exception.InvalidCityException;
+import large.file.reading.challenge.app.exception.InvalidQueryException;
+import large.file.reading.challenge.app.store.DataSnapshot;
+import large.file.reading.challenge.app.store.DataStore;
+import large.file.reading.challenge.app.store.TemperatureRankings;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * TemperatureRankingService answers questions across all cities, such as the warmest cities of a year or
+ * the national average temperature per year, from the {@link TemperatureRankings} built when the data
+ * was loaded.
+ */
+@Service
+@RequiredArgsConstructor
+public class TemperatureRankingService {
+
+    private static final String WARMEST = "warmest";
+
+    private static final String COLDEST = "coldest";
+
+    private final DataStore dataStore;
+
+    private final LoadProgress loadProgress;
+
+    @Value("${ranking.max.limit:1000}")
+    private int maxLimit = 1000;
+
+    /**
+     * Retrieves the warmest or the coldest cities of a year.
+     *
+     * @param year  the year
+     * @param limit the maximum number of cities, from 1 to {@code ranking.max.limit}
+     * @param order {@code warmest} or {@code coldest}
+     * @return a {@link YearRankingResponseDTO} with the cities, empty if there is no data for the year
+     * @throws InvalidQueryException if the limit or the order is invalid
+     * @throws DataLoadingException if the initial load of the data has not finished yet
+     */
+    public YearRankingResponseDTO getYearRanking(int year, int limit, String order) {
+        if (limit < 1 || limit > maxLimit) {
+            throw new InvalidQueryException("limit must be between 1 and " + maxLimit);
+        }
+        boolean warmest = WARMEST.equalsIgnoreCase(order);
+        if (!warmest && !COLDEST.equalsIgnoreCase(order)) {
+            throw new InvalidQueryException("Unknown order " + order + ", expected one of " + WARMEST + ", " + COLDEST);
+        }
+        TemperatureRankings rankings = getRankings();
+
+        String yearName = String.format("%04d", year);
+        return new YearRankingResponseDTO(yearName, warmest ? WARMEST : COLDEST, rankings.getCityCount(yearName),
+                rankings.top(yearName, limit, warmest));
+    }
+
+    /**
+     * Retrieves the rank of a city among all cities in a year, from the warmest. The city is matched ignoring
+     * case, Polish diacritics and surrounding whitespace.
+     *
+     * @param city the name of the city
+     * @param year the year
+     * @return a {@link CityRankingDTO} with the rank and the average temperature of the city
+     * @throws InvalidCityException if the city parameter is null or empty
+     * @throws DataLoadingException if the initial load of the data has not finished yet
+     * @throws CityNotFoundException if no data is found for the city in the given year
+     */
+    public CityRankingDTO getCityRank(String city, int year) {
+        if (city == null || city.trim().isEmpty()) {
+            throw new InvalidCityException("City cannot be null or empty");
+        }
+        DataSnapshot snapshot = getSnapshot();
+        String storedCity = snapshot.resolveCity(city);
+        CityRankingDTO rank = storedCity == null ? null : snapshot.getRankings().rankOf(storedCity, String.format("%04d", year));
+
+        if (null == rank) {
+            throw new CityNotFoundException("Data for city " + city + " in year " + year + " was not found");
+        }
+
+        return rank;
+    }
+
+    /**
+     * Counts the local cities ranked before a city in a year, see {@link TemperatureRankings#countRankedBefore}.
+     *
+     * @param city               the name of the city, as it is stored
+     * @param year               the year
+     * @param averageTemperature the annual average temperature of the city
+     * @return the number of cities ranked before the city
+     * @throws DataLoadingException if the initial load of the data has not finished yet
+     */
+    public int countCitiesRankedBefore(String city, int year, double averageTemperature) {
+        return getRankings().countRankedBefore(String.format("%04d", year), averageTemperature, city);
+    }
+
+    /**
+     * Retrieves the statistics of every year over the readings of all cities.
+     *
+     * @return the national statistics in chronological order
+     * @throws DataLoadingException if the initial load of the data has not finished yet
+     */
+    public List<NationalAverageTemperatureDTO> getNationalAverages() {
+        return getRankings().getNationalAverages();
+    }
+
+    private TemperatureRankings getRankings() {
+        return getSnapshot().getRankings();
+    }
+
+    private DataSnapshot getSnapshot() {
+        if (!loadProgress.isInitialLoadCompleted()) {
+            throw new DataLoadingException("Data is still loading, please retry later");
+        }
+        return dataStore.getSnapshot();
+    }
+}
@@ -0,0 +1,283 @@
+package large.file.reading.challenge.app.store;
+
+import large.file.reading.challenge.app.dto.AnnualAverageTemperatureDTO;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * CityDataFile keeps the data of every city of a snapshot in a memory-mapped file, so the data does not take
+ * heap space: the serialized JSON response, the annual averages and the {@link CityStatistics} of the city.
+ *
+ * <p>The file starts with a magic number and a format version, followed by one record per city sorted by the
+ * UTF-8 bytes of the city name. Every record starts with the name, so the sorted key index at the end of the
+ * file, the offsets of the records, is searched with a binary search comparing the mapped bytes without
+ * decoding them. The records are mapped in segments of up to 1 GiB, as a single mapping cannot exceed 2 GiB,
+ * and a record never spans two segments. The file ends with the offset of the index, the number of cities and
+ * the magic number.</p>
+ *
+ * <p>The file is deleted right after it is mapped where the operating system allows it, the mapping stays valid
+ * until the snapshot is garbage collected.</p>
+ */
+final class CityDataFile {
+
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    private static final int MAGIC = 0x43445446;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4;
+
+    private static final int TRAILER_SIZE = 8 + 4 + 4;
+
+    private final MappedByteBuffer[] segments;
+
+    private final int segmentShift;
+
+    private final LongBuffer index;
+
+    /**
+     * The data of a single city as read from the file.
+     *
+     * @param json       the serialized response of the city
+     * @param years      the years of the annual averages
+     * @param averages   the annual averages
+     * @param statistics the temperature statistics of the city, may be {@code null}
+     */
+    record CityRecord(byte[] json, String[] years, double[] averages, CityStatistics statistics) {
+
+        static CityRecord of(byte[] json, List<AnnualAverageTemperatureDTO> data, CityStatistics statistics) {
+            String[] years = new String[data.size()];
+            double[] averages = new double[data.size()];
+            for (int i = 0; i < years.length; i++) {
+                years[i] = data.get(i).getYear();
+                averages[i] = data.get(i).getAverageTemperature();
+            }
+            return new CityRecord(json, years, averages, statistics);
+        }
+
+        /**
+         * Creates the {@link AnnualAverageTemperatureDTO}s of the city. Every call creates new objects.
+         */
+        List<AnnualAverageTemperatureDTO> toData() {
+            AnnualAverageTemperatureDTO[] dtos = new AnnualAverageTemperatureDTO[years.length];
+            for (int i = 0; i < dtos.length; i++) {
+                dtos[i] = new AnnualAverageTemperatureDTO(years[i], averages[i]);
+            }
+            return List.of(dtos);
+        }
+
+        /**
+         * @return the estimated heap size of the record, see {@link MemoryFootprint}
+         */
+        int estimateMemoryFootprint() {
+            long bytes = MemoryFootprint.OBJECT_HEADER_BYTES + 4 * MemoryFootprint.REFERENCE_BYTES
+                    + MemoryFootprint.ofArray(json.length, Byte.BYTES)
+                    + MemoryFootprint.ofArray(years.length, MemoryFootprint.REFERENCE_BYTES)
+                    + MemoryFootprint.ofArray(averages.length, Double.BYTES)
+                    + (statistics != null ? statistics.estimateMemoryFootprint() : 0);
+            for (String year : years) {
+                bytes += MemoryFootprint.ofString(year);
+            }
+            return (int) Math.min(bytes, Integer.MAX_VALUE);
+        }
+    }
+
+    private CityDataFile(MappedByteBuffer[] segments, int segmentSize, LongBuffer index) {
+        this.segments = segments;
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+        this.index = index;
+    }
+
+    /**
+     * Writes the records of the cities to a new file in the given directory and maps it.
+     *
+     * @param directory   the directory of the file
+     * @param cities      the names of the cities
+     * @param records     creates the record of a city, called once per city
+     * @param segmentSize the maximum size of a mapped segment, a power of two
+     * @return the mapped file
+     * @throws IOException if the file cannot be written or mapped
+     */
+    static CityDataFile write(Path directory, String[] cities, Function<String, CityRecord> records,
+                              int segmentSize) throws IOException {
+        byte[][] keys = new byte[cities.length][];
+        Integer[] order = new Integer[cities.length];
+        for (int i = 0; i < cities.length; i++) {
+            keys[i] = cities[i].getBytes(StandardCharsets.UTF_8);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+
+        Files.createDirectories(directory);
+        Path path = Files.createTempFile(directory, "cities-", ".data");
+        try {
+            long[] offsets = new long[cities.length];
+            long position;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                position = HEADER_SIZE;
+
+                ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+                DataOutputStream record = new DataOutputStream(recordBytes);
+                for (int i = 0; i < order.length; i++) {
+                    recordBytes.reset();
+                    writeRecord(record, keys[order[i]], records.apply(cities[order[i]]));
+                    if (recordBytes.size() > segmentSize) {
+                        throw new IllegalStateException("Data of city " + cities[order[i]] + " exceeds a segment");
+                    }
+                    int free = (int) (segmentSize - (position & (segmentSize - 1)));
+                    if (recordBytes.size() > free) {
+                        out.write(new byte[free]);
+                        position += free;
+                    }
+                    offsets[i] = position;
+                    recordBytes.writeTo(out);
+                    position += recordBytes.size();
+                }
+                for (long offset : offsets) {
+                    out.writeLong(offset);
+                }
+                out.writeLong(position);
+                out.writeInt(cities.length);
+                out.writeInt(MAGIC);
+            }
+            CityDataFile file = map(path, segmentSize);
+            deleteMapped(path);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, byte[] key, CityRecord record) throws IOException {
+        out.writeShort(key.length);
+        out.write(key);
+        out.writeInt(record.json().length);
+        out.write(record.json());
+        out.writeInt(record.years().length);
+        for (int i = 0; i < record.years().length; i++) {
+            byte[] year = record.years()[i].getBytes(StandardCharsets.UTF_8);
+            out.writeShort(year.length);
+            out.write(year);
+            out.writeDouble(record.averages()[i]);
+        }
+        out.writeBoolean(record.statistics() != null);
+        if (record.statistics() != null) {
+            record.statistics().writeTo(out);
+        }
+    }
+
+    private static CityDataFile map(Path path, int segmentSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, channel.size() - TRAILER_SIZE, TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            int count = trailer.getInt();
+            if (trailer.getInt() != MAGIC) {
+                throw new IllegalStateException("unknown format of " + path);
+            }
+
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((indexOffset + segmentSize - 1) / segmentSize)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i * segmentSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, indexOffset - start));
+            }
+            if (segments[0].getInt(0) != MAGIC || segments[0].getInt(4) != FORMAT_VERSION) {
+                throw new IllegalStateException("unknown format of " + path);
+            }
+            LongBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) count * Long.BYTES).asLongBuffer();
+            return new CityDataFile(segments, segmentSize, index);
+        }
+    }
+
+    /**
+     * Deletes the mapped file, or schedules its deletion on exit where mapped files cannot be deleted.
+     */
+    private static void deleteMapped(Path path) {
+        try {
+            Files.delete(path);
+        } catch (IOException e) {
+            path.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * Finds a city by its exact name with a binary search of the sorted key index.
+     *
+     * @param city the name of the city
+     * @return the record of the city, or {@code null} if the city is not in the file
+     */
+    CityRecord find(String city) {
+        byte[] key = city.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = index.limit() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareKey(index.get(middle), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return readRecord(index.get(middle));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of cities in the file
+     */
+    int size() {
+        return index.limit();
+    }
+
+    private int compareKey(long offset, byte[] key) {
+        ByteBuffer segment = segments[(int) (offset >>> segmentShift)];
+        int position = (int) (offset & ((1 << segmentShift) - 1));
+        int length = segment.getShort(position) & 0xFFFF;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Integer.compare(segment.get(position + 2 + i) & 0xFF, key[i] & 0xFF);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private CityRecord readRecord(long offset) {
+        ByteBuffer buffer = segments[(int) (offset >>> segmentShift)].duplicate();
+        buffer.position((int) (offset & ((1 << segmentShift) - 1)));
+        buffer.position(buffer.position() + 2 + (buffer.getShort() & 0xFFFF));
+
+        byte[] json = new byte[buffer.getInt()];
+        buffer.get(json);
+        String[] years = new String[buffer.getInt()];
+        double[] averages = new double[years.length];
+        for (int i = 0; i < years.length; i++) {
+            byte[] year = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(year);
+            years[i] = new String(year, StandardCharsets.UTF_8);
+            averages[i] = buffer.getDouble();
+        }
+        CityStatistics statistics = buffer.get() != 0 ? CityStatistics.read(buffer) : null;
+        return new CityRecord(json, years, averages, statistics);
+    }
+}
@@ -0,0 +1,67 @@
+package large.file.reading.challenge.app.store;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * CityDictionary assigns dense int ids, from 0, to city names, so the data of the cities can be kept in
+ * arrays indexed by id. Names are looked up in an open addressing table of ids, which takes a single
+ * int per slot instead of an entry object per city.
+ */
+final class CityDictionary {
+
+    static final CityDictionary EMPTY = new CityDictionary(new String[0]);
+
+    private final String[] names;
+
+    private final int[] table;
+
+    /**
+     * @param names the distinct city names, the id of a city is its index
+     */
+    CityDictionary(String[] names) {
+        this.names = names;
+        this.table = new int[Math.max(2, Integer.highestOneBit(Math.max(1, names.length) * 2 - 1) * 2)];
+        for (int id = 0; id < names.length; id++) {
+            int slot = slot(names[id]);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    /**
+     * @param name the name of the city
+     * @return the id of the city, or {@code -1} if the city is unknown
+     */
+    int getId(String name) {
+        if (name == null) {
+            return -1;
+        }
+        for (int slot = slot(name); table[slot] != 0; slot = (slot + 1) & (table.length - 1)) {
+            int id = table[slot] - 1;
+            if (names[id].equals(name)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    String getName(int id) {
+        return names[id];
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    Stream<String> names() {
+        return Arrays.stream(names);
+    }
+
+    private int slot(String name) {
+        int hash = name.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (table.length - 1);
+    }
+}
@@ -0,0 +1,125 @@
+package large.file.reading.challenge.app.store;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * CityNameIndex finds cities by names typed without care for case, Polish diacritics or surrounding
+ * whitespace, so {@code "lodz "} finds {@code "Łódź"}. The normalized names of all cities are kept in a
+ * sorted array, which answers both lookups of a whole name and prefix searches with a binary search.
+ */
+public final class CityNameIndex {
+
+    private final CityDictionary cities;
+
+    private final String[] keys;
+
+    private final int[] ids;
+
+    /**
+     * @param cities the dictionary of the cities to index
+     */
+    CityNameIndex(CityDictionary cities) {
+        this.cities = cities;
+        Integer[] order = new Integer[cities.size()];
+        String[] normalized = new String[cities.size()];
+        for (int id = 0; id < cities.size(); id++) {
+            order[id] = id;
+            normalized[id] = normalize(cities.getName(id));
+        }
+        Arrays.sort(order, Comparator.<Integer, String>comparing(id -> normalized[id]).thenComparing(cities::getName));
+
+        keys = new String[order.length];
+        ids = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = normalized[order[i]];
+            ids[i] = order[i];
+        }
+    }
+
+    /**
+     * Folds a city name for lookups: surrounding whitespace is trimmed, inner whitespace collapsed to
+     * single spaces, diacritics are removed after NFD decomposition, {@code 'ł'} is replaced by {@code 'l'}
+     * since it has no decomposition, and the result is lower-cased.
+     *
+     * @param name the city name
+     * @return the normalized name
+     */
+    public static String normalize(String name) {
+        String decomposed = Normalizer.normalize(name.strip(), Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean whitespace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                whitespace = true;
+                continue;
+            }
+            if (whitespace) {
+                normalized.append(' ');
+                whitespace = false;
+            }
+            normalized.append(c == 'ł' || c == 'Ł' ? 'l' : Character.toLowerCase(c));
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Finds a city by its exact name or, failing that, by its normalized name. A normalized name shared
+     * by several cities does not match any of them.
+     *
+     * @param name the name of the city
+     * @return the id of the city, or {@code -1} if no single city matches
+     */
+    int find(String name) {
+        int id = cities.getId(name);
+        if (id >= 0 || name == null) {
+            return id;
+        }
+        String key = normalize(name);
+        int index = lowerBound(key);
+        if (index >= keys.length || !keys[index].equals(key)) {
+            return -1;
+        }
+        if (index + 1 < keys.length && keys[index + 1].equals(key)) {
+            return -1;
+        }
+        return ids[index];
+    }
+
+    /**
+     * Finds cities whose normalized name starts with the normalized prefix.
+     *
+     * @param prefix the prefix, an empty prefix matches all cities
+     * @param limit  the maximum number of cities
+     * @return the names of the cities ordered by their normalized name
+     */
+    List<String> startingWith(String prefix, int limit) {
+        String key = normalize(prefix);
+        List<String> result = new ArrayList<>(Math.min(limit, 16));
+        for (int i = lowerBound(key); i < keys.length && result.size() < limit && keys[i].startsWith(key); i++) {
+            result.add(cities.getName(ids[i]));
+        }
+        return result;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,231 @@
+package large.file.reading.challenge.app.store;
+
+import large.file.reading.challenge.app.aggregate.TemperatureAccumulator;
+import large.file.reading.challenge.app.aggregate.TemperatureStatistic;
+import large.file.reading.challenge.app.dto.TemperatureStatisticDTO;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CityStatistics is an immutable copy of the {@link TemperatureAccumulator}s of a single city, kept in
+ * primitive arrays sorted by year, with years stored as shorts. Every year takes 13 slots: the whole year followed by its 12 months.
+ * A query over a range of years finds the first year with a binary search and reads the slots of the
+ * requested years, so it takes O(years) no matter how many readings were loaded.
+ */
+public class CityStatistics {
+
+    private static final int SLOTS_PER_YEAR = 13;
+
+    private static final String[] YEAR_NAMES = new String[10000];
+
+    private final short[] years;
+
+    private final long[] counts;
+
+    private final long[] sums;
+
+    private final long[] sumsOfSquares;
+
+    private final int[] mins;
+
+    private final int[] maxs;
+
+    private CityStatistics(int size) {
+        years = new short[size];
+        counts = new long[size * SLOTS_PER_YEAR];
+        sums = new long[size * SLOTS_PER_YEAR];
+        sumsOfSquares = new long[size * SLOTS_PER_YEAR];
+        mins = new int[size * SLOTS_PER_YEAR];
+        maxs = new int[size * SLOTS_PER_YEAR];
+    }
+
+    /**
+     * Copies the statistics of a city, so later changes of the accumulators do not affect them.
+     * Years must have 4 digits, as read by the parser.
+     *
+     * @param annualData the accumulators of the city keyed by year
+     * @return the statistics of the city
+     */
+    public static CityStatistics of(Map<String, TemperatureAccumulator> annualData) {
+        String[] sortedYears = annualData.keySet().toArray(String[]::new);
+        Arrays.sort(sortedYears);
+
+        CityStatistics statistics = new CityStatistics(sortedYears.length);
+        for (int i = 0; i < sortedYears.length; i++) {
+            TemperatureAccumulator accumulator = annualData.get(sortedYears[i]);
+            statistics.years[i] = Short.parseShort(sortedYears[i]);
+            statistics.set(i * SLOTS_PER_YEAR, accumulator);
+            for (int month = 1; month <= 12; month++) {
+                TemperatureAccumulator monthAccumulator = accumulator.getMonth(month);
+                if (monthAccumulator != null) {
+                    statistics.set(i * SLOTS_PER_YEAR + month, monthAccumulator);
+                }
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Writes the statistics in the binary form read by {@link #read(ByteBuffer)}.
+     *
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(years.length);
+        for (short year : years) {
+            out.writeShort(year);
+        }
+        for (int slot = 0; slot < counts.length; slot++) {
+            out.writeLong(counts[slot]);
+            out.writeLong(sums[slot]);
+            out.writeLong(sumsOfSquares[slot]);
+            out.writeInt(mins[slot]);
+            out.writeInt(maxs[slot]);
+        }
+    }
+
+    /**
+     * Reads statistics written by {@link #writeTo(DataOutput)} from the position of the buffer.
+     *
+     * @param buffer the buffer, its position is moved past the statistics
+     * @return the statistics
+     */
+    static CityStatistics read(ByteBuffer buffer) {
+        CityStatistics statistics = new CityStatistics(buffer.getInt());
+        for (int i = 0; i < statistics.years.length; i++) {
+            statistics.years[i] = buffer.getShort();
+        }
+        for (int slot = 0; slot < statistics.counts.length; slot++) {
+            statistics.counts[slot] = buffer.getLong();
+            statistics.sums[slot] = buffer.getLong();
+            statistics.sumsOfSquares[slot] = buffer.getLong();
+            statistics.mins[slot] = buffer.getInt();
+            statistics.maxs[slot] = buffer.getInt();
+        }
+        return statistics;
+    }
+
+    private void set(int slot, TemperatureAccumulator accumulator) {
+        counts[slot] = accumulator.getCount();
+        sums[slot] = accumulator.getSum();
+        sumsOfSquares[slot] = accumulator.getSumOfSquares();
+        mins[slot] = accumulator.getMin();
+        maxs[slot] = accumulator.getMax();
+    }
+
+    /**
+     * Calculates a statistic for every year, or every month with readings, in the given range of years.
+     *
+     * @param fromYear  the first year, inclusive
+     * @param toYear    the last year, inclusive
+     * @param statistic the statistic to calculate
+     * @param monthly   whether to calculate the statistic per month instead of per year
+     * @return the values in chronological order
+     */
+    public List<TemperatureStatisticDTO> query(int fromYear, int toYear, TemperatureStatistic statistic, boolean monthly) {
+        List<TemperatureStatisticDTO> result = new ArrayList<>();
+        for (int i = firstYearIndex(fromYear); i < years.length && years[i] <= toYear; i++) {
+            if (!monthly) {
+                result.add(toDTO(i * SLOTS_PER_YEAR, getYearName(i), null, statistic));
+                continue;
+            }
+            for (int month = 1; month <= 12; month++) {
+                int slot = i * SLOTS_PER_YEAR + month;
+                if (counts[slot] > 0) {
+                    result.add(toDTO(slot, getYearName(i), month, statistic));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Calculates a statistic over all readings in the given range of years.
+     *
+     * @param fromYear  the first year, inclusive
+     * @param toYear    the last year, inclusive
+     * @param statistic the statistic to calculate
+     * @return the value, or {@code null} if there are no readings in the range
+     */
+    public TemperatureStatisticDTO total(int fromYear, int toYear, TemperatureStatistic statistic) {
+        long count = 0;
+        long sum = 0;
+        long sumOfSquares = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = firstYearIndex(fromYear); i < years.length && years[i] <= toYear; i++) {
+            int slot = i * SLOTS_PER_YEAR;
+            count += counts[slot];
+            sum += sums[slot];
+            sumOfSquares += sumsOfSquares[slot];
+            min = Math.min(min, mins[slot]);
+            max = Math.max(max, maxs[slot]);
+        }
+        if (count == 0) {
+            return null;
+        }
+        return new TemperatureStatisticDTO(null, null, count, statistic.calculate(count, sum, sumOfSquares, min, max));
+    }
+
+    private TemperatureStatisticDTO toDTO(int slot, String year, Integer month, TemperatureStatistic statistic) {
+        return new TemperatureStatisticDTO(year, month, counts[slot],
+                statistic.calculate(counts[slot], sums[slot], sumsOfSquares[slot], mins[slot], maxs[slot]));
+    }
+
+    int size() {
+        return years.length;
+    }
+
+    long estimateMemoryFootprint() {
+        int slots = counts.length;
+        return MemoryFootprint.OBJECT_HEADER_BYTES + 6 * MemoryFootprint.REFERENCE_BYTES
+                + MemoryFootprint.ofArray(years.length, Short.BYTES)
+                + 3 * MemoryFootprint.ofArray(slots, Long.BYTES)
+                + 2 * MemoryFootprint.ofArray(slots, Integer.BYTES);
+    }
+
+    String getYearName(int index) {
+        int year = years[index];
+        String name = YEAR_NAMES[year];
+        if (name == null) {
+            name = String.format("%04d", year);
+            YEAR_NAMES[year] = name;
+        }
+        return name;
+    }
+
+    long getCount(int index) {
+        return counts[index * SLOTS_PER_YEAR];
+    }
+
+    long getSum(int index) {
+        return sums[index * SLOTS_PER_YEAR];
+    }
+
+    long getSumOfSquares(int index) {
+        return sumsOfSquares[index * SLOTS_PER_YEAR];
+    }
+
+    int getMin(int index) {
+        return mins[index * SLOTS_PER_YEAR];
+    }
+
+    int getMax(int index) {
+        return maxs[index * SLOTS_PER_YEAR];
+    }
+
+    private int firstYearIndex(int fromYear) {
+        if (fromYear > Short.MAX_VALUE) {
+            return years.length;
+        }
+        int index = Arrays.binarySearch(years, (short) Math.max(fromYear, 0));
+        return index >= 0 ? index : -index - 1;
+    }
+}
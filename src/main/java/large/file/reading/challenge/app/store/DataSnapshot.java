@@ -0,0 +1,397 @@
+package large.file.reading.challenge.app.store;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import large.file.reading.challenge.app.dto.AnnualAverageTemperatureDTO;
+import large.file.reading.challenge.app.dto.CityTemperatureResponseDTO;
+import large.file.reading.challenge.app.store.CityDataFile.CityRecord;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * DataSnapshot is an immutable, versioned view of the annual average temperatures of all cities.
+ * A snapshot is built completely before it is published in the {@link DataStore}, so readers never
+ * observe a partially loaded dataset.
+ *
+ * <p>The data is kept in a compact, column-oriented layout: city names are encoded to int ids by a
+ * {@link CityDictionary}, years to short ids by a dictionary of year names, and the annual averages of
+ * all cities are stored in primitive arrays, with the rows of a city between two offsets.
+ * {@link AnnualAverageTemperatureDTO}s are only created when {@link #getData(String)} is called.</p>
+ *
+ * <p>Cities are looked up by their exact name first and then by their name folded by {@link CityNameIndex},
+ * so lookups ignore case, Polish diacritics and surrounding whitespace.</p>
+ *
+ * <p>The response of every city is serialized to UTF-8 JSON once, when the snapshot is built, so
+ * requests can be answered without running Jackson again. The {@link TemperatureRankings} across all
+ * cities are built at the same time.</p>
+ *
+ * <p>When the snapshot is built with {@link TieredCities.Options}, only the city names, the name index and
+ * the rankings stay on the heap. The annual averages, the statistics and the JSON of the cities are written
+ * to a memory-mapped {@link TieredCities cold tier} instead, and the cities being read are cached in a
+ * bounded hot tier.</p>
+ */
+public class DataSnapshot {
+
+    /**
+     * Distinguishes versions of different application runs, which all start counting from 1.
+     */
+    private static final String RUN_ID = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    static final DataSnapshot EMPTY = new DataSnapshot(0, Map.of(), Map.of(), null, null, null);
+
+    @Getter
+    private final long version;
+
+    @Getter
+    private final String eTag;
+
+    private final CityDictionary cities;
+
+    private final CityNameIndex cityNameIndex;
+
+    /**
+     * The data of the cities when it is kept off the heap, in which case the arrays below are {@code null}.
+     */
+    private final TieredCities tiered;
+
+    private final int rowCount;
+
+    private final String[] yearNames;
+
+    /**
+     * The rows of the city with id {@code i} are between {@code rowOffsets[i]} and {@code rowOffsets[i + 1]}.
+     */
+    private final int[] rowOffsets;
+
+    private final short[] years;
+
+    private final double[] averages;
+
+    private final CityStatistics[] statistics;
+
+    private final byte[][] json;
+
+    @Getter
+    private final TemperatureRankings rankings;
+
+    /**
+     * The time the snapshot was built, right before it was published.
+     */
+    @Getter
+    private final long createdAtMillis = System.currentTimeMillis();
+
+    /**
+     * The estimated heap size of the snapshot in bytes without its hot tier, see {@link MemoryFootprint}.
+     */
+    private final long memoryFootprint;
+
+    /**
+     * Creates a snapshot. The given maps are copied into the compact layout and not retained.
+     *
+     * @param version    the version of the dataset
+     * @param data       the annual average temperatures keyed by city name
+     * @param statistics the temperature statistics keyed by city name, statistics of cities missing
+     *                   in {@code data} are ignored
+     * @param previous   the snapshot being replaced, its JSON is reused for cities whose data did not change,
+     *                   may be {@code null}
+     * @param tiering    the configuration of the tiers to keep the data of the cities in, {@code null} to keep
+     *                   all data on the heap
+     * @param jsonWriter the writer of {@link CityTemperatureResponseDTO}s serializing the JSON of the cities,
+     *                   may be {@code null} if {@code data} is empty
+     * @throws java.io.UncheckedIOException if the cold tier cannot be written
+     */
+    DataSnapshot(long version, Map<String, List<AnnualAverageTemperatureDTO>> data, Map<String, CityStatistics> statistics,
+                 DataSnapshot previous, TieredCities.Options tiering, ObjectWriter jsonWriter) {
+        this.version = version;
+        this.eTag = "\"" + RUN_ID + "-" + version + "\"";
+        this.cities = new CityDictionary(data.keySet().toArray(String[]::new));
+        this.cityNameIndex = new CityNameIndex(cities);
+
+        int rows = 0;
+        for (List<AnnualAverageTemperatureDTO> annualData : data.values()) {
+            rows += annualData.size();
+        }
+        this.rowCount = rows;
+        CityStatistics[] statisticsById = new CityStatistics[cities.size()];
+        for (int id = 0; id < cities.size(); id++) {
+            statisticsById[id] = statistics.get(cities.getName(id));
+        }
+
+        if (tiering != null) {
+            this.tiered = TieredCities.write(tiering, cities.names().toArray(String[]::new),
+                    city -> CityRecord.of(toJson(jsonWriter, city, data.get(city)), data.get(city), statistics.get(city)));
+            this.rowOffsets = null;
+            this.years = null;
+            this.averages = null;
+            this.statistics = null;
+            this.json = null;
+            this.yearNames = null;
+            this.rankings = TemperatureRankings.of(cities, statisticsById);
+            this.memoryFootprint = estimateMemoryFootprint();
+            return;
+        }
+
+        this.tiered = null;
+        this.rowOffsets = new int[cities.size() + 1];
+        this.years = new short[rows];
+        this.averages = new double[rows];
+        this.statistics = statisticsById;
+        this.json = new byte[cities.size()][];
+
+        Map<String, Short> yearIds = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        int row = 0;
+        for (int id = 0; id < cities.size(); id++) {
+            String city = cities.getName(id);
+            rowOffsets[id] = row;
+            for (AnnualAverageTemperatureDTO dto : data.get(city)) {
+                years[row] = yearIds.computeIfAbsent(dto.getYear(), year -> {
+                    names.add(year);
+                    return (short) (names.size() - 1);
+                });
+                averages[row] = dto.getAverageTemperature();
+                row++;
+            }
+        }
+        rowOffsets[cities.size()] = row;
+        this.yearNames = names.toArray(String[]::new);
+
+        for (int id = 0; id < cities.size(); id++) {
+            byte[] previousJson = previous != null ? previous.getJsonIfUnchanged(cities.getName(id), this, id) : null;
+            json[id] = previousJson != null ? previousJson : toJson(jsonWriter, cities.getName(id), getData(id));
+        }
+        this.rankings = TemperatureRankings.of(cities, statisticsById);
+        this.memoryFootprint = estimateMemoryFootprint();
+    }
+
+    /**
+     * Creates the {@link AnnualAverageTemperatureDTO}s of a city. Every call creates new objects.
+     *
+     * @param city the name of the city
+     * @return the annual average temperatures of the city, or {@code null} if the city is unknown
+     */
+    public List<AnnualAverageTemperatureDTO> getData(String city) {
+        int id = cityNameIndex.find(city);
+        return id < 0 ? null : getData(id);
+    }
+
+    private List<AnnualAverageTemperatureDTO> getData(int id) {
+        if (tiered != null) {
+            return tiered.get(cities.getName(id)).toData();
+        }
+        AnnualAverageTemperatureDTO[] dtos = new AnnualAverageTemperatureDTO[rowOffsets[id + 1] - rowOffsets[id]];
+        for (int i = 0; i < dtos.length; i++) {
+            int row = rowOffsets[id] + i;
+            dtos[i] = new AnnualAverageTemperatureDTO(yearNames[years[row]], averages[row]);
+        }
+        return List.of(dtos);
+    }
+
+    /**
+     * @param city the name of the city
+     * @return the temperature statistics of the city, or {@code null} if the city is unknown
+     */
+    public CityStatistics getStatistics(String city) {
+        int id = cityNameIndex.find(city);
+        if (id < 0) {
+            return null;
+        }
+        return tiered != null ? tiered.get(cities.getName(id)).statistics() : statistics[id];
+    }
+
+    /**
+     * Returns the {@link CityTemperatureResponseDTO} of a city serialized to UTF-8 JSON.
+     * The returned array is shared and must not be modified.
+     *
+     * @param city the name of the city
+     * @return the serialized response, or {@code null} if the city is unknown
+     */
+    public byte[] getJson(String city) {
+        int id = cityNameIndex.find(city);
+        if (id < 0) {
+            return null;
+        }
+        return tiered != null ? tiered.get(cities.getName(id)).json() : json[id];
+    }
+
+    /**
+     * Resolves a city name typed without care for case, diacritics or surrounding whitespace.
+     *
+     * @param city the name of the city
+     * @return the name of the city as stored, or {@code null} if no single city matches
+     */
+    public String resolveCity(String city) {
+        int id = cityNameIndex.find(city);
+        return id < 0 ? null : cities.getName(id);
+    }
+
+    /**
+     * Finds cities whose names start with a prefix, ignoring case, diacritics and surrounding whitespace.
+     *
+     * @param prefix the prefix
+     * @param limit  the maximum number of cities
+     * @return the names of the cities in alphabetical order of their normalized names
+     */
+    public List<String> findCitiesStartingWith(String prefix, int limit) {
+        return cityNameIndex.startingWith(prefix, limit);
+    }
+
+    /**
+     * Receives the data of the cities of a snapshot one city at a time, see {@link #forEachCity}.
+     */
+    @FunctionalInterface
+    public interface CityVisitor {
+
+        /**
+         * @param city the name of the city
+         * @param json the serialized response of the city, shared and must not be modified
+         * @param data the annual average temperatures of the city
+         * @throws IOException if writing the data of the city fails, which stops the iteration
+         */
+        void visit(String city, byte[] json, List<AnnualAverageTemperatureDTO> data) throws IOException;
+    }
+
+    /**
+     * Passes the data of every city to a visitor, one city at a time, so only the data of the current city is
+     * held besides the snapshot itself. In tiered mode the cities are read from the cold tier without being
+     * offered to the hot tier, so reading all cities does not evict the popular ones or count as cache misses.
+     *
+     * @param visitor receives the data of the cities, in no particular order
+     * @throws IOException if the visitor fails
+     */
+    public void forEachCity(CityVisitor visitor) throws IOException {
+        for (int id = 0; id < cities.size(); id++) {
+            String city = cities.getName(id);
+            if (tiered != null) {
+                CityRecord record = tiered.read(city);
+                visitor.visit(city, record.json(), record.toData());
+            } else {
+                visitor.visit(city, json[id], getData(id));
+            }
+        }
+    }
+
+    /**
+     * @return the names of all cities in the snapshot
+     */
+    public Stream<String> getCities() {
+        return cities.names();
+    }
+
+    /**
+     * @return the number of cities in the snapshot
+     */
+    public int getCityCount() {
+        return cities.size();
+    }
+
+    /**
+     * @return the number of (city, year) rows in the snapshot
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the estimated heap size of the snapshot in bytes, including the entries in its hot tier,
+     * see {@link MemoryFootprint}
+     */
+    public long getMemoryFootprint() {
+        return memoryFootprint + getHotTierBytes();
+    }
+
+    /**
+     * @return the estimated heap size of the entries in the hot tier, 0 if the data is kept on the heap
+     */
+    public long getHotTierBytes() {
+        return tiered != null ? tiered.getHotTierBytes() : 0;
+    }
+
+    private long estimateMemoryFootprint() {
+        if (tiered != null) {
+            long bytes = rankings.estimateMemoryFootprint();
+            for (int id = 0; id < cities.size(); id++) {
+                bytes += 2 * MemoryFootprint.ofString(cities.getName(id)) + 3 * Integer.BYTES;
+            }
+            return bytes;
+        }
+        long bytes = MemoryFootprint.ofArray(rowOffsets.length, Integer.BYTES)
+                + MemoryFootprint.ofArray(years.length, Short.BYTES)
+                + MemoryFootprint.ofArray(averages.length, Double.BYTES)
+                + MemoryFootprint.ofArray(statistics.length, MemoryFootprint.REFERENCE_BYTES)
+                + MemoryFootprint.ofArray(json.length, MemoryFootprint.REFERENCE_BYTES)
+                + rankings.estimateMemoryFootprint();
+        for (String yearName : yearNames) {
+            bytes += MemoryFootprint.ofString(yearName);
+        }
+        for (int id = 0; id < cities.size(); id++) {
+            // the name is referenced by the dictionary, and its normalized form by the name index
+            bytes += 2 * MemoryFootprint.ofString(cities.getName(id)) + 3 * Integer.BYTES
+                    + MemoryFootprint.ofArray(json[id].length, Byte.BYTES)
+                    + (statistics[id] != null ? statistics[id].estimateMemoryFootprint() : 0);
+        }
+        return bytes;
+    }
+
+    /**
+     * Creates the DTOs of all cities, for copy-on-write updates of single cities.
+     */
+    Map<String, List<AnnualAverageTemperatureDTO>> toDataMap() {
+        Map<String, List<AnnualAverageTemperatureDTO>> data = new HashMap<>(cities.size() * 4 / 3 + 1);
+        for (int id = 0; id < cities.size(); id++) {
+            String city = cities.getName(id);
+            data.put(city, tiered != null ? tiered.read(city).toData() : getData(id));
+        }
+        return data;
+    }
+
+    Map<String, CityStatistics> toStatisticsMap() {
+        Map<String, CityStatistics> statisticsMap = new HashMap<>(cities.size() * 4 / 3 + 1);
+        for (int id = 0; id < cities.size(); id++) {
+            String city = cities.getName(id);
+            CityStatistics cityStatistics = tiered != null ? tiered.read(city).statistics() : statistics[id];
+            if (cityStatistics != null) {
+                statisticsMap.put(city, cityStatistics);
+            }
+        }
+        return statisticsMap;
+    }
+
+    /**
+     * Returns the JSON of a city in this snapshot if the city has the same rows in the other snapshot.
+     */
+    private byte[] getJsonIfUnchanged(String city, DataSnapshot other, int otherId) {
+        int id = cities.getId(city);
+        if (id < 0 || tiered != null) {
+            return null;
+        }
+        int rows = rowOffsets[id + 1] - rowOffsets[id];
+        if (rows != other.rowOffsets[otherId + 1] - other.rowOffsets[otherId]) {
+            return null;
+        }
+        for (int i = 0; i < rows; i++) {
+            int row = rowOffsets[id] + i;
+            int otherRow = other.rowOffsets[otherId] + i;
+            if (!yearNames[years[row]].equals(other.yearNames[other.years[otherRow]])
+                    || Double.doubleToLongBits(averages[row]) != Double.doubleToLongBits(other.averages[otherRow])) {
+                return null;
+            }
+        }
+        return json[id];
+    }
+
+    private static byte[] toJson(ObjectWriter jsonWriter, String city, List<AnnualAverageTemperatureDTO> data) {
+        try {
+            return jsonWriter.writeValueAsBytes(new CityTemperatureResponseDTO(city, data, HttpStatus.OK));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize data of city " + city, e);
+        }
+    }
+}
@@ -1,38 +1,114 @@
 package large.file.reading.challenge.app.store;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
 import jakarta.annotation.PreDestroy;
 import large.file.reading.challenge.app.dto.AnnualAverageTemperatureDTO;
 import large.file.reading.challenge.app.dto.CityTemperatureResponseDTO;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
 import java.util.stream.Stream;
 
 /**
  * @author Jarosław Kormański
  * DataStore is a component responsible for caching and retrieving annual average temperature data for cities.
- * It uses a ConcurrentHashMap to store the data, ensuring thread-safe operations.
+ * The data is held in an immutable {@link DataSnapshot} behind a single volatile reference. A reload builds
+ * a new snapshot aside and publishes it in one atomic swap, so readers always see either the previous
+ * or the new dataset, never an empty or partial one. Snapshots keep the data in compact primitive arrays,
+ * the lists returned by {@link #getData(String)} are created on every call.
+ *
+ * <p>With {@code store.tiered.dir} set, the data of the cities is kept in a memory-mapped file in that directory
+ * instead, with the cities being read cached on the heap up to {@code store.tiered.hot.max.bytes}, see
+ * {@link TieredCities}.</p>
  */
 @Component
 @Slf4j
 public class DataStore {
 
-    private ConcurrentHashMap<String, List<AnnualAverageTemperatureDTO>> cache = new ConcurrentHashMap();
+    @Value("${store.tiered.dir:}")
+    private String tieredDirectory = "";
+
+    @Value("${store.tiered.hot.max.bytes:67108864}")
+    private long hotTierMaxBytes = 64L << 20;
+
+    private final ConcurrentStatsCounter hotTierStats = new ConcurrentStatsCounter();
+
+    private final ObjectWriter jsonWriter;
+
+    private volatile DataSnapshot snapshot = DataSnapshot.EMPTY;
+
+    /**
+     * Creates a data store serializing the JSON responses of the cities with a default {@link ObjectMapper}.
+     */
+    public DataStore() {
+        this(new ObjectMapper());
+    }
+
+    /**
+     * @param objectMapper the mapper serializing the JSON responses of the cities, Spring Boot's configured one,
+     *                     so they are the same as the responses serialized by the controllers
+     */
+    @Autowired
+    public DataStore(ObjectMapper objectMapper) {
+        this.jsonWriter = objectMapper.writerFor(CityTemperatureResponseDTO.class);
+    }
 
     public List<AnnualAverageTemperatureDTO> getData(String city) {
-        return cache.get(city);
+        return snapshot.getData(city);
+    }
+
+    /**
+     * Returns the currently published snapshot. Callers that read several cities should use
+     * a single snapshot to get a consistent view of the data.
+     *
+     * @return the current snapshot
+     */
+    public DataSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Replaces the whole dataset in one atomic swap, without temperature statistics.
+     * The given map must not be modified afterwards.
+     *
+     * @param data the annual average temperatures keyed by city name
+     */
+    public void publish(Map<String, List<AnnualAverageTemperatureDTO>> data) {
+        publish(data, Map.of());
+    }
+
+    /**
+     * Replaces the whole dataset in one atomic swap. The given maps must not be modified afterwards.
+     * The JSON responses of the cities are serialized before the swap, so they are ready for the first request.
+     *
+     * @param data       the annual average temperatures keyed by city name
+     * @param statistics the temperature statistics keyed by city name
+     */
+    public synchronized void publish(Map<String, List<AnnualAverageTemperatureDTO>> data, Map<String, CityStatistics> statistics) {
+        snapshot = new DataSnapshot(snapshot.getVersion() + 1, data, statistics, snapshot, tiering(), jsonWriter);
+        log.info("Published data snapshot version {} with {} cities", snapshot.getVersion(), data.size());
     }
 
     /**
      * Adds annual average temperature data for a specified city to the cache.
+     * The current snapshot is copied, so this method is meant for single updates, not for bulk loading.
+     * The temperature statistics of the city are removed, since they no longer match its data.
      *
      * @param city the name of the city
      * @param data the annual average temperature data for the city
      */
-    public void addData(String city, List<AnnualAverageTemperatureDTO> data) {
-        cache.put(city, data);
+    public synchronized void addData(String city, List<AnnualAverageTemperatureDTO> data) {
+        Map<String, List<AnnualAverageTemperatureDTO>> copy = snapshot.toDataMap();
+        copy.put(city, data);
+        snapshot = new DataSnapshot(snapshot.getVersion() + 1, copy, statisticsWithout(city), snapshot, tiering(), jsonWriter);
     }
 
     /**
@@ -40,8 +116,10 @@ public class DataStore {
      *
      * @param city the name of the city
      */
-    public void remove(String city) {
-        cache.remove(city);
+    public synchronized void remove(String city) {
+        Map<String, List<AnnualAverageTemperatureDTO>> copy = snapshot.toDataMap();
+        copy.remove(city);
+        snapshot = new DataSnapshot(snapshot.getVersion() + 1, copy, statisticsWithout(city), snapshot, tiering(), jsonWriter);
     }
 
     /**
@@ -50,11 +128,31 @@ public class DataStore {
      * @return a Stream of city names
      */
     public Stream<String> getAllStoredCities() {
-        return cache.keySet().stream();
+        return snapshot.getCities();
+    }
+
+    public synchronized void clearCache() {
+        snapshot = new DataSnapshot(snapshot.getVersion() + 1, Map.of(), Map.of(), null, null, jsonWriter);
+    }
+
+    /**
+     * Returns the hits, misses and evictions of the hot tier of all snapshots so far.
+     * All counts are 0 unless {@code store.tiered.dir} is set.
+     *
+     * @return the statistics of the hot tier
+     */
+    public CacheStats getHotTierStats() {
+        return hotTierStats.snapshot();
+    }
+
+    private TieredCities.Options tiering() {
+        return tieredDirectory.isBlank() ? null : new TieredCities.Options(Path.of(tieredDirectory), hotTierMaxBytes, hotTierStats);
     }
 
-    public void clearCache() {
-        cache.clear();
+    private Map<String, CityStatistics> statisticsWithout(String city) {
+        Map<String, CityStatistics> statistics = snapshot.toStatisticsMap();
+        statistics.remove(city);
+        return statistics;
     }
 
     /**
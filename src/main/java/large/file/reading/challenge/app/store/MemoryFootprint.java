@@ -0,0 +1,33 @@
+package large.file.reading.challenge.app.store;
+
+/**
+ * Estimates the heap size of the arrays and strings the store is made of, assuming a 64-bit JVM with
+ * compressed object pointers. The estimate ignores alignment and objects shared between snapshots.
+ */
+final class MemoryFootprint {
+
+    static final int OBJECT_HEADER_BYTES = 16;
+
+    static final int REFERENCE_BYTES = 4;
+
+    private MemoryFootprint() {
+    }
+
+    /**
+     * @param length       the length of the array
+     * @param elementBytes the size of an element, {@link #REFERENCE_BYTES} for arrays of objects
+     * @return the estimated size of the array
+     */
+    static long ofArray(int length, int elementBytes) {
+        return OBJECT_HEADER_BYTES + (long) length * elementBytes;
+    }
+
+    /**
+     * @param string a string
+     * @return the estimated size of the string and its byte array, assuming UTF-16 for non-Latin-1 strings
+     */
+    static long ofString(String string) {
+        boolean latin1 = string.chars().allMatch(c -> c < 256);
+        return OBJECT_HEADER_BYTES + Integer.BYTES + ofArray(string.length(), latin1 ? 1 : 2);
+    }
+}
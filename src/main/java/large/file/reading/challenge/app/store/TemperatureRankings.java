@@ -0,0 +1,239 @@
+package large.file.reading.challenge.app.store;
+
+import large.file.reading.challenge.app.aggregate.TemperatureStatistic;
+import large.file.reading.challenge.app.dto.CityRankingDTO;
+import large.file.reading.challenge.app.dto.NationalAverageTemperatureDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * TemperatureRankings holds indexes across all cities, built once when a {@link DataSnapshot} is created:
+ * for every year the cities sorted by their average temperature, the rank of every city, and the
+ * national statistics of the year over the readings of all cities. Rankings are answered in O(1) for the
+ * position of a city and O(limit) for the warmest or coldest cities.
+ *
+ * <p>Cities are ranked by their average temperature rounded as it is reported, cities with the same average
+ * by name. The order of a city depends only on its own average, so the rankings of the partitions of a
+ * cluster merge into the ranking of all cities, see {@link #countRankedBefore}.</p>
+ */
+public class TemperatureRankings {
+
+    /**
+     * The order of the names of cities with the same average temperature.
+     */
+    public static final Comparator<String> RANKING_ORDER = Comparator.naturalOrder();
+
+    static final TemperatureRankings EMPTY = new TemperatureRankings(CityDictionary.EMPTY, Map.of(), List.of());
+
+    private final CityDictionary cities;
+
+    private final Map<String, YearRanking> years;
+
+    private final List<NationalAverageTemperatureDTO> nationalAverages;
+
+    private TemperatureRankings(CityDictionary cities, Map<String, YearRanking> years,
+                                List<NationalAverageTemperatureDTO> nationalAverages) {
+        this.cities = cities;
+        this.years = years;
+        this.nationalAverages = nationalAverages;
+    }
+
+    /**
+     * The ids of the cities of a single year sorted from the warmest to the coldest, see {@link #RANKING_ORDER}.
+     */
+    private static class YearRanking {
+
+        private final int[] cityIds;
+
+        private final double[] averages;
+
+        /**
+         * The position of every city in {@link #cityIds}, indexed by city id, {@code -1} for cities without data.
+         */
+        private final int[] positions;
+
+        private YearRanking(List<CityAverage> cityAverages, int cityCount) {
+            cityAverages.sort(Comparator.comparingDouble(CityAverage::average).reversed()
+                    .thenComparing(CityAverage::city, RANKING_ORDER));
+            cityIds = new int[cityAverages.size()];
+            averages = new double[cityAverages.size()];
+            positions = new int[cityCount];
+            Arrays.fill(positions, -1);
+            for (int i = 0; i < cityIds.length; i++) {
+                CityAverage cityAverage = cityAverages.get(i);
+                cityIds[i] = cityAverage.cityId();
+                averages[i] = cityAverage.average();
+                positions[cityAverage.cityId()] = i;
+            }
+        }
+    }
+
+    private record CityAverage(int cityId, String city, double average) {
+    }
+
+    /**
+     * Builds the indexes from the statistics of all cities.
+     *
+     * @param statistics the temperature statistics keyed by city name
+     * @return the rankings
+     */
+    public static TemperatureRankings of(Map<String, CityStatistics> statistics) {
+        CityDictionary cities = new CityDictionary(statistics.keySet().toArray(String[]::new));
+        CityStatistics[] statisticsById = new CityStatistics[cities.size()];
+        for (int id = 0; id < cities.size(); id++) {
+            statisticsById[id] = statistics.get(cities.getName(id));
+        }
+        return of(cities, statisticsById);
+    }
+
+    /**
+     * Builds the indexes from the statistics of all cities.
+     *
+     * @param cities     the dictionary of the cities
+     * @param statistics the temperature statistics indexed by city id, {@code null} for cities without statistics
+     * @return the rankings
+     */
+    static TemperatureRankings of(CityDictionary cities, CityStatistics[] statistics) {
+        Map<String, List<CityAverage>> cityAveragesByYear = new TreeMap<>();
+        Map<String, long[]> totalsByYear = new HashMap<>();
+        for (int id = 0; id < statistics.length; id++) {
+            CityStatistics cityStatistics = statistics[id];
+            if (cityStatistics == null) {
+                continue;
+            }
+            for (int i = 0; i < cityStatistics.size(); i++) {
+                long count = cityStatistics.getCount(i);
+                long sum = cityStatistics.getSum(i);
+                String year = cityStatistics.getYearName(i);
+                cityAveragesByYear.computeIfAbsent(year, key -> new ArrayList<>())
+                        .add(new CityAverage(id, cities.getName(id), TemperatureStatistic.AVERAGE.calculate(count, sum, 0, 0, 0)));
+
+                long[] totals = totalsByYear.computeIfAbsent(year, key -> new long[]{0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE});
+                totals[0] += count;
+                totals[1] += sum;
+                totals[2] = Math.min(totals[2], cityStatistics.getMin(i));
+                totals[3] = Math.max(totals[3], cityStatistics.getMax(i));
+            }
+        }
+        if (cityAveragesByYear.isEmpty()) {
+            return EMPTY;
+        }
+
+        Map<String, YearRanking> years = new HashMap<>();
+        List<NationalAverageTemperatureDTO> nationalAverages = new ArrayList<>(cityAveragesByYear.size());
+        cityAveragesByYear.forEach((year, cityAverages) -> {
+            long[] totals = totalsByYear.get(year);
+            nationalAverages.add(new NationalAverageTemperatureDTO(year, cityAverages.size(), totals[0],
+                    TemperatureStatistic.AVERAGE.calculate(totals[0], totals[1], 0, 0, 0),
+                    totals[2] / 100.0, totals[3] / 100.0, totals[1] / 100.0));
+            years.put(year, new YearRanking(cityAverages, cities.size()));
+        });
+        return new TemperatureRankings(cities, years, Collections.unmodifiableList(nationalAverages));
+    }
+
+    /**
+     * Returns the warmest or the coldest cities of a year.
+     *
+     * @param year    the year
+     * @param limit   the maximum number of cities
+     * @param warmest {@code true} for the warmest cities first, {@code false} for the coldest first
+     * @return the cities with their rank from the warmest, empty if there is no data for the year
+     */
+    public List<CityRankingDTO> top(String year, int limit, boolean warmest) {
+        YearRanking ranking = years.get(year);
+        if (ranking == null) {
+            return List.of();
+        }
+        int size = Math.min(limit, ranking.cityIds.length);
+        List<CityRankingDTO> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(toDTO(ranking, warmest ? i : ranking.cityIds.length - 1 - i));
+        }
+        return result;
+    }
+
+    /**
+     * @param year the year
+     * @return the number of cities with data in the year
+     */
+    public int getCityCount(String year) {
+        YearRanking ranking = years.get(year);
+        return ranking == null ? 0 : ranking.cityIds.length;
+    }
+
+    /**
+     * @param city the name of the city
+     * @param year the year
+     * @return the rank of the city from the warmest, or {@code null} if the city has no data in the year
+     */
+    public CityRankingDTO rankOf(String city, String year) {
+        YearRanking ranking = years.get(year);
+        int id = cities.getId(city);
+        if (ranking == null || id < 0 || ranking.positions[id] < 0) {
+            return null;
+        }
+        return toDTO(ranking, ranking.positions[id]);
+    }
+
+    /**
+     * Counts the cities ranked before a city that may have no data here, e.g. one owned by another
+     * partition of a cluster: the warmer cities and the cities as warm whose names come first.
+     *
+     * @param year               the year
+     * @param averageTemperature the average temperature of the city
+     * @param city               the name of the city
+     * @return the number of cities ranked before the city, {@code 0} if there is no data for the year
+     */
+    public int countRankedBefore(String year, double averageTemperature, String city) {
+        YearRanking ranking = years.get(year);
+        if (ranking == null) {
+            return 0;
+        }
+        int low = 0;
+        int high = ranking.cityIds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            double average = ranking.averages[middle];
+            if (average > averageTemperature || average == averageTemperature
+                    && RANKING_ORDER.compare(cities.getName(ranking.cityIds[middle]), city) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the statistics of every year over the readings of all cities, in chronological order
+     */
+    public List<NationalAverageTemperatureDTO> getNationalAverages() {
+        return nationalAverages;
+    }
+
+    /**
+     * @return the estimated heap size of the rankings, without the city names shared with the snapshot
+     */
+    long estimateMemoryFootprint() {
+        long bytes = 0;
+        for (Map.Entry<String, YearRanking> year : years.entrySet()) {
+            YearRanking ranking = year.getValue();
+            bytes += MemoryFootprint.ofString(year.getKey())
+                    + MemoryFootprint.ofArray(ranking.cityIds.length, Integer.BYTES)
+                    + MemoryFootprint.ofArray(ranking.averages.length, Double.BYTES)
+                    + MemoryFootprint.ofArray(ranking.positions.length, Integer.BYTES);
+        }
+        return bytes;
+    }
+
+    private CityRankingDTO toDTO(YearRanking ranking, int position) {
+        return new CityRankingDTO(position + 1, cities.getName(ranking.cityIds[position]), ranking.averages[position]);
+    }
+}
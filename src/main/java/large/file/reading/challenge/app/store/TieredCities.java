@@ -0,0 +1,89 @@
+package large.file.reading.challenge.app.store;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import large.file.reading.challenge.app.store.CityDataFile.CityRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/**
+ * TieredCities holds the data of the cities of a single snapshot in two tiers: all cities in the cold tier,
+ * a memory-mapped {@link CityDataFile}, and the recently and frequently read cities in the hot tier, a cache
+ * on the heap bounded by the estimated size of its entries. The cache evicts with Caffeine's W-TinyLFU policy,
+ * which admits a city only if it is read more often than the city it would evict, so a scan over many cold
+ * cities does not flush the popular ones.
+ */
+final class TieredCities {
+
+    /**
+     * @param directory       the directory of the cold tier files
+     * @param hotTierMaxBytes the maximum estimated heap size of the hot tier
+     * @param stats           records hits, misses and evictions of the hot tier, shared by all snapshots, so
+     *                        the counts keep growing across reloads
+     */
+    record Options(Path directory, long hotTierMaxBytes, StatsCounter stats) {
+    }
+
+    private final CityDataFile coldTier;
+
+    private final Cache<String, CityRecord> hotTier;
+
+    private TieredCities(CityDataFile coldTier, Options options) {
+        this.coldTier = coldTier;
+        this.hotTier = Caffeine.newBuilder()
+                .maximumWeight(options.hotTierMaxBytes())
+                .weigher((String city, CityRecord record) -> record.estimateMemoryFootprint())
+                .recordStats(options::stats)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Writes the data of the cities to the cold tier.
+     *
+     * @param options the configuration of the tiers
+     * @param cities  the names of the cities
+     * @param records creates the record of a city, called once per city
+     * @return the tiers, with an empty hot tier
+     * @throws UncheckedIOException if the cold tier file cannot be written
+     */
+    static TieredCities write(Options options, String[] cities, Function<String, CityRecord> records) {
+        try {
+            return new TieredCities(CityDataFile.write(options.directory(), cities, records, CityDataFile.DEFAULT_SEGMENT_SIZE), options);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the data of the cities to " + options.directory(), e);
+        }
+    }
+
+    /**
+     * Returns the data of a city from the hot tier, or reads it from the cold tier and offers it to the hot tier.
+     *
+     * @param city the exact name of the city
+     * @return the data of the city, or {@code null} if the city is unknown
+     */
+    CityRecord get(String city) {
+        return hotTier.get(city, coldTier::find);
+    }
+
+    /**
+     * Reads the data of a city without changing the hot tier or its statistics, for reads of all cities.
+     *
+     * @param city the exact name of the city
+     * @return the data of the city, or {@code null} if the city is unknown
+     */
+    CityRecord read(String city) {
+        CityRecord record = hotTier.asMap().get(city);
+        return record != null ? record : coldTier.find(city);
+    }
+
+    /**
+     * @return the estimated heap size of the entries in the hot tier
+     */
+    long getHotTierBytes() {
+        return hotTier.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+}
@@ -0,0 +1,81 @@
+package large.file.reading.challenge.app.parser;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds delimiters with the incubating Vector API: every block of bytes as wide as the widest vectors the CPU
+ * supports, 32 bytes with AVX2 and 64 bytes with AVX-512, is compared with both delimiters at once, and the
+ * positions are read from the bits of the resulting mask. The bytes after the last whole block are compared
+ * one at a time.
+ *
+ * <p>Blocks are only loaded from arrays, {@code ByteVector.fromByteBuffer} of Java 17 was replaced by
+ * {@code fromMemorySegment} in Java 21. Buffers without an accessible array, like memory-mapped files,
+ * are copied to an array {@value #COPIED_BYTES} bytes at a time.</p>
+ *
+ * <p>The class is compiled only with the {@code simd} Maven profile and links against
+ * {@code jdk.incubator.vector}, so it is created by {@link DelimiterScanner#create(boolean)}, which checks
+ * that both are there.</p>
+ */
+final class VectorDelimiterScanner implements DelimiterScanner {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.length() <= Long.SIZE
+            ? ByteVector.SPECIES_PREFERRED : ByteVector.SPECIES_512;
+
+    private static final int COPIED_BYTES = 4096;
+
+    private final byte[] copy = new byte[COPIED_BYTES];
+
+    @Override
+    public int scan(ByteBuffer buffer, int start, int end, int[] positions) {
+        if (buffer.hasArray()) {
+            int arrayOffset = buffer.arrayOffset();
+            int count = scan(buffer.array(), arrayOffset + start, arrayOffset + end, -arrayOffset, positions, 0);
+            return scanRemaining(buffer, start, end, positions, count);
+        }
+        int count = 0;
+        int i = start;
+        while (count < positions.length && end - i >= SPECIES.length()) {
+            int copied = Math.min(COPIED_BYTES, SPECIES.loopBound(end - i));
+            buffer.get(i, copy, 0, copied);
+            count = scan(copy, 0, copied, i, positions, count);
+            i += copied;
+        }
+        return count < positions.length ? ScalarDelimiterScanner.scan(buffer, i, end, positions, count) : count;
+    }
+
+    /**
+     * Scans the whole blocks of an array range.
+     *
+     * @param offset added to the array indexes to get the reported positions
+     * @param count  the number of positions found before
+     * @return the number of positions found before and now
+     */
+    private static int scan(byte[] array, int start, int end, int offset, int[] positions, int count) {
+        for (int i = start, blockEnd = end - SPECIES.length(); i <= blockEnd; i += SPECIES.length()) {
+            ByteVector block = ByteVector.fromArray(SPECIES, array, i);
+            long bits = block.eq((byte) ';').or(block.eq((byte) '\n')).toLong();
+            while (bits != 0) {
+                positions[count++] = offset + i + Long.numberOfTrailingZeros(bits);
+                if (count == positions.length) {
+                    return count;
+                }
+                bits &= bits - 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Scans the bytes after the last whole block of an array-backed buffer, unless the positions are full.
+     */
+    private static int scanRemaining(ByteBuffer buffer, int start, int end, int[] positions, int count) {
+        if (count == positions.length) {
+            return count;
+        }
+        int blocksEnd = start + SPECIES.loopBound(end - start);
+        return ScalarDelimiterScanner.scan(buffer, blocksEnd, end, positions, count);
+    }
+}
@@ -0,0 +1,84 @@
+package large.file.reading.challenge.app.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs with the {@code simd} Maven profile only, which compiles {@link VectorDelimiterScanner}.
+ */
+public class VectorDelimiterScannerTest {
+
+    private final CsvRowParser csvRowParser = new CsvRowParser();
+
+    @Test
+    public void testVectorizedParserMatchesScalarParser() {
+        CsvRowParser vectorizedParser = new CsvRowParser(null, true);
+        assertTrue(vectorizedParser.isVectorized());
+        assertFalse(csvRowParser.isVectorized());
+
+        String[] lines = {"Warszawa;2018-09-19 05:17:32.619;9.97", "Łódź;2023-06-15 00:01:55.401;-2.25",
+                "Kraków;2020-01-01 00:00:00.000;1.5;", "Bardzo długa nazwa miasta, dłuższa niż cały blok wektora;2021-12-31 23:59:59.999;0.05",
+                ";2018-09-19 05:17:32.619;9.97", "Poznań;2018-09-19", "", "\r", "Gdańsk;2019-01-01 10:00:00.000;abc",
+                "Szczecin;;;", "Wrocław;2022-02-02 02:02:02.002;+3"};
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            csv.append(lines[random.nextInt(lines.length)]).append(random.nextInt(4) == 0 ? "\r\n" : "\n");
+        }
+        csv.append(lines[0]);
+
+        for (boolean endOfInput : new boolean[]{true, false}) {
+            List<String> scalarRows = new ArrayList<>();
+            List<String> vectorizedRows = new ArrayList<>();
+            ByteBuffer scalarBuffer = utf8(csv.toString());
+            ByteBuffer vectorizedBuffer = utf8(csv.toString());
+
+            long scalarCount = csvRowParser.parse(scalarBuffer, endOfInput, (city, year, month, temperature) ->
+                    scalarRows.add(city + "|" + year + "|" + month + "|" + temperature), (buffer, start, end) -> scalarRows.add(start + "-" + end));
+            long vectorizedCount = vectorizedParser.parse(vectorizedBuffer, endOfInput, (city, year, month, temperature) ->
+                    vectorizedRows.add(city + "|" + year + "|" + month + "|" + temperature), (buffer, start, end) -> vectorizedRows.add(start + "-" + end));
+
+            assertEquals(scalarCount, vectorizedCount);
+            assertEquals(scalarRows, vectorizedRows);
+            assertEquals(scalarBuffer.position(), vectorizedBuffer.position());
+            assertTrue(scalarCount > 1000);
+        }
+    }
+
+    @Test
+    public void testScannersFindSameDelimiters() {
+        Random random = new Random(7);
+        byte[] alphabet = {'a', 'b', ';', '\n', '\r', ';', (byte) 0xC5, (byte) 0x82};
+        byte[] bytes = new byte[10_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = alphabet[random.nextInt(alphabet.length)];
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).clear();
+        DelimiterScanner scalar = new ScalarDelimiterScanner();
+        DelimiterScanner vector = new VectorDelimiterScanner();
+
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.wrap(bytes), direct}) {
+            for (int start : new int[]{0, 1, 63, 100}) {
+                for (int capacity : new int[]{1, 7, 64, 20_000}) {
+                    int[] expected = new int[capacity];
+                    int[] actual = new int[capacity];
+                    int end = bytes.length - start / 2;
+                    int count = scalar.scan(buffer, start, end, expected);
+                    assertEquals(count, vector.scan(buffer, start, end, actual));
+                    assertArrayEquals(expected, actual);
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer utf8(String content) {
+        return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
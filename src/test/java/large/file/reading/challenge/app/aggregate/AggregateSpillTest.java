@@ -0,0 +1,124 @@
+package large.file.reading.challenge.app.aggregate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AggregateSpillTest {
+
+    private static final String[] CITIES = {"Gdańsk", "Kraków", "Łódź", "Poznań", "Warszawa", "Wrocław", "Zakopane"};
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    public void testSpilledAggregatesMatchUnboundedAggregates() throws IOException {
+        TemperatureAggregates unbounded = new TemperatureAggregates();
+        Map<String, Map<String, TemperatureAccumulator>> merged = new HashMap<>();
+        List<String> mergedCities = new ArrayList<>();
+
+        try (AggregateSpill spill = new AggregateSpill(10L * AggregateSpill.ESTIMATED_BYTES_PER_KEY, tempDir)) {
+            TemperatureAggregates first = new TemperatureAggregates(spill);
+            TemperatureAggregates second = new TemperatureAggregates(spill);
+            Random random = new Random(42);
+            for (int i = 0; i < 5000; i++) {
+                String city = CITIES[random.nextInt(CITIES.length)];
+                String year = String.valueOf(2000 + random.nextInt(20));
+                int month = 1 + random.nextInt(12);
+                int temperature = random.nextInt(8000) - 3000;
+                unbounded.onRow(city, year, month, temperature);
+                (i % 2 == 0 ? first : second).onRow(city, year, month, temperature);
+            }
+            first.combine(second);
+            assertTrue(second.getCities().isEmpty());
+
+            spill.forEachCity(first, (city, annualData) -> {
+                mergedCities.add(city);
+                merged.put(city, annualData);
+            });
+            assertTrue(spill.getSpilledRuns() > 1);
+            assertTrue(spill.getSpilledBytes() > 0);
+        }
+
+        assertEquals(Stream.of(CITIES).sorted().toList(), mergedCities);
+        assertEqualAggregates(unbounded.getCities(), merged);
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testManyRunsAreMergedInPasses() throws IOException {
+        TemperatureAggregates unbounded = new TemperatureAggregates();
+        Map<String, Map<String, TemperatureAccumulator>> merged = new HashMap<>();
+
+        try (AggregateSpill spill = new AggregateSpill(1, tempDir)) {
+            TemperatureAggregates aggregates = new TemperatureAggregates(spill);
+            for (int i = 0; i < 400; i++) {
+                String city = CITIES[i % CITIES.length];
+                String year = String.valueOf(1900 + i / 2);
+                unbounded.onRow(city, year, 1 + i % 12, i);
+                aggregates.onRow(city, year, 1 + i % 12, i);
+            }
+            spill.forEachCity(aggregates, merged::put);
+            assertTrue(spill.getSpilledRuns() > 64);
+        }
+
+        assertEqualAggregates(unbounded.getCities(), merged);
+    }
+
+    @Test
+    public void testAggregatesWithinBudgetAreNotSpilled() throws IOException {
+        try (AggregateSpill spill = new AggregateSpill(1024L * AggregateSpill.ESTIMATED_BYTES_PER_KEY, tempDir)) {
+            TemperatureAggregates aggregates = new TemperatureAggregates(spill);
+            aggregates.onRow("Warszawa", "2018", 9, 997);
+            aggregates.onRow("Kraków", "2019", 1, -412);
+
+            Map<String, Map<String, TemperatureAccumulator>> merged = new HashMap<>();
+            spill.forEachCity(aggregates, merged::put);
+
+            assertEquals(0, spill.getSpilledRuns());
+            assertEquals(aggregates.getCities(), merged);
+        }
+    }
+
+    private static void assertEqualAggregates(Map<String, Map<String, TemperatureAccumulator>> expected,
+                                              Map<String, Map<String, TemperatureAccumulator>> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((city, annualData) -> {
+            assertEquals(annualData.keySet(), actual.get(city).keySet(), city);
+            annualData.forEach((year, accumulator) -> {
+                TemperatureAccumulator actualAccumulator = actual.get(city).get(year);
+                assertEqualStatistics(accumulator, actualAccumulator);
+                for (int month = 1; month <= 12; month++) {
+                    if (accumulator.getMonth(month) == null) {
+                        assertNull(actualAccumulator.getMonth(month));
+                    } else {
+                        assertEqualStatistics(accumulator.getMonth(month), actualAccumulator.getMonth(month));
+                    }
+                }
+            });
+        });
+    }
+
+    private static void assertEqualStatistics(TemperatureAccumulator expected, TemperatureAccumulator actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getSum(), actual.getSum());
+        assertEquals(expected.getSumOfSquares(), actual.getSumOfSquares());
+        assertEquals(expected.getMin(), actual.getMin());
+        assertEquals(expected.getMax(), actual.getMax());
+    }
+}
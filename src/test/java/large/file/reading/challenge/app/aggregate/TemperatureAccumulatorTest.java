@@ -0,0 +1,52 @@
+package large.file.reading.challenge.app.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TemperatureAccumulatorTest {
+
+    @Test
+    public void testAverageIsRoundedHalfUpFromExactSum() {
+        assertEquals(10.18, average(-235, 2270));
+        assertEquals(-10.18, average(235, -2270));
+        assertEquals(0.01, average(1, 0));
+        assertEquals(-0.01, average(-1, 0));
+        assertEquals(0.0, average(1, -1));
+        assertEquals(0.33, average(100, 0, 0));
+        assertEquals(0.67, average(200, 0, 0));
+        assertEquals(13.86, average(1386));
+        assertEquals(0.0, new TemperatureAccumulator().getAverageTemperature());
+    }
+
+    @Test
+    public void testAverageMatchesDecimalArithmetic() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int[] temperatures = new int[1 + random.nextInt(8)];
+            long sum = 0;
+            for (int j = 0; j < temperatures.length; j++) {
+                temperatures[j] = random.nextInt(20_000) - 10_000;
+                sum += temperatures[j];
+            }
+            double expected = BigDecimal.valueOf(sum)
+                    .divide(BigDecimal.valueOf(100L * temperatures.length), 2, RoundingMode.HALF_UP)
+                    .doubleValue();
+
+            assertEquals(expected, average(temperatures));
+            assertEquals(expected, TemperatureStatistic.AVERAGE.calculate(temperatures.length, sum, 0, 0, 0));
+        }
+    }
+
+    private static double average(int... temperatures) {
+        TemperatureAccumulator accumulator = new TemperatureAccumulator();
+        for (int temperature : temperatures) {
+            accumulator.addHundredths(temperature);
+        }
+        return accumulator.getAverageTemperature();
+    }
+}
@@ -0,0 +1,71 @@
+package large.file.reading.challenge.app.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionRingTest {
+
+    private static final List<String> PEERS = List.of("http://localhost:8081", "http://localhost:8082", "http://localhost:8083");
+
+    private static final List<String> CITIES = IntStream.range(0, 30_000).mapToObj(i -> "City " + i).toList();
+
+    @Test
+    public void testOwnerIsDeterministic() {
+        PartitionRing ring = new PartitionRing(PEERS, 128);
+        PartitionRing sameRing = new PartitionRing(PEERS, 128);
+
+        for (String city : CITIES) {
+            assertEquals(ring.getOwner(city), sameRing.getOwner(city));
+            assertTrue(PEERS.contains(ring.getOwner(city)));
+        }
+    }
+
+    @Test
+    public void testCitiesAreSpreadEvenly() {
+        PartitionRing ring = new PartitionRing(PEERS, 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        CITIES.forEach(city -> counts.merge(ring.getOwner(city), 1, Integer::sum));
+
+        assertEquals(PEERS.size(), counts.size());
+        int expected = CITIES.size() / PEERS.size();
+        counts.values().forEach(count -> assertTrue(Math.abs(count - expected) < expected / 4, counts::toString));
+    }
+
+    @Test
+    public void testAddingPeerMovesOnlyCitiesToIt() {
+        PartitionRing ring = new PartitionRing(PEERS, 128);
+        String newPeer = "http://localhost:8084";
+        PartitionRing grownRing = new PartitionRing(List.of(PEERS.get(0), PEERS.get(1), PEERS.get(2), newPeer), 128);
+
+        int moved = 0;
+        for (String city : CITIES) {
+            String owner = grownRing.getOwner(city);
+            if (!owner.equals(ring.getOwner(city))) {
+                assertEquals(newPeer, owner);
+                moved++;
+            }
+        }
+        assertTrue(moved > CITIES.size() / 8 && moved < CITIES.size() / 3, "moved " + moved);
+    }
+
+    @Test
+    public void testNormalizedNamesHaveSameOwner() {
+        PartitionRing ring = new PartitionRing(PEERS, 16);
+
+        assertEquals(ring.getOwner("Łódź"), ring.getOwner("lodz"));
+        assertEquals(ring.getOwner("Zielona Góra"), ring.getOwner(" zielona  GORA"));
+    }
+
+    @Test
+    public void testInvalidRing() {
+        assertThrows(IllegalArgumentException.class, () -> new PartitionRing(List.of(), 128));
+        assertThrows(IllegalArgumentException.class, () -> new PartitionRing(PEERS, 0));
+    }
+}
@@ -0,0 +1,211 @@
+package large.file.reading.challenge.app.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import large.file.reading.challenge.app.LargeFileReadingApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs two partitioned instances and a single unpartitioned instance on localhost and checks that
+ * both partitioned instances answer every query like the single one.
+ */
+public class PartitionedClusterTest {
+
+    private static final List<String> CITIES = List.of("Gdańsk", "Kraków", "Poznań", "Warszawa", "Wrocław", "Łódź");
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
+
+    private static final List<ConfigurableApplicationContext> CONTEXTS = new ArrayList<>();
+
+    private static String single;
+
+    private static List<String> peers;
+
+    @BeforeAll
+    public static void startInstances() throws IOException {
+        single = start("--server.port=0");
+        peers = List.of("http://localhost:" + freePort(), "http://localhost:" + freePort());
+        for (String peer : peers) {
+            start("--server.port=" + URI.create(peer).getPort(),
+                    "--cluster.peers=" + String.join(",", peers),
+                    "--cluster.self=" + peer);
+        }
+    }
+
+    @AfterAll
+    public static void stopInstances() {
+        CONTEXTS.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    public void testSingleCityQueriesAreForwardedToOwner() throws Exception {
+        for (String peer : peers) {
+            for (String city : List.of("Gdańsk", "Kraków", "Poznań", "Warszawa", "Wrocław", "Łódź", "lodz", "Londyn")) {
+                String query = "?city=" + URLEncoder.encode(city, StandardCharsets.UTF_8);
+
+                HttpResponse<String> expected = get(single, "/city/temperature/annual/average" + query);
+                HttpResponse<String> actual = get(peer, "/city/temperature/annual/average" + query);
+                assertEquals(expected.statusCode(), actual.statusCode(), city);
+                assertEquals(expected.body(), actual.body(), city);
+
+                assertEquals(get(single, "/city/temperature/statistics" + query).body(),
+                        get(peer, "/city/temperature/statistics" + query).body(), city);
+            }
+        }
+    }
+
+    @Test
+    public void testMultiCityQueriesAreGatheredFromAllPeers() throws Exception {
+        String batch = OBJECT_MAPPER.writeValueAsString(List.of("Łódź", "Londyn", "warszawa", "Gdańsk", "Kraków", "Poznań", "Wrocław"));
+        for (String peer : peers) {
+            assertEquals(json(get(single, "/city/temperature/cities?limit=5")), json(get(peer, "/city/temperature/cities?limit=5")));
+            assertEquals(json(get(single, "/city/temperature/cities?prefix=w")), json(get(peer, "/city/temperature/cities?prefix=w")));
+            assertEquals(json(post(single, "/city/temperature/annual/average/batch", batch)),
+                    json(post(peer, "/city/temperature/annual/average/batch", batch)));
+        }
+    }
+
+    @Test
+    public void testRankingsAreGatheredFromAllPeers() throws Exception {
+        for (String peer : peers) {
+            assertEquals(json(get(single, "/temperature/national/average")), json(get(peer, "/temperature/national/average")));
+            for (int year = 2018; year <= 2024; year++) {
+                for (String query : List.of("?limit=3&order=warmest", "?limit=4&order=coldest", "?limit=10&order=Coldest")) {
+                    String ranking = "/temperature/ranking" + query + "&year=" + year;
+                    assertEquals(json(get(single, ranking)), json(get(peer, ranking)), ranking);
+                }
+                for (String city : List.of("Gdańsk", "Kraków", "Poznań", "Warszawa", "Wrocław", "Łódź", "lodz", "Londyn", " ")) {
+                    String cityRank = "/temperature/ranking/city?city=" + URLEncoder.encode(city, StandardCharsets.UTF_8) + "&year=" + year;
+
+                    HttpResponse<String> expected = get(single, cityRank);
+                    HttpResponse<String> actual = get(peer, cityRank);
+                    assertEquals(expected.statusCode(), actual.statusCode(), cityRank);
+                    assertEquals(OBJECT_MAPPER.readTree(expected.body()), OBJECT_MAPPER.readTree(actual.body()), cityRank);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testExportJoinsExportsOfAllPeers() throws Exception {
+        List<String> expectedLines = sortedLines(get(single, "/city/temperature/export?format=ndjson"));
+        Map<String, String> expectedFrames = binaryFrames(getBytes(single, "/city/temperature/export?format=binary", Map.of()).body());
+        assertEquals(CITIES.size(), expectedLines.size());
+        for (String peer : peers) {
+            HttpResponse<String> ndjson = get(peer, "/city/temperature/export?format=ndjson");
+            assertEquals(expectedLines, sortedLines(ndjson));
+
+            HttpResponse<byte[]> binary = getBytes(peer, "/city/temperature/export?format=binary", Map.of());
+            assertEquals(200, binary.statusCode());
+            assertEquals(expectedFrames, binaryFrames(binary.body()));
+
+            assertEquals(binary.headers().firstValue("ETag"), ndjson.headers().firstValue("ETag"));
+            assertEquals(peers.size(), ndjson.headers().firstValue("ETag").orElseThrow().split("\\+").length);
+
+            HttpResponse<byte[]> forwarded = getBytes(peer, "/city/temperature/export", Map.of(PeerClient.FORWARDED_HEADER, "true"));
+            int ownedCities = new String(forwarded.body(), StandardCharsets.UTF_8).split("\n").length;
+            assertTrue(ownedCities < CITIES.size(), "a forwarded export is answered from the local data only");
+        }
+        assertEquals(400, get(peers.get(0), "/city/temperature/export?format=xml").statusCode());
+    }
+
+    @Test
+    public void testEveryInstanceLoadsOnlyItsShare() throws Exception {
+        Set<String> loadedCities = new HashSet<>();
+        for (String peer : peers) {
+            HttpResponse<String> response = HTTP_CLIENT.send(HttpRequest.newBuilder(URI.create(peer + "/city/temperature/cities?limit=100"))
+                    .header(PeerClient.FORWARDED_HEADER, "true").build(), HttpResponse.BodyHandlers.ofString());
+            for (JsonNode city : json(response)) {
+                assertTrue(loadedCities.add(city.asText()), city + " is loaded by several instances");
+            }
+        }
+        assertEquals(new HashSet<>(CITIES), loadedCities);
+    }
+
+    private static String start(String... args) {
+        List<String> arguments = new ArrayList<>(List.of(args));
+        arguments.add("--path.to.example.csv.file=src/test/resources/test.csv");
+        arguments.add("--csv.loader.startup.async=false");
+        arguments.add("--logging.level.root=WARN");
+        ConfigurableApplicationContext context = SpringApplication.run(LargeFileReadingApplication.class, arguments.toArray(String[]::new));
+        CONTEXTS.add(context);
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static HttpResponse<String> get(String url, String pathAndQuery) throws Exception {
+        return HTTP_CLIENT.send(HttpRequest.newBuilder(URI.create(url + pathAndQuery)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<byte[]> getBytes(String url, String pathAndQuery, Map<String, String> headers) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url + pathAndQuery));
+        headers.forEach(request::header);
+        return HTTP_CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static List<String> sortedLines(HttpResponse<String> response) {
+        assertEquals(200, response.statusCode(), response.body());
+        List<String> lines = new ArrayList<>(List.of(response.body().split("\n")));
+        Collections.sort(lines);
+        return lines;
+    }
+
+    /**
+     * @return the frames of a binary export keyed by city, as hex strings
+     */
+    private static Map<String, String> binaryFrames(byte[] export) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(export));
+        in.skipNBytes(Long.BYTES * 2);
+        Map<String, String> frames = new HashMap<>();
+        for (int frameLength = in.readInt(); frameLength != 0; frameLength = in.readInt()) {
+            byte[] frame = in.readNBytes(frameLength);
+            String city = new DataInputStream(new ByteArrayInputStream(frame)).readUTF();
+            frames.put(city, HexFormat.of().formatHex(frame));
+        }
+        assertEquals(-1, in.read());
+        return frames;
+    }
+
+    private static HttpResponse<String> post(String url, String path, String json) throws Exception {
+        return HTTP_CLIENT.send(HttpRequest.newBuilder(URI.create(url + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static JsonNode json(HttpResponse<String> response) throws IOException {
+        assertEquals(200, response.statusCode(), response.body());
+        return OBJECT_MAPPER.readTree(response.body());
+    }
+}
@@ -0,0 +1,114 @@
+package large.file.reading.challenge.app.file;
+
+import large.file.reading.challenge.app.aggregate.TemperatureAccumulator;
+import large.file.reading.challenge.app.aggregate.TemperatureAggregates;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AggregatesCacheFileTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        Path cacheFile = tempDir.resolve("test.csv.aggregates");
+        AggregatesCacheFile.write(cacheFile, new CachedAggregates(1234, 5678, 42, true, sampleAggregates()));
+
+        Optional<CachedAggregates> cachedAggregates = AggregatesCacheFile.read(cacheFile);
+
+        assertTrue(cachedAggregates.isPresent());
+        CachedAggregates cached = cachedAggregates.get();
+        assertEquals(1234, cached.getSourceSize());
+        assertEquals(5678, cached.getSourceLastModified());
+        assertEquals(42, cached.getSourceChecksum());
+        assertTrue(cached.isSourceEndsWithLineBreak());
+
+        TemperatureAccumulator lodz = cached.getAggregates().getCities().get("Łódź").get("2023");
+        assertEquals(2, lodz.getCount());
+        assertEquals(-719, lodz.getSum());
+        assertEquals(-944, lodz.getMin());
+        assertEquals(225, lodz.getMax());
+        assertEquals(225L * 225 + 944L * 944, lodz.getSumOfSquares());
+        assertEquals(225, lodz.getMonth(6).getSum());
+        assertEquals(-944, lodz.getMonth(12).getMin());
+        assertNull(lodz.getMonth(1));
+        assertEquals(2, cached.getAggregates().getCities().get("Gdańsk").size());
+    }
+
+    @Test
+    public void testReadCorruptedFile() throws IOException {
+        Path cacheFile = tempDir.resolve("test.csv.aggregates");
+        AggregatesCacheFile.write(cacheFile, new CachedAggregates(1234, 5678, 42, true, sampleAggregates()));
+        byte[] content = Files.readAllBytes(cacheFile);
+        content[content.length / 2] ^= 1;
+        Files.write(cacheFile, content);
+
+        assertTrue(AggregatesCacheFile.read(cacheFile).isEmpty());
+    }
+
+    @Test
+    public void testWriteAndReadThroughSmallBuffers() throws IOException {
+        TemperatureAggregates aggregates = new TemperatureAggregates();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            String city = "City " + random.nextInt(50) + "x".repeat(random.nextInt(40));
+            aggregates.onRow(city, String.valueOf(1990 + random.nextInt(30)), 1 + random.nextInt(12), random.nextInt(-2000, 4000));
+        }
+        Path cacheFile = tempDir.resolve("test.csv.aggregates");
+        AggregatesCacheFile.write(cacheFile, new CachedAggregates(1234, 5678, 42, false, aggregates), 13);
+
+        for (int bufferSize : new int[]{8, 13, AggregatesCacheFile.DEFAULT_BUFFER_SIZE}) {
+            CachedAggregates cached = AggregatesCacheFile.read(cacheFile, bufferSize).orElseThrow();
+
+            assertFalse(cached.isSourceEndsWithLineBreak());
+            assertEquals(aggregates.getCities().keySet(), cached.getAggregates().getCities().keySet());
+            aggregates.getCities().forEach((city, years) -> years.forEach((year, expected) -> {
+                TemperatureAccumulator actual = cached.getAggregates().getCities().get(city).get(year);
+                assertEquals(expected.getCount(), actual.getCount());
+                assertEquals(expected.getSum(), actual.getSum());
+                assertEquals(expected.getSumOfSquares(), actual.getSumOfSquares());
+                assertEquals(expected.getMin(), actual.getMin());
+                assertEquals(expected.getMax(), actual.getMax());
+                for (int month = 1; month <= 12; month++) {
+                    TemperatureAccumulator expectedMonth = expected.getMonth(month);
+                    assertEquals(expectedMonth == null ? null : expectedMonth.getSum(),
+                            actual.getMonth(month) == null ? null : actual.getMonth(month).getSum());
+                }
+            }));
+        }
+    }
+
+    @Test
+    public void testReadTruncatedFile() throws IOException {
+        Path cacheFile = tempDir.resolve("test.csv.aggregates");
+        AggregatesCacheFile.write(cacheFile, new CachedAggregates(1234, 5678, 42, true, sampleAggregates()));
+        byte[] content = Files.readAllBytes(cacheFile);
+        Files.write(cacheFile, Arrays.copyOf(content, content.length - 9));
+
+        assertTrue(AggregatesCacheFile.read(cacheFile).isEmpty());
+    }
+
+    @Test
+    public void testReadMissingFile() {
+        assertTrue(AggregatesCacheFile.read(tempDir.resolve("missing.aggregates")).isEmpty());
+    }
+
+    private static TemperatureAggregates sampleAggregates() {
+        TemperatureAggregates aggregates = new TemperatureAggregates();
+        aggregates.onRow("Łódź", "2023", 6, 225);
+        aggregates.onRow("Łódź", "2023", 12, -944);
+        aggregates.onRow("Gdańsk", "2018", 1, 997);
+        aggregates.onRow("Gdańsk", "2019", 1, 1386);
+        return aggregates;
+    }
+}
@@ -0,0 +1,67 @@
+package large.file.reading.challenge.app.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvFileSourceTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    public void testSingleFile() throws IOException {
+        Path file = Files.createFile(tempDir.resolve("temperatures.csv"));
+        Files.createFile(tempDir.resolve("other.csv"));
+
+        CsvFileSource source = CsvFileSource.of(file.toString());
+
+        assertEquals(tempDir, source.getDirectory());
+        assertEquals(List.of(file), source.listFiles());
+        assertTrue(source.matches(Path.of("temperatures.csv")));
+        assertFalse(source.matches(Path.of("other.csv")));
+    }
+
+    @Test
+    public void testMissingSingleFile() throws IOException {
+        CsvFileSource source = CsvFileSource.of(tempDir.resolve("missing.csv").toString());
+
+        assertEquals(List.of(), source.listFiles());
+        assertTrue(source.matches(Path.of("missing.csv")));
+    }
+
+    @Test
+    public void testDirectory() throws IOException {
+        Path second = Files.createFile(tempDir.resolve("b.csv"));
+        Path first = Files.createFile(tempDir.resolve("a.csv"));
+        Files.createFile(tempDir.resolve(".hidden.csv"));
+        Files.createDirectory(tempDir.resolve("subdirectory"));
+
+        CsvFileSource source = CsvFileSource.of(tempDir.toString());
+
+        assertEquals(tempDir, source.getDirectory());
+        assertEquals(List.of(first, second), source.listFiles());
+        assertFalse(source.matches(Path.of(".hidden.csv")));
+    }
+
+    @Test
+    public void testGlobPattern() throws IOException {
+        Path first = Files.createFile(tempDir.resolve("temperatures-1.csv"));
+        Path second = Files.createFile(tempDir.resolve("temperatures-2.csv"));
+        Files.createFile(tempDir.resolve("temperatures-2.csv.tmp"));
+        Files.createFile(tempDir.resolve("other.csv"));
+
+        CsvFileSource source = CsvFileSource.of(tempDir.resolve("temperatures-*.csv").toString());
+
+        assertEquals(tempDir, source.getDirectory());
+        assertEquals(List.of(first, second), source.listFiles());
+        assertTrue(source.matches(Path.of("temperatures-3.csv")));
+        assertFalse(source.matches(Path.of("other.csv")));
+    }
+}
@@ -0,0 +1,82 @@
+package large.file.reading.challenge.app.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FilePrefixChecksumTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    public void testChecksumChangesWhenMiddleBytesAreRewritten() throws IOException {
+        byte[] content = new byte[3 * 1024 * 1024];
+        new Random(42).nextBytes(content);
+        Path file = tempDir.resolve("file.csv");
+        Files.write(file, content);
+        long original = checksum(file, content.length);
+
+        content[content.length / 2]++;
+        Files.write(file, content);
+
+        assertNotEquals(original, checksum(file, content.length));
+    }
+
+    @Test
+    public void testPrefixChecksumIsUnchangedByAppend() throws IOException {
+        byte[] content = new byte[1536 * 1024];
+        new Random(7).nextBytes(content);
+        Path file = tempDir.resolve("file.csv");
+        Files.write(file, content);
+        long prefix = checksum(file, content.length);
+
+        Files.write(file, new byte[]{'a', 'b', '\n'}, StandardOpenOption.APPEND);
+
+        assertEquals(prefix, checksum(file, content.length));
+    }
+
+    @Test
+    public void testCombinedChecksumsOfRangesMatchChecksumOfWholeContent() {
+        byte[] content = new byte[100_000];
+        new Random(3).nextBytes(content);
+        long whole = crc(content, 0, content.length);
+
+        for (int split : new int[]{0, 1, 7, 4096, 65_537, content.length - 1, content.length}) {
+            long first = crc(content, 0, split);
+            long second = crc(content, split, content.length);
+            assertEquals(whole, FilePrefixChecksum.combine(first, second, content.length - split), "split at " + split);
+        }
+    }
+
+    @Test
+    public void testChecksumOfPrefixBeyondEndOfFileFails() throws IOException {
+        Path file = tempDir.resolve("file.csv");
+        Files.write(file, new byte[10]);
+
+        assertThrows(IOException.class, () -> checksum(file, 11));
+    }
+
+    private static long crc(byte[] content, int start, int end) {
+        CRC32C crc = new CRC32C();
+        crc.update(content, start, end - start);
+        return crc.getValue();
+    }
+
+    private static long checksum(Path file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return FilePrefixChecksum.of(channel, length);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package large.file.reading.challenge.app.file.watcher;
+
+import large.file.reading.challenge.app.service.CsvFileDataLoaderService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class FileWatcherSchedulerTest {
+
+    @Mock
+    private CsvFileDataLoaderService csvFileDataLoaderService;
+
+    @InjectMocks
+    private FileWatcherScheduler fileWatcherScheduler;
+
+    @TempDir
+    private Path tempDir;
+
+    @AfterEach
+    public void stopWatcher() {
+        fileWatcherScheduler.stop();
+    }
+
+    @Test
+    public void testBurstOfWritesTriggersSingleCheck() throws Exception {
+        Path csvFile = tempDir.resolve("watched.csv");
+        configure(csvFile, "events");
+        fileWatcherScheduler.start();
+
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(csvFile, "Warszawa;2018-09-19 05:17:32.619;9.97\n", StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            Thread.sleep(20);
+        }
+
+        verify(csvFileDataLoaderService, timeout(5000).times(1)).checkIsFileChanged();
+        Thread.sleep(500);
+        verify(csvFileDataLoaderService, times(1)).checkIsFileChanged();
+    }
+
+    @Test
+    public void testOtherFilesInDirectoryAreIgnored() throws Exception {
+        configure(tempDir.resolve("watched.csv"), "events");
+        fileWatcherScheduler.start();
+
+        Files.writeString(tempDir.resolve("other.csv"), "Warszawa;2018-09-19 05:17:32.619;9.97\n");
+
+        Thread.sleep(500);
+        verify(csvFileDataLoaderService, never()).checkIsFileChanged();
+    }
+
+    @Test
+    public void testNewShardMatchingGlobPatternTriggersCheck() throws Exception {
+        configure(tempDir.resolve("shard-*.csv"), "events");
+        fileWatcherScheduler.start();
+
+        Files.writeString(tempDir.resolve("notes.txt"), "Warszawa;2018-09-19 05:17:32.619;9.97\n");
+        Thread.sleep(500);
+        verify(csvFileDataLoaderService, never()).checkIsFileChanged();
+
+        Files.writeString(tempDir.resolve("shard-1.csv"), "Warszawa;2018-09-19 05:17:32.619;9.97\n");
+        verify(csvFileDataLoaderService, timeout(5000).times(1)).checkIsFileChanged();
+    }
+
+    @Test
+    public void testPollingIsUsedWhenDirectoryCannotBeWatched() {
+        configure(tempDir.resolve("missing").resolve("watched.csv"), "events");
+        when(csvFileDataLoaderService.isFileWatcherSchedulerEnabled()).thenReturn(true);
+        fileWatcherScheduler.start();
+
+        fileWatcherScheduler.watchFile();
+
+        verify(csvFileDataLoaderService, times(1)).checkIsFileChanged();
+    }
+
+    @Test
+    public void testPollingIsSkippedWhenEventsAreDelivered() {
+        configure(tempDir.resolve("watched.csv"), "events");
+        fileWatcherScheduler.start();
+
+        fileWatcherScheduler.watchFile();
+
+        verify(csvFileDataLoaderService, never()).checkIsFileChanged();
+    }
+
+    @Test
+    public void testFailedCheckDoesNotStopWatching() throws Exception {
+        Path csvFile = tempDir.resolve("watched.csv");
+        configure(csvFile, "events");
+        doThrow(new IllegalStateException("reload failed")).doNothing().when(csvFileDataLoaderService).checkIsFileChanged();
+        fileWatcherScheduler.start();
+
+        Files.writeString(csvFile, "Warszawa;2018-09-19 05:17:32.619;9.97\n");
+        verify(csvFileDataLoaderService, timeout(5000).times(1)).checkIsFileChanged();
+        Files.writeString(csvFile, "Warszawa;2018-09-19 05:17:32.619;9.98\n", StandardOpenOption.APPEND);
+
+        verify(csvFileDataLoaderService, timeout(5000).times(2)).checkIsFileChanged();
+    }
+
+    @Test
+    public void testPollingIsUsedWhenWatcherThreadFails() throws Exception {
+        Path csvFile = tempDir.resolve("watched.csv");
+        configure(csvFile, "events");
+        doThrow(new OutOfMemoryError("Java heap space")).doNothing().when(csvFileDataLoaderService).checkIsFileChanged();
+        when(csvFileDataLoaderService.isFileWatcherSchedulerEnabled()).thenReturn(true);
+        fileWatcherScheduler.start();
+
+        Files.writeString(csvFile, "Warszawa;2018-09-19 05:17:32.619;9.97\n");
+        verify(csvFileDataLoaderService, timeout(5000).times(1)).checkIsFileChanged();
+        Thread.sleep(100);
+        fileWatcherScheduler.watchFile();
+
+        verify(csvFileDataLoaderService, times(2)).checkIsFileChanged();
+    }
+
+    private void configure(Path csvFile, String mode) {
+        ReflectionTestUtils.setField(fileWatcherScheduler, "csvFilePath", csvFile.toString());
+        ReflectionTestUtils.setField(fileWatcherScheduler, "mode", mode);
+        ReflectionTestUtils.setField(fileWatcherScheduler, "debounceMillis", 200L);
+        ReflectionTestUtils.setField(fileWatcherScheduler, "maxDelayMillis", 2000L);
+    }
+}
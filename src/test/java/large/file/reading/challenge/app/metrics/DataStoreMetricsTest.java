@@ -0,0 +1,40 @@
+package large.file.reading.challenge.app.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import large.file.reading.challenge.app.dto.AnnualAverageTemperatureDTO;
+import large.file.reading.challenge.app.store.DataStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataStoreMetricsTest {
+
+    @Test
+    public void testGaugesFollowPublishedSnapshot() {
+        DataStore dataStore = new DataStore();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new DataStoreMetrics(dataStore).bindTo(registry);
+
+        assertTrue(Double.isNaN(registry.get("data.snapshot.age").timeGauge().value()));
+        assertEquals(0, registry.get("data.store.cities").gauge().value());
+
+        dataStore.publish(Map.of(
+                "Warszawa", List.of(new AnnualAverageTemperatureDTO("2018", 9.97), new AnnualAverageTemperatureDTO("2019", 13.81)),
+                "Gdańsk", List.of(new AnnualAverageTemperatureDTO("2018", 9.1))));
+        double memory = registry.get("data.store.memory").gauge().value();
+        dataStore.addData("Kraków", List.of(new AnnualAverageTemperatureDTO("2018", 10.2)));
+
+        assertEquals(2, registry.get("data.snapshot.version").gauge().value());
+        assertTrue(registry.get("data.snapshot.age").timeGauge().value() >= 0);
+        assertEquals(3, registry.get("data.store.cities").gauge().value());
+        assertEquals(4, registry.get("data.store.rows").gauge().value());
+        assertTrue(memory > 0);
+        assertTrue(registry.get("data.store.memory").gauge().value() > memory);
+        assertEquals(0, registry.get("data.store.hot.tier.requests").tag("result", "hit").functionCounter().count());
+        assertEquals(0, registry.get("data.store.hot.tier.evictions").functionCounter().count());
+        assertEquals(0, registry.get("data.store.hot.tier.size").gauge().value());
+    }
+}
@@ -0,0 +1,67 @@
+package large.file.reading.challenge.app.metrics;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import large.file.reading.challenge.app.cluster.ClusterPartitioning;
+import large.file.reading.challenge.app.service.CsvFileDataLoaderService;
+import large.file.reading.challenge.app.service.LoadProgress;
+import large.file.reading.challenge.app.store.DataStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadMetricsTest {
+
+    private static final Path TEST_CSV = Path.of("src/test/resources/test.csv");
+
+    private final LoadProgress loadProgress = new LoadProgress();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private CsvFileDataLoaderService csvFileDataLoaderService;
+
+    @BeforeEach
+    public void setUp() {
+        new LoadMetrics(loadProgress).bindTo(registry);
+        csvFileDataLoaderService = new CsvFileDataLoaderService(new DataStore(), loadProgress, new ClusterPartitioning());
+    }
+
+    @Test
+    public void testSuccessfulLoad() throws IOException {
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", TEST_CSV.toString());
+        ReflectionTestUtils.invokeMethod(csvFileDataLoaderService, "loadCsvData");
+
+        assertEquals(Files.size(TEST_CSV), registry.get("csv.load.bytes").functionCounter().count());
+        assertEquals(Files.size(TEST_CSV), registry.get("csv.load.bytes.read").functionCounter().count());
+        assertEquals(10386, registry.get("csv.load.rows").functionCounter().count());
+        assertEquals(0, registry.get("csv.load.malformed").functionCounter().count());
+        assertEquals(0, registry.get("csv.load.spill.runs").functionCounter().count());
+        assertEquals(1, registry.get("csv.load").tag("result", "success").functionTimer().count());
+        assertEquals(0, registry.get("csv.load").tag("result", "failure").functionTimer().count());
+        for (String phase : new String[]{"read", "parse", "aggregate", "publish"}) {
+            FunctionTimer timer = registry.get("csv.load.phase").tag("phase", phase).functionTimer();
+            assertEquals(1, timer.count());
+            assertTrue(timer.totalTime(TimeUnit.NANOSECONDS) > 0, phase);
+        }
+    }
+
+    @Test
+    public void testFailedLoadCountsMalformedRow(@TempDir Path tempDir) throws IOException {
+        Path csvFile = tempDir.resolve("malformed.csv");
+        Files.writeString(csvFile, "Warszawa;2018-09-19 05:17:32.619;9.97\nWarszawa;not a date;9.97\n");
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", csvFile.toString());
+        ReflectionTestUtils.invokeMethod(csvFileDataLoaderService, "loadCsvData");
+
+        assertEquals(1, registry.get("csv.load.malformed").functionCounter().count());
+        assertEquals(0, registry.get("csv.load").tag("result", "success").functionTimer().count());
+        assertEquals(1, registry.get("csv.load").tag("result", "failure").functionTimer().count());
+    }
+}
@@ -0,0 +1,140 @@
+package large.file.reading.challenge.app.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+public class CsvRowParserTest {
+
+    private final CsvRowParser csvRowParser = new CsvRowParser();
+
+    private final List<String> rows = new ArrayList<>();
+
+    @Test
+    public void testParseMultiByteCityNames() {
+        ByteBuffer buffer = utf8("Łódź;2023-06-15 00:01:55.401;2.25\nGdańsk;2019-01-01 10:00:00.000;-9.44\nŁódź;2023-06-16 00:01:55.401;10\n");
+
+        long parsedRows = csvRowParser.parse(buffer, true, this::collect);
+
+        assertEquals(3, parsedRows);
+        assertEquals(List.of("Łódź|2023|6|225", "Gdańsk|2019|1|-944", "Łódź|2023|6|1000"), rows);
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testParseInternsCityNamesAndYears() {
+        List<String> cities = new ArrayList<>();
+        List<String> years = new ArrayList<>();
+        csvRowParser.parse(utf8("Kraków;2020-01-01 00:00:00.000;1.5\nKraków;2020-01-02 00:00:00.000;-0.05\n"), true,
+                (city, year, month, temperature) -> {
+                    cities.add(city);
+                    years.add(year);
+                });
+
+        assertSame(cities.get(0), cities.get(1));
+        assertSame(years.get(0), years.get(1));
+    }
+
+    @Test
+    public void testParseStopsBeforeIncompleteLine() {
+        ByteBuffer buffer = utf8("Poznań;2018-09-19 05:17:32.619;9.97\r\nPoznań;2018-09-20 05:17:32.619;3");
+
+        long parsedRows = csvRowParser.parse(buffer, false, this::collect);
+
+        assertEquals(1, parsedRows);
+        assertEquals(List.of("Poznań|2018|9|997"), rows);
+        assertEquals("Poznań;2018-09-19 05:17:32.619;9.97\r\n".getBytes(StandardCharsets.UTF_8).length, buffer.position());
+    }
+
+    @Test
+    public void testParseRejectsMalformedLine() {
+        ByteBuffer buffer = utf8("Wrocław;2018-09-19 05:17:32.619;abc\n");
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> csvRowParser.parse(buffer, true, this::collect));
+
+        assertTrue(exception.getMessage().contains("Wrocław;2018-09-19 05:17:32.619;abc"));
+    }
+
+    @Test
+    public void testParseRejectsTemperatureBeyondHundredths() {
+        List<String> malformedLines = new ArrayList<>();
+
+        long parsedRows = csvRowParser.parse(utf8("Wrocław;2018-09-19 05:17:32.619;12.345\nWrocław;2018-09-20 05:17:32.619;12.340\n"
+                        + "Wrocław;2018-09-21 05:17:32.619;-0.001\n"), true, this::collect,
+                (buffer, start, end) -> malformedLines.add(StandardCharsets.UTF_8.decode(buffer.slice(start, end - start)).toString()));
+
+        assertEquals(1, parsedRows);
+        assertEquals(List.of("Wrocław|2018|9|1234"), rows);
+        assertEquals(List.of("Wrocław;2018-09-19 05:17:32.619;12.345", "Wrocław;2018-09-21 05:17:32.619;-0.001"), malformedLines);
+    }
+
+    @Test
+    public void testParseRejectsInvalidMonth() {
+        ByteBuffer buffer = utf8("Wrocław;2018-13-19 05:17:32.619;1.5\n");
+
+        assertThrows(IllegalArgumentException.class, () -> csvRowParser.parse(buffer, true, this::collect));
+    }
+
+    @Test
+    public void testParseSkipsMalformedLinesWithHandler() {
+        ByteBuffer buffer = utf8("Wrocław;2018-09-19 05:17:32.619;abc\nKraków;2020-01-01 00:00:00.000;1.5\nKraków\nKraków;2020-01-02");
+        List<String> malformedLines = new ArrayList<>();
+
+        long parsedRows = csvRowParser.parse(buffer, true, this::collect, (malformedBuffer, start, end) -> {
+            byte[] line = new byte[end - start];
+            malformedBuffer.get(start, line);
+            malformedLines.add(start + ":" + new String(line, StandardCharsets.UTF_8));
+        });
+
+        assertEquals(1, parsedRows);
+        assertEquals(List.of("Kraków|2020|1|150"), rows);
+        int secondLine = "Wrocław;2018-09-19 05:17:32.619;abc\n".getBytes(StandardCharsets.UTF_8).length;
+        int thirdLine = secondLine + "Kraków;2020-01-01 00:00:00.000;1.5\n".getBytes(StandardCharsets.UTF_8).length;
+        int fourthLine = thirdLine + "Kraków\n".getBytes(StandardCharsets.UTF_8).length;
+        assertEquals(List.of("0:Wrocław;2018-09-19 05:17:32.619;abc", thirdLine + ":Kraków", fourthLine + ":Kraków;2020-01-02"),
+                malformedLines);
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testParseSkipsRowsOfRejectedCities() {
+        List<String> filteredCities = new ArrayList<>();
+        CsvRowParser filteringParser = new CsvRowParser(city -> {
+            filteredCities.add(city);
+            return !city.equals("Kraków");
+        });
+        ByteBuffer buffer = utf8("Kraków;2020-01-01 00:00:00.000;1.5\nWrocław;2018-09-19 05:17:32.619;9.97\nKraków;2020-01-02 00:00:00.000;2.5\n");
+
+        long parsedRows = filteringParser.parse(buffer, true, this::collect);
+
+        assertEquals(1, parsedRows);
+        assertEquals(List.of("Wrocław|2018|9|997"), rows);
+        assertEquals(List.of("Kraków", "Wrocław"), filteredCities);
+    }
+
+    @Test
+    public void testVectorizedParserFallsBackToScalarScanner() {
+        assumeFalse(DelimiterScanner.isVectorized(DelimiterScanner.create(true)));
+        CsvRowParser vectorizedParser = new CsvRowParser(null, true);
+
+        long parsedRows = vectorizedParser.parse(utf8("Warszawa;2018-09-19 05:17:32.619;9.97\n"), true, this::collect);
+
+        assertFalse(vectorizedParser.isVectorized());
+        assertEquals(1, parsedRows);
+        assertEquals(List.of("Warszawa|2018|9|997"), rows);
+    }
+
+    private void collect(String city, String year, int month, int temperature) {
+        rows.add(city + "|" + year + "|" + month + "|" + temperature);
+    }
+
+    private static ByteBuffer utf8(String content) {
+        return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,9 +1,18 @@
 package large.file.reading.challenge.app.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import large.file.reading.challenge.app.aggregate.TemperatureAggregates;
 import large.file.reading.challenge.app.dto.AnnualAverageTemperatureDTO;
 import large.file.reading.challenge.app.dto.CityTemperatureResponseDTO;
+import large.file.reading.challenge.app.dto.DataExportDTO;
+import large.file.reading.challenge.app.dto.SerializedCityTemperatureDTO;
+import large.file.reading.challenge.app.dto.TemperatureStatisticsResponseDTO;
 import large.file.reading.challenge.app.exception.CityNotFoundException;
+import large.file.reading.challenge.app.exception.DataLoadingException;
 import large.file.reading.challenge.app.exception.InvalidCityException;
+import large.file.reading.challenge.app.exception.InvalidQueryException;
+import large.file.reading.challenge.app.store.CityStatistics;
+import large.file.reading.challenge.app.store.DataSnapshot;
 import large.file.reading.challenge.app.store.DataStore;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,12 +20,21 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -30,11 +48,18 @@ public class CityTemperatureServiceTest {
     @Mock
     private DataStore dataStore;
 
+    @Mock
+    private LoadProgress loadProgress;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @InjectMocks
     private CityTemperatureService cityTemperatureService;
 
     @Test
     public void testGetAnnualAverageTemperaturesForCityNotFound() {
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(true);
         when(dataStore.getData("Londyn")).thenReturn(null);
 
         Exception exception = assertThrows(CityNotFoundException.class, () -> {
@@ -51,6 +76,7 @@ public class CityTemperatureServiceTest {
         List<AnnualAverageTemperatureDTO> annualAverageTemperatureDTOList = Arrays.asList(
                 new AnnualAverageTemperatureDTO("2018", 19.5)
         );
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(true);
         when(dataStore.getData("Szczecin")).thenReturn(annualAverageTemperatureDTOList);
 
         CityTemperatureResponseDTO response = cityTemperatureService.getAnnualAverageTemperatures("Szczecin");
@@ -71,4 +97,208 @@ public class CityTemperatureServiceTest {
         assertTrue(actualMessage.contains(expectedMessage));
     }
 
+    @Test
+    public void testGetAnnualAverageTemperaturesWhileLoading() {
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(false);
+
+        Exception exception = assertThrows(DataLoadingException.class, () -> {
+            cityTemperatureService.getAnnualAverageTemperatures("Szczecin");
+        });
+
+        assertTrue(exception.getMessage().contains("still loading"));
+        verifyNoInteractions(dataStore);
+    }
+
+    @Test
+    public void testGetSerializedAnnualAverageTemperaturesForExistingCity() {
+        DataStore realDataStore = new DataStore();
+        realDataStore.publish(Map.of("Szczecin", List.of(new AnnualAverageTemperatureDTO("2018", 19.5))));
+        DataSnapshot snapshot = realDataStore.getSnapshot();
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(true);
+        when(dataStore.getSnapshot()).thenReturn(snapshot);
+
+        SerializedCityTemperatureDTO response = cityTemperatureService.getSerializedAnnualAverageTemperatures("Szczecin");
+
+        assertEquals("Szczecin", response.getCity());
+        assertSame(snapshot.getJson("Szczecin"), response.getJson());
+        assertEquals(snapshot.getETag(), response.getETag());
+    }
+
+    @Test
+    public void testGetSerializedAnnualAverageTemperaturesForCityNotFound() {
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(true);
+        when(dataStore.getSnapshot()).thenReturn(new DataStore().getSnapshot());
+
+        assertThrows(CityNotFoundException.class, () -> cityTemperatureService.getSerializedAnnualAverageTemperatures("Londyn"));
+    }
+
+    @Test
+    public void testStreamAnnualAverageTemperaturesWithUnknownCity() throws Exception {
+        DataStore realDataStore = new DataStore();
+        realDataStore.publish(Map.of(
+                "Szczecin", List.of(new AnnualAverageTemperatureDTO("2018", 19.5)),
+                "Łódź", List.of(new AnnualAverageTemperatureDTO("2019", 9.75))));
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(true);
+        when(dataStore.getSnapshot()).thenReturn(realDataStore.getSnapshot());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        cityTemperatureService.streamAnnualAverageTemperatures(List.of("Łódź", "Londyn", "Szczecin", "Łódź", " "))
+                .writeTo(outputStream);
+
+        assertEquals("["
+                        + "{\"city\":\"Łódź\",\"data\":[{\"year\":\"2019\",\"averageTemperature\":9.75}]},"
+                        + "{\"city\":\"Londyn\",\"error\":\"Data for city Londyn was not found\"},"
+                        + "{\"city\":\"Szczecin\",\"data\":[{\"year\":\"2018\",\"averageTemperature\":19.5}]},"
+                        + "{\"city\":\" \",\"error\":\"City cannot be null or empty\"}"
+                        + "]",
+                outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testStreamAnnualAverageTemperaturesWithTooManyCities() {
+        ReflectionTestUtils.setField(cityTemperatureService, "batchMaxCities", 2);
+
+        Exception exception = assertThrows(InvalidCityException.class, () -> {
+            cityTemperatureService.streamAnnualAverageTemperatures(List.of("Szczecin", "Łódź", "Kraków"));
+        });
+
+        assertTrue(exception.getMessage().contains("At most 2 cities"));
+        verifyNoInteractions(dataStore);
+    }
+
+    @Test
+    public void testGetTemperatureStatistics() {
+        TemperatureAggregates aggregates = new TemperatureAggregates();
+        aggregates.onRow("Szczecin", "2018", 3, 1950);
+        aggregates.onRow("Szczecin", "2019", 3, 1000);
+        aggregates.onRow("Szczecin", "2019", 4, 2000);
+        DataStore realDataStore = new DataStore();
+        realDataStore.publish(Map.of("Szczecin", List.of()),
+                Map.of("Szczecin", CityStatistics.of(aggregates.getCities().get("Szczecin"))));
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(true);
+        when(dataStore.getSnapshot()).thenReturn(realDataStore.getSnapshot());
+
+        TemperatureStatisticsResponseDTO response = cityTemperatureService.getTemperatureStatistics("Szczecin", 2019, null, "Max", "month");
+
+        assertEquals("max", response.getStatistic());
+        assertEquals("month", response.getGranularity());
+        assertEquals(2, response.getData().size());
+        assertEquals(4, response.getData().get(1).getMonth());
+        assertEquals(20.0, response.getData().get(1).getValue());
+        assertEquals(2, response.getTotal().getCount());
+    }
+
+    @Test
+    public void testGetTemperatureStatisticsWithInvalidQuery() {
+        assertThrows(InvalidQueryException.class,
+                () -> cityTemperatureService.getTemperatureStatistics("Szczecin", null, null, "median", "year"));
+        assertThrows(InvalidQueryException.class,
+                () -> cityTemperatureService.getTemperatureStatistics("Szczecin", null, null, "average", "week"));
+        assertThrows(InvalidQueryException.class,
+                () -> cityTemperatureService.getTemperatureStatistics("Szczecin", 2020, 2019, "average", "year"));
+        verifyNoInteractions(dataStore);
+    }
+
+    @Test
+    public void testGetSerializedAnnualAverageTemperaturesIgnoresCaseAndDiacritics() {
+        DataStore realDataStore = new DataStore();
+        realDataStore.publish(Map.of("Łódź", List.of(new AnnualAverageTemperatureDTO("2018", 9.75))));
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(true);
+        when(dataStore.getSnapshot()).thenReturn(realDataStore.getSnapshot());
+
+        SerializedCityTemperatureDTO response = cityTemperatureService.getSerializedAnnualAverageTemperatures(" lodz");
+
+        assertEquals("Łódź", response.getCity());
+        assertSame(realDataStore.getSnapshot().getJson("Łódź"), response.getJson());
+    }
+
+    @Test
+    public void testFindCities() {
+        DataStore realDataStore = new DataStore();
+        realDataStore.publish(Map.of("Łódź", List.of(), "Lublin", List.of(), "Kraków", List.of()));
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(true);
+        when(dataStore.getSnapshot()).thenReturn(realDataStore.getSnapshot());
+
+        assertEquals(List.of("Łódź", "Lublin"), cityTemperatureService.findCities("L", 10));
+        assertThrows(InvalidQueryException.class, () -> cityTemperatureService.findCities("L", 0));
+    }
+
+    @Test
+    public void testExportAnnualAverageTemperaturesAsNdjsonFromOneSnapshot() throws Exception {
+        DataStore realDataStore = new DataStore();
+        realDataStore.publish(Map.of(
+                "Szczecin", List.of(new AnnualAverageTemperatureDTO("2018", 19.5)),
+                "Łódź", List.of(new AnnualAverageTemperatureDTO("2019", 9.75), new AnnualAverageTemperatureDTO("2020", 10.0))));
+        DataSnapshot snapshot = realDataStore.getSnapshot();
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(true);
+        when(dataStore.getSnapshot()).thenAnswer(invocation -> realDataStore.getSnapshot());
+
+        DataExportDTO export = cityTemperatureService.exportAnnualAverageTemperatures("NDJSON");
+        realDataStore.publish(Map.of("Kraków", List.of(new AnnualAverageTemperatureDTO("2021", 11.0))));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        export.getBody().writeTo(outputStream);
+
+        assertEquals("application/x-ndjson", export.getMediaType().toString());
+        assertEquals(snapshot.getETag(), export.getETag());
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(outputStream.toString(StandardCharsets.UTF_8).endsWith("\n"));
+        for (String city : List.of("Szczecin", "Łódź")) {
+            assertTrue(Arrays.asList(lines).contains(new String(snapshot.getJson(city), StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    public void testExportAnnualAverageTemperaturesAsBinary() throws Exception {
+        DataStore realDataStore = new DataStore();
+        realDataStore.publish(Map.of(
+                "Szczecin", List.of(new AnnualAverageTemperatureDTO("2018", 19.5)),
+                "Łódź", List.of(new AnnualAverageTemperatureDTO("2019", 9.75), new AnnualAverageTemperatureDTO("2020", 10.0)),
+                "Kraków", List.of()));
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(true);
+        when(dataStore.getSnapshot()).thenReturn(realDataStore.getSnapshot());
+
+        DataExportDTO export = cityTemperatureService.exportAnnualAverageTemperatures(" binary");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        export.getBody().writeTo(outputStream);
+
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, export.getMediaType());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertEquals(DataExportFormat.BINARY_MAGIC, in.readInt());
+        assertEquals(DataExportFormat.BINARY_FORMAT_VERSION, in.readInt());
+        assertEquals(realDataStore.getSnapshot().getVersion(), in.readLong());
+        Map<String, List<AnnualAverageTemperatureDTO>> cities = new HashMap<>();
+        int frameLength;
+        while ((frameLength = in.readInt()) != 0) {
+            byte[] frame = in.readNBytes(frameLength);
+            DataInputStream frameIn = new DataInputStream(new ByteArrayInputStream(frame));
+            String city = readString(frameIn);
+            AnnualAverageTemperatureDTO[] data = new AnnualAverageTemperatureDTO[frameIn.readInt()];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = new AnnualAverageTemperatureDTO(readString(frameIn), frameIn.readDouble());
+            }
+            assertEquals(0, frameIn.available());
+            cities.put(city, List.of(data));
+        }
+        assertEquals(-1, in.read());
+
+        assertEquals(3, cities.size());
+        assertTrue(cities.get("Kraków").isEmpty());
+        assertEquals("2020", cities.get("Łódź").get(1).getYear());
+        assertEquals(10.0, cities.get("Łódź").get(1).getAverageTemperature());
+        assertEquals(19.5, cities.get("Szczecin").get(0).getAverageTemperature());
+    }
+
+    @Test
+    public void testExportAnnualAverageTemperaturesWithInvalidFormatOrWhileLoading() {
+        assertThrows(InvalidQueryException.class, () -> cityTemperatureService.exportAnnualAverageTemperatures("csv"));
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(false);
+        assertThrows(DataLoadingException.class, () -> cityTemperatureService.exportAnnualAverageTemperatures("ndjson"));
+        verifyNoInteractions(dataStore);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readUnsignedShort()), StandardCharsets.UTF_8);
+    }
+
 }
@@ -1,19 +1,50 @@
 package large.file.reading.challenge.app.service;
 
+import large.file.reading.challenge.app.aggregate.AggregateSpill;
+import large.file.reading.challenge.app.aggregate.TemperatureStatistic;
+import large.file.reading.challenge.app.cluster.ClusterPartitioning;
 import large.file.reading.challenge.app.dto.AnnualAverageTemperatureDTO;
+import large.file.reading.challenge.app.dto.MalformedRowDTO;
+import large.file.reading.challenge.app.dto.TemperatureStatisticDTO;
+import large.file.reading.challenge.app.file.CachedAggregates;
+import large.file.reading.challenge.app.file.FilePrefixChecksum;
+import large.file.reading.challenge.app.store.CityStatistics;
 import large.file.reading.challenge.app.store.DataStore;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -23,40 +54,452 @@ import static org.mockito.Mockito.verify;
 @ExtendWith(MockitoExtension.class)
 public class CsvFileDataLoaderServiceTest {
 
+    private static final Path TEST_CSV = Path.of("src/test/resources/test.csv");
+
     @Mock
     private DataStore dataStore;
 
+    @Spy
+    private LoadProgress loadProgress = new LoadProgress();
+
+    @Spy
+    private ClusterPartitioning clusterPartitioning = new ClusterPartitioning();
+
     @InjectMocks
     private CsvFileDataLoaderService csvFileDataLoaderService;
 
     @Captor
-    private ArgumentCaptor<String> cityCaptor;
+    private ArgumentCaptor<Map<String, List<AnnualAverageTemperatureDTO>>> dataCaptor;
 
     @Captor
-    private ArgumentCaptor<List<AnnualAverageTemperatureDTO>> temperatureListCaptor;
+    private ArgumentCaptor<Map<String, CityStatistics>> statisticsCaptor;
 
     @Test
     public void testLoadCsvData() {
         ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", "src/test/resources/test.csv");
         csvFileDataLoaderService.loadCsvData();
 
-        verify(dataStore, times(1)).clearCache();
-        verify(dataStore, times(6)).addData(cityCaptor.capture(), temperatureListCaptor.capture());
+        verify(dataStore, never()).clearCache();
+        verify(dataStore, times(1)).publish(dataCaptor.capture(), statisticsCaptor.capture());
+        assertEquals("LOADED", loadProgress.toDTO().getState());
+        assertEquals(10386, loadProgress.toDTO().getRowsProcessed());
+        assertEquals(loadProgress.toDTO().getBytesTotal(), loadProgress.toDTO().getBytesProcessed());
+
+        Map<String, List<AnnualAverageTemperatureDTO>> capturedData = dataCaptor.getValue();
+
+        assertEquals(6, capturedData.size());
+
+        assertEquals(6, capturedData.get("Gdańsk").size());
+        assertEquals("2019", capturedData.get("Gdańsk").get(0).getYear());
+        assertEquals(13.86 , capturedData.get("Gdańsk").get(0).getAverageTemperature());
+
+        assertEquals(6, capturedData.get("Warszawa").size());
+        assertEquals("2019", capturedData.get("Warszawa").get(0).getYear());
+        assertEquals(13.81, capturedData.get("Warszawa").get(0).getAverageTemperature());
+
+        CityStatistics warszawa = statisticsCaptor.getValue().get("Warszawa");
+        List<TemperatureStatisticDTO> averages = warszawa.query(2019, 2019, TemperatureStatistic.AVERAGE, false);
+        assertEquals(1, averages.size());
+        assertEquals(13.81, averages.get(0).getValue());
+        List<TemperatureStatisticDTO> monthlyCounts = warszawa.query(2019, 2019, TemperatureStatistic.COUNT, true);
+        assertEquals(averages.get(0).getCount(), monthlyCounts.stream().mapToLong(TemperatureStatisticDTO::getCount).sum());
+    }
+
+    @Test
+    public void testInitRecordsErrorOfBackgroundLoad() {
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", "src/test/resources/test.csv");
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "asyncStartupEnabled", true);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "taskExecutor", new SyncTaskExecutor());
+        doThrow(new OutOfMemoryError("Java heap space")).when(dataStore).publish(any(), any());
+
+        csvFileDataLoaderService.init();
+
+        assertEquals("FAILED", loadProgress.toDTO().getState());
+        assertTrue(loadProgress.isInitialLoadCompleted());
+        assertEquals(1, loadProgress.getLoads(false));
+    }
+
+    @Test
+    public void testErrorDuringReloadReEnablesFileWatcher() {
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", "src/test/resources/test.csv");
+        doThrow(new OutOfMemoryError("Java heap space")).when(dataStore).publish(any(), any());
+
+        assertThrows(OutOfMemoryError.class, () -> csvFileDataLoaderService.loadCsvData());
+
+        assertTrue(csvFileDataLoaderService.isFileWatcherSchedulerEnabled());
+    }
+
+    @Test
+    public void testLoadCsvDataInParallelMatchesSequentialLoad() {
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", "src/test/resources/test.csv");
+        csvFileDataLoaderService.loadCsvData();
+
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingEnabled", true);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingThreads", 4);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingChunkSize", 4096L);
+        csvFileDataLoaderService.loadCsvData();
+
+        verify(dataStore, times(2)).publish(dataCaptor.capture(), any());
+        Map<String, List<AnnualAverageTemperatureDTO>> sequentialData = dataCaptor.getAllValues().get(0);
+        Map<String, List<AnnualAverageTemperatureDTO>> parallelData = dataCaptor.getAllValues().get(1);
+
+        assertEqualData(sequentialData, parallelData);
+    }
+
+    @Test
+    public void testLoadCsvDataAfterAppendMatchesFullLoad(@TempDir Path tempDir) throws IOException {
+        Path csvFile = tempDir.resolve("append.csv");
+        Files.writeString(csvFile, Files.readString(TEST_CSV) + "\n");
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", csvFile.toString());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "incrementalLoadingEnabled", true);
+        csvFileDataLoaderService.loadCsvData();
+
+        Files.writeString(csvFile, "Gdańsk;2019-05-01 12:00:00.000;99.99\nSzczecin;2020-05-01 12:00:00.000;12.5\n", StandardOpenOption.APPEND);
+        csvFileDataLoaderService.loadCsvData();
+
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "incrementalLoadingEnabled", false);
+        csvFileDataLoaderService.loadCsvData();
+
+        verify(dataStore, times(3)).publish(dataCaptor.capture(), any());
+        Map<String, List<AnnualAverageTemperatureDTO>> initialData = dataCaptor.getAllValues().get(0);
+        Map<String, List<AnnualAverageTemperatureDTO>> appendedData = dataCaptor.getAllValues().get(1);
+        Map<String, List<AnnualAverageTemperatureDTO>> fullyReloadedData = dataCaptor.getAllValues().get(2);
+
+        assertEquals(6, initialData.size());
+        assertEquals(7, appendedData.size());
+        assertEquals(12.5, appendedData.get("Szczecin").get(0).getAverageTemperature());
+        assertEquals(13.86, initialData.get("Gdańsk").get(0).getAverageTemperature());
+        assertEqualData(fullyReloadedData, appendedData);
+    }
+
+    @Test
+    public void testLoadReadsFileOnceAndChecksumsParsedBytes(@TempDir Path tempDir) throws IOException {
+        Path csvFile = tempDir.resolve("once.csv");
+        Files.writeString(csvFile, Files.readString(TEST_CSV) + "\n");
+        Path compressedFile = tempDir.resolve("once.csv.gz");
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(compressedFile))) {
+            Files.copy(csvFile, output);
+        }
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "incrementalLoadingEnabled", true);
+
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", csvFile.toString());
+        assertLoadReadsOnce(csvFile, Files.size(csvFile));
+
+        Files.writeString(csvFile, "Szczecin;2020-05-01 12:00:00.000;12.5\n", StandardOpenOption.APPEND);
+        assertLoadReadsOnce(csvFile, Files.size(csvFile));
+
+        Files.writeString(csvFile, Files.readString(TEST_CSV));
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingEnabled", true);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingThreads", 3);
+        assertLoadReadsOnce(csvFile, Files.size(csvFile));
+
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", compressedFile.toString());
+        assertLoadReadsOnce(compressedFile, Files.size(compressedFile));
+    }
+
+    private void assertLoadReadsOnce(Path file, long expectedBytesRead) throws IOException {
+        long bytesRead = loadProgress.getTotalBytesRead();
+        csvFileDataLoaderService.loadCsvData();
+
+        assertEquals("LOADED", loadProgress.toDTO().getState());
+        assertEquals(expectedBytesRead, loadProgress.getTotalBytesRead() - bytesRead, file.toString());
+        @SuppressWarnings("unchecked")
+        Map<Path, CachedAggregates> loadedShards = (Map<Path, CachedAggregates>) ReflectionTestUtils.getField(csvFileDataLoaderService, "loadedShards");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals(FilePrefixChecksum.of(channel, channel.size()), loadedShards.get(file).getSourceChecksum(), file.toString());
+        }
+    }
+
+    @Test
+    public void testLoadCsvDataAfterRewriteReloadsWholeFile(@TempDir Path tempDir) throws IOException {
+        Path csvFile = tempDir.resolve("rewrite.csv");
+        Files.writeString(csvFile, Files.readString(TEST_CSV) + "\n");
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", csvFile.toString());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "incrementalLoadingEnabled", true);
+        csvFileDataLoaderService.loadCsvData();
+
+        Files.writeString(csvFile, "Szczecin;2020-05-01 12:00:00.000;12.5\n");
+        csvFileDataLoaderService.loadCsvData();
+
+        verify(dataStore, times(2)).publish(dataCaptor.capture(), any());
+        Map<String, List<AnnualAverageTemperatureDTO>> rewrittenData = dataCaptor.getAllValues().get(1);
+        assertEquals(Set.of("Szczecin"), rewrittenData.keySet());
+    }
+
+    @Test
+    public void testLoadCsvDataAfterRewriteOfMiddleBytesReloadsWholeFile(@TempDir Path tempDir) throws IOException {
+        Path csvFile = tempDir.resolve("rewrite.csv");
+        String content = Files.readString(TEST_CSV) + "\n";
+        Files.writeString(csvFile, content);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", csvFile.toString());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "incrementalLoadingEnabled", true);
+        csvFileDataLoaderService.loadCsvData();
+
+        int middleLine = content.indexOf('\n', content.length() / 2) + 1;
+        int cityEnd = content.indexOf(';', middleLine);
+        String city = content.substring(middleLine, cityEnd);
+        String renamed = "X".repeat(city.getBytes(StandardCharsets.UTF_8).length);
+        Files.writeString(csvFile, content.substring(0, middleLine) + renamed + content.substring(cityEnd));
+        csvFileDataLoaderService.loadCsvData();
+
+        Files.writeString(csvFile, "Szczecin;2020-05-01 12:00:00.000;12.5\n", StandardOpenOption.APPEND);
+        csvFileDataLoaderService.loadCsvData();
+
+        verify(dataStore, times(3)).publish(dataCaptor.capture(), any());
+        assertFalse(dataCaptor.getAllValues().get(0).containsKey(renamed));
+        assertTrue(dataCaptor.getAllValues().get(1).containsKey(renamed));
+        assertTrue(dataCaptor.getAllValues().get(2).containsKey(renamed));
+        assertTrue(dataCaptor.getAllValues().get(2).containsKey("Szczecin"));
+    }
+
+    @Test
+    public void testInitRestoresDataFromCacheFile(@TempDir Path tempDir) throws IOException {
+        Path csvFile = tempDir.resolve("cached.csv");
+        Files.copy(TEST_CSV, csvFile);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", csvFile.toString());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "cacheDirectory", tempDir.resolve("cache").toString());
+        csvFileDataLoaderService.init();
+
+        CsvFileDataLoaderService restartedService = new CsvFileDataLoaderService(dataStore, loadProgress, clusterPartitioning);
+        ReflectionTestUtils.setField(restartedService, "csvFilePath", csvFile.toString());
+        ReflectionTestUtils.setField(restartedService, "cacheDirectory", tempDir.resolve("cache").toString());
+
+        assertTrue(restartedService.restoreAggregatesFromCache());
+
+        Files.writeString(csvFile, "Szczecin;2020-05-01 12:00:00.000;12.5\n", StandardOpenOption.APPEND);
+        CsvFileDataLoaderService serviceAfterAppend = new CsvFileDataLoaderService(dataStore, loadProgress, clusterPartitioning);
+        ReflectionTestUtils.setField(serviceAfterAppend, "csvFilePath", csvFile.toString());
+        ReflectionTestUtils.setField(serviceAfterAppend, "cacheDirectory", tempDir.resolve("cache").toString());
+        assertFalse(serviceAfterAppend.restoreAggregatesFromCache());
+
+        verify(dataStore, times(2)).publish(dataCaptor.capture(), any());
+        assertEqualData(dataCaptor.getAllValues().get(0), dataCaptor.getAllValues().get(1));
+    }
+
+    @Test
+    public void testLoadDirectoryOfShardsMatchesSingleFile(@TempDir Path tempDir) throws IOException {
+        Path shardDirectory = Files.createDirectory(tempDir.resolve("shards"));
+        writeShards(shardDirectory, 3);
+        Files.writeString(shardDirectory.resolve("notes.txt"), "Szczecin;2020-05-01 12:00:00.000;12.5\n");
+
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", TEST_CSV.toString());
+        csvFileDataLoaderService.loadCsvData();
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", shardDirectory.resolve("shard-*.csv").toString());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "shardLoadingThreads", 2);
+        csvFileDataLoaderService.loadCsvData();
+        Files.delete(shardDirectory.resolve("notes.txt"));
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", shardDirectory.toString());
+        csvFileDataLoaderService.loadCsvData();
+
+        verify(dataStore, times(3)).publish(dataCaptor.capture(), any());
+        assertEqualData(dataCaptor.getAllValues().get(0), dataCaptor.getAllValues().get(1));
+        assertEqualData(dataCaptor.getAllValues().get(0), dataCaptor.getAllValues().get(2));
+    }
+
+    @Test
+    public void testOnlyChangedShardsAreReloaded(@TempDir Path tempDir) throws IOException {
+        List<Path> shards = writeShards(tempDir, 3);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", tempDir.toString());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "incrementalLoadingEnabled", true);
+        csvFileDataLoaderService.loadCsvData();
+
+        String newShard = "Szczecin;2020-05-01 12:00:00.000;12.5\n";
+        String rewrittenShard = "Gdańsk;2019-05-01 12:00:00.000;99.99\n";
+        Files.writeString(tempDir.resolve("shard-3.csv"), newShard);
+        Files.writeString(shards.get(0), rewrittenShard);
+        Files.delete(shards.get(1));
+        csvFileDataLoaderService.checkIsFileChanged();
+
+        ArgumentCaptor<Long> bytesToProcess = ArgumentCaptor.forClass(Long.class);
+        verify(loadProgress, times(2)).start(bytesToProcess.capture());
+        assertEquals(newShard.getBytes(StandardCharsets.UTF_8).length + rewrittenShard.getBytes(StandardCharsets.UTF_8).length, bytesToProcess.getValue());
+
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "incrementalLoadingEnabled", false);
+        csvFileDataLoaderService.loadCsvData();
+
+        verify(dataStore, times(3)).publish(dataCaptor.capture(), any());
+        Map<String, List<AnnualAverageTemperatureDTO>> reloadedData = dataCaptor.getAllValues().get(1);
+        assertEquals(12.5, reloadedData.get("Szczecin").get(0).getAverageTemperature());
+        assertEqualData(dataCaptor.getAllValues().get(2), reloadedData);
+    }
+
+    @Test
+    public void testUnchangedShardsAreNotReloaded(@TempDir Path tempDir) throws IOException {
+        writeShards(tempDir, 2);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", tempDir.toString());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "incrementalLoadingEnabled", true);
+        csvFileDataLoaderService.loadCsvData();
+
+        csvFileDataLoaderService.checkIsFileChanged();
+        csvFileDataLoaderService.loadCsvData();
+
+        ArgumentCaptor<Long> bytesToProcess = ArgumentCaptor.forClass(Long.class);
+        verify(loadProgress, times(2)).start(bytesToProcess.capture());
+        assertEquals(0, bytesToProcess.getValue());
+        verify(dataStore, times(2)).publish(dataCaptor.capture(), any());
+        assertEqualData(dataCaptor.getAllValues().get(0), dataCaptor.getAllValues().get(1));
+    }
+
+    @Test
+    public void testLoadWithinMemoryBudgetMatchesUnboundedLoad(@TempDir Path tempDir) throws IOException {
+        Path spillDirectory = Files.createDirectory(tempDir.resolve("spill"));
+        Path shardDirectory = Files.createDirectory(tempDir.resolve("shards"));
+        writeShards(shardDirectory, 3);
+
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", TEST_CSV.toString());
+        csvFileDataLoaderService.loadCsvData();
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "aggregationMemoryBudget", 10L * AggregateSpill.ESTIMATED_BYTES_PER_KEY);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "spillDirectory", spillDirectory.toString());
+        csvFileDataLoaderService.loadCsvData();
+        long spilledRuns = loadProgress.getTotalSpilledRuns();
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingEnabled", true);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingThreads", 4);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingChunkSize", 4096L);
+        csvFileDataLoaderService.loadCsvData();
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", shardDirectory.toString());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "aggregationMemoryBudget", 1L);
+        csvFileDataLoaderService.loadCsvData();
+
+        verify(dataStore, times(4)).publish(dataCaptor.capture(), statisticsCaptor.capture());
+        assertTrue(spilledRuns > 1);
+        assertTrue(loadProgress.getTotalSpilledRuns() > spilledRuns);
+        assertTrue(loadProgress.getTotalSpilledBytes() > 0);
+        for (int i = 1; i < 4; i++) {
+            assertEqualData(dataCaptor.getAllValues().get(0), dataCaptor.getAllValues().get(i));
+            CityStatistics expected = statisticsCaptor.getAllValues().get(0).get("Warszawa");
+            CityStatistics actual = statisticsCaptor.getAllValues().get(i).get("Warszawa");
+            for (TemperatureStatistic statistic : TemperatureStatistic.values()) {
+                List<TemperatureStatisticDTO> expectedValues = expected.query(2018, 2023, statistic, true);
+                List<TemperatureStatisticDTO> actualValues = actual.query(2018, 2023, statistic, true);
+                assertEquals(expectedValues.size(), actualValues.size());
+                for (int j = 0; j < expectedValues.size(); j++) {
+                    assertEquals(expectedValues.get(j).getMonth(), actualValues.get(j).getMonth());
+                    assertEquals(expectedValues.get(j).getCount(), actualValues.get(j).getCount());
+                    assertEquals(expectedValues.get(j).getValue(), actualValues.get(j).getValue());
+                }
+            }
+        }
+        try (Stream<Path> runs = Files.list(spillDirectory)) {
+            assertEquals(0, runs.count());
+        }
+    }
+
+    @Test
+    public void testLoadGzipCompressedFileMatchesUncompressedFile(@TempDir Path tempDir) throws IOException {
+        Path compressedFile = tempDir.resolve("compressed.csv.gz");
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(compressedFile))) {
+            Files.copy(TEST_CSV, output);
+        }
+
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", TEST_CSV.toString());
+        csvFileDataLoaderService.loadCsvData();
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", compressedFile.toString());
+        csvFileDataLoaderService.loadCsvData();
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingEnabled", true);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingThreads", 3);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "decompressionBlockSize", 16);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "decompressionQueueBlocks", 2);
+        csvFileDataLoaderService.loadCsvData();
+
+        verify(dataStore, times(3)).publish(dataCaptor.capture(), any());
+        assertEqualData(dataCaptor.getAllValues().get(0), dataCaptor.getAllValues().get(1));
+        assertEqualData(dataCaptor.getAllValues().get(0), dataCaptor.getAllValues().get(2));
+        assertEquals(Files.size(compressedFile), loadProgress.toDTO().getBytesProcessed());
+    }
+
+    @Test
+    public void testLoadCorruptedGzipFileKeepsPreviousData(@TempDir Path tempDir) throws IOException {
+        Path compressedFile = tempDir.resolve("corrupted.csv.gz");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream output = new GZIPOutputStream(bytes)) {
+            Files.copy(TEST_CSV, output);
+        }
+        byte[] compressed = bytes.toByteArray();
+        Files.write(compressedFile, Arrays.copyOf(compressed, compressed.length / 2));
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", compressedFile.toString());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "incrementalLoadingEnabled", true);
+
+        csvFileDataLoaderService.loadCsvData();
+        verify(dataStore, never()).publish(any(), any());
+
+        Files.write(compressedFile, compressed);
+        csvFileDataLoaderService.loadCsvData();
+        verify(dataStore, times(1)).publish(dataCaptor.capture(), any());
+        assertEquals(13.86, dataCaptor.getValue().get("Gdańsk").get(0).getAverageTemperature());
+    }
 
-        List<String> capturedCities = cityCaptor.getAllValues();
-        List<List<AnnualAverageTemperatureDTO>> capturedTemperatureLists = temperatureListCaptor.getAllValues();
+    @Test
+    public void testMalformedRowsWithinBudgetAreQuarantined(@TempDir Path tempDir) throws IOException {
+        Path csvFile = tempDir.resolve("malformed.csv");
+        String validRows = Files.readString(TEST_CSV) + "\n";
+        String malformedRow = "Gdańsk;2019-05-01 12:00:00.000;9x.9\n";
+        Files.writeString(csvFile, malformedRow + validRows + "Gdańsk;\nGdańsk;2019-05-01");
+        long secondMalformedRowOffset = Files.size(csvFile) - "Gdańsk;\nGdańsk;2019-05-01".getBytes(StandardCharsets.UTF_8).length;
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", csvFile.toString());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "maxMalformedRows", 3L);
+        ReflectionTestUtils.setField(loadProgress, "quarantineSize", 2);
 
-        assertEquals(6, capturedCities.size());
-        assertEquals(6, capturedTemperatureLists.size());
+        csvFileDataLoaderService.loadCsvData();
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingEnabled", true);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingThreads", 4);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "parallelLoadingChunkSize", 4096L);
+        csvFileDataLoaderService.loadCsvData();
+
+        verify(dataStore, times(2)).publish(dataCaptor.capture(), any());
+        assertEquals(13.86, dataCaptor.getAllValues().get(0).get("Gdańsk").get(0).getAverageTemperature());
+        assertEqualData(dataCaptor.getAllValues().get(0), dataCaptor.getAllValues().get(1));
+        assertEquals(3, loadProgress.toDTO().getMalformedRows());
+        assertEquals(10386, loadProgress.toDTO().getRowsProcessed());
+
+        List<MalformedRowDTO> quarantine = loadProgress.getQuarantine();
+        assertEquals(2, quarantine.size());
+        assertEquals(0, quarantine.get(0).getOffset());
+        assertEquals(malformedRow.trim(), quarantine.get(0).getLine());
+        assertEquals(csvFile.toAbsolutePath().toString(), quarantine.get(0).getFile());
+        assertEquals(secondMalformedRowOffset, quarantine.get(1).getOffset());
+        assertEquals("Gdańsk;", quarantine.get(1).getLine());
+    }
 
-        assertEquals("Gdańsk", capturedCities.get(0));
-        assertEquals(6, capturedTemperatureLists.get(0).size());
-        assertEquals("2019", capturedTemperatureLists.get(0).get(0).getYear());
-        assertEquals(13.86 , capturedTemperatureLists.get(0).get(0).getAverageTemperature());
+    @Test
+    public void testMalformedRowsOverBudgetKeepPreviousData(@TempDir Path tempDir) throws IOException {
+        Path csvFile = tempDir.resolve("malformed.csv");
+        Files.copy(TEST_CSV, csvFile);
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", csvFile.toString());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "maxMalformedRows", 1L);
+        csvFileDataLoaderService.loadCsvData();
+
+        Files.writeString(csvFile, "\nWarszawa;2018-09-19;?\nWarszawa;2018-09-19;?\n", StandardOpenOption.APPEND);
+        csvFileDataLoaderService.loadCsvData();
+
+        verify(dataStore, times(1)).publish(any(), any());
+        assertEquals(LoadProgress.State.FAILED.name(), loadProgress.toDTO().getState());
+        assertEquals(2, loadProgress.getQuarantine().size());
+    }
+
+    /**
+     * Splits the lines of the test file into shards named {@code shard-<n>.csv}.
+     */
+    private static List<Path> writeShards(Path directory, int count) throws IOException {
+        List<String> lines = Files.readAllLines(TEST_CSV);
+        List<Path> shards = new ArrayList<>();
+        int linesPerShard = (lines.size() + count - 1) / count;
+        for (int i = 0; i < count; i++) {
+            List<String> shardLines = lines.subList(i * linesPerShard, Math.min(lines.size(), (i + 1) * linesPerShard));
+            shards.add(Files.write(directory.resolve("shard-" + i + ".csv"), shardLines));
+        }
+        return shards;
+    }
 
-        assertEquals("Warszawa", capturedCities.get(1));
-        assertEquals(6, capturedTemperatureLists.get(1).size());
-        assertEquals("2019", capturedTemperatureLists.get(1).get(0).getYear());
-        assertEquals(13.81, capturedTemperatureLists.get(1).get(0).getAverageTemperature());
+    private static void assertEqualData(Map<String, List<AnnualAverageTemperatureDTO>> expectedData,
+                                        Map<String, List<AnnualAverageTemperatureDTO>> actualData) {
+        assertEquals(expectedData.keySet(), actualData.keySet());
+        expectedData.forEach((city, expected) -> {
+            List<AnnualAverageTemperatureDTO> actual = actualData.get(city);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getYear(), actual.get(i).getYear());
+                assertEquals(expected.get(i).getAverageTemperature(), actual.get(i).getAverageTemperature());
+            }
+        });
     }
 }
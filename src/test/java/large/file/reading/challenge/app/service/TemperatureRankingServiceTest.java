@@ -0,0 +1,82 @@
+package large.file.reading.challenge.app.service;
+
+import large.file.reading.challenge.app.aggregate.TemperatureAggregates;
+import large.file.reading.challenge.app.dto.YearRankingResponseDTO;
+import large.file.reading.challenge.app.exception.CityNotFoundException;
+import large.file.reading.challenge.app.exception.DataLoadingException;
+import large.file.reading.challenge.app.exception.InvalidQueryException;
+import large.file.reading.challenge.app.store.CityStatistics;
+import large.file.reading.challenge.app.store.DataStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TemperatureRankingServiceTest {
+
+    @Mock
+    private DataStore dataStore;
+
+    @Mock
+    private LoadProgress loadProgress;
+
+    @InjectMocks
+    private TemperatureRankingService temperatureRankingService;
+
+    @Test
+    public void testGetYearRanking() {
+        mockLoadedData();
+
+        YearRankingResponseDTO response = temperatureRankingService.getYearRanking(2021, 1, "Coldest");
+
+        assertEquals("2021", response.getYear());
+        assertEquals("coldest", response.getOrder());
+        assertEquals(2, response.getCities());
+        assertEquals(1, response.getData().size());
+        assertEquals("Łódź", response.getData().get(0).getCity());
+        assertEquals(2, response.getData().get(0).getRank());
+    }
+
+    @Test
+    public void testGetCityRank() {
+        mockLoadedData();
+
+        assertEquals(1, temperatureRankingService.getCityRank("Kraków", 2021).getRank());
+        assertThrows(CityNotFoundException.class, () -> temperatureRankingService.getCityRank("Kraków", 2020));
+    }
+
+    @Test
+    public void testGetYearRankingWithInvalidQuery() {
+        assertThrows(InvalidQueryException.class, () -> temperatureRankingService.getYearRanking(2021, 0, "warmest"));
+        assertThrows(InvalidQueryException.class, () -> temperatureRankingService.getYearRanking(2021, 10, "hottest"));
+        verifyNoInteractions(dataStore);
+    }
+
+    @Test
+    public void testGetNationalAveragesWhileLoading() {
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(false);
+
+        assertThrows(DataLoadingException.class, () -> temperatureRankingService.getNationalAverages());
+        verifyNoInteractions(dataStore);
+    }
+
+    private void mockLoadedData() {
+        TemperatureAggregates aggregates = new TemperatureAggregates();
+        aggregates.onRow("Kraków", "2021", 6, 1500);
+        aggregates.onRow("Łódź", "2021", 6, 500);
+        DataStore realDataStore = new DataStore();
+        realDataStore.publish(Map.of("Kraków", List.of(), "Łódź", List.of()), Map.of(
+                "Kraków", CityStatistics.of(aggregates.getCities().get("Kraków")),
+                "Łódź", CityStatistics.of(aggregates.getCities().get("Łódź"))));
+        when(loadProgress.isInitialLoadCompleted()).thenReturn(true);
+        when(dataStore.getSnapshot()).thenReturn(realDataStore.getSnapshot());
+    }
+}
@@ -0,0 +1,86 @@
+package large.file.reading.challenge.app.store;
+
+import large.file.reading.challenge.app.aggregate.TemperatureAggregates;
+import large.file.reading.challenge.app.aggregate.TemperatureStatistic;
+import large.file.reading.challenge.app.dto.AnnualAverageTemperatureDTO;
+import large.file.reading.challenge.app.store.CityDataFile.CityRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CityDataFileTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testFindReadsRecordsWrittenAcrossSegments() throws Exception {
+        String[] cities = Stream.concat(Stream.of("Łódź", "Zielona Góra", "Kraków"), IntStream.range(0, 500).mapToObj(i -> "City " + i))
+                .toArray(String[]::new);
+
+        CityDataFile file = CityDataFile.write(directory, cities, CityDataFileTest::record, 4096);
+
+        assertEquals(cities.length, file.size());
+        for (String city : cities) {
+            CityRecord record = file.find(city);
+            assertNotNull(record, city);
+            assertEquals(json(city), new String(record.json(), StandardCharsets.UTF_8));
+            List<AnnualAverageTemperatureDTO> data = record.toData();
+            assertEquals(2, data.size());
+            assertEquals("2018", data.get(0).getYear());
+            assertEquals(city.length() / 10.0, data.get(1).getAverageTemperature());
+            assertNull(record.statistics());
+        }
+        assertNull(file.find("Londyn"));
+        assertNull(file.find("City"));
+        assertNull(file.find("łódź"));
+    }
+
+    @Test
+    public void testStatisticsAreStored() throws Exception {
+        TemperatureAggregates aggregates = new TemperatureAggregates();
+        aggregates.onRow("Szczecin", "2019", 1, 100);
+        aggregates.onRow("Szczecin", "2019", 7, 400);
+        aggregates.onRow("Szczecin", "2021", 2, -500);
+        CityStatistics statistics = CityStatistics.of(aggregates.getCities().get("Szczecin"));
+
+        CityDataFile file = CityDataFile.write(directory, new String[]{"Szczecin"},
+                city -> CityRecord.of(new byte[0], List.of(), statistics), CityDataFile.DEFAULT_SEGMENT_SIZE);
+
+        CityStatistics read = file.find("Szczecin").statistics();
+        assertEquals(statistics.estimateMemoryFootprint(), read.estimateMemoryFootprint());
+        assertEquals(4.0, read.total(2019, 2021, TemperatureStatistic.MAX).getValue());
+        assertEquals(-5.0, read.total(2019, 2021, TemperatureStatistic.MIN).getValue());
+        assertEquals(4.0, read.query(2019, 2019, TemperatureStatistic.MAX, true).get(1).getValue());
+        assertEquals(3, read.query(2019, 2021, TemperatureStatistic.COUNT, true).size());
+    }
+
+    @Test
+    public void testFileIsDeletedAfterMapping() throws Exception {
+        CityDataFile file = CityDataFile.write(directory, new String[]{"Szczecin"}, CityDataFileTest::record,
+                CityDataFile.DEFAULT_SEGMENT_SIZE);
+
+        assertNotNull(file.find("Szczecin"));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private static CityRecord record(String city) {
+        return CityRecord.of(json(city).getBytes(StandardCharsets.UTF_8),
+                List.of(new AnnualAverageTemperatureDTO("2018", 1.5), new AnnualAverageTemperatureDTO("2019", city.length() / 10.0)),
+                null);
+    }
+
+    private static String json(String city) {
+        return "{\"city\":\"" + city + "\",\"data\":[]}";
+    }
+}
@@ -0,0 +1,30 @@
+package large.file.reading.challenge.app.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CityDictionaryTest {
+
+    @Test
+    public void testGetId() {
+        String[] names = IntStream.range(0, 10_000).mapToObj(i -> "Miasto " + i).toArray(String[]::new);
+        CityDictionary cityDictionary = new CityDictionary(names);
+
+        for (int id = 0; id < names.length; id++) {
+            assertEquals(id, cityDictionary.getId(new String(names[id])));
+            assertEquals(names[id], cityDictionary.getName(id));
+        }
+        assertEquals(-1, cityDictionary.getId("Miasto 10000"));
+        assertEquals(-1, cityDictionary.getId(null));
+        assertEquals(10_000, cityDictionary.size());
+    }
+
+    @Test
+    public void testEmptyDictionary() {
+        assertEquals(-1, CityDictionary.EMPTY.getId("Łódź"));
+        assertEquals(0, CityDictionary.EMPTY.size());
+    }
+}
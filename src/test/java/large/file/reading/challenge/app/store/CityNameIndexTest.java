@@ -0,0 +1,48 @@
+package large.file.reading.challenge.app.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CityNameIndexTest {
+
+    private final CityDictionary cities = new CityDictionary(new String[]{"Łódź", "Warszawa", "Gdańsk", "Zielona Góra", "Wałbrzych", "Kraków", "Krakow"});
+
+    private final CityNameIndex cityNameIndex = new CityNameIndex(cities);
+
+    @Test
+    public void testNormalize() {
+        assertEquals("lodz", CityNameIndex.normalize("Łódź "));
+        assertEquals("lodz", CityNameIndex.normalize("LODZ"));
+        assertEquals("zielona gora", CityNameIndex.normalize("  Zielona \t GÓRA"));
+        assertEquals("gdansk", CityNameIndex.normalize("gdańsk"));
+    }
+
+    @Test
+    public void testFind() {
+        assertEquals(cities.getId("Łódź"), cityNameIndex.find("lodz"));
+        assertEquals(cities.getId("Łódź"), cityNameIndex.find("Łódź "));
+        assertEquals(cities.getId("Warszawa"), cityNameIndex.find("warszawa"));
+        assertEquals(cities.getId("Zielona Góra"), cityNameIndex.find("zielona gora"));
+        assertEquals(-1, cityNameIndex.find("Londyn"));
+        assertEquals(-1, cityNameIndex.find(null));
+    }
+
+    @Test
+    public void testFindAmbiguousName() {
+        assertEquals(cities.getId("Kraków"), cityNameIndex.find("Kraków"));
+        assertEquals(cities.getId("Krakow"), cityNameIndex.find("Krakow"));
+        assertEquals(-1, cityNameIndex.find("krakow"));
+    }
+
+    @Test
+    public void testStartingWith() {
+        assertEquals(List.of("Wałbrzych", "Warszawa"), cityNameIndex.startingWith("wa", 10));
+        assertEquals(List.of("Wałbrzych"), cityNameIndex.startingWith("WAŁ", 10));
+        assertEquals(List.of("Krakow", "Kraków"), cityNameIndex.startingWith("kra", 10));
+        assertEquals(List.of("Gdańsk", "Krakow"), cityNameIndex.startingWith("", 2));
+        assertTrue(cityNameIndex.startingWith("x", 10).isEmpty());
+    }
+}
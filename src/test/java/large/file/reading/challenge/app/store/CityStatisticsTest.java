@@ -0,0 +1,88 @@
+package large.file.reading.challenge.app.store;
+
+import large.file.reading.challenge.app.aggregate.TemperatureAccumulator;
+import large.file.reading.challenge.app.aggregate.TemperatureAggregates;
+import large.file.reading.challenge.app.aggregate.TemperatureStatistic;
+import large.file.reading.challenge.app.dto.TemperatureStatisticDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CityStatisticsTest {
+
+    @Test
+    public void testQueryYearRange() {
+        CityStatistics statistics = sampleStatistics();
+
+        List<TemperatureStatisticDTO> averages = statistics.query(2019, 2021, TemperatureStatistic.AVERAGE, false);
+
+        assertEquals(2, averages.size());
+        assertEquals("2019", averages.get(0).getYear());
+        assertNull(averages.get(0).getMonth());
+        assertEquals(3, averages.get(0).getCount());
+        assertEquals(2.0, averages.get(0).getValue());
+        assertEquals("2021", averages.get(1).getYear());
+        assertEquals(-4.5, averages.get(1).getValue());
+        assertTrue(statistics.query(2022, 2030, TemperatureStatistic.AVERAGE, false).isEmpty());
+    }
+
+    @Test
+    public void testQueryMonths() {
+        List<TemperatureStatisticDTO> maxima = sampleStatistics().query(2019, 2019, TemperatureStatistic.MAX, true);
+
+        assertEquals(2, maxima.size());
+        assertEquals(1, maxima.get(0).getMonth());
+        assertEquals(1.0, maxima.get(0).getValue());
+        assertEquals(7, maxima.get(1).getMonth());
+        assertEquals(4.0, maxima.get(1).getValue());
+    }
+
+    @Test
+    public void testStatistics() {
+        CityStatistics statistics = sampleStatistics();
+
+        assertEquals(3.0, statistics.query(2019, 2019, TemperatureStatistic.COUNT, false).get(0).getValue());
+        assertEquals(6.0, statistics.query(2019, 2019, TemperatureStatistic.SUM, false).get(0).getValue());
+        assertEquals(1.0, statistics.query(2019, 2019, TemperatureStatistic.MIN, false).get(0).getValue());
+        assertEquals(4.0, statistics.query(2019, 2019, TemperatureStatistic.MAX, false).get(0).getValue());
+        assertEquals(2.0, statistics.query(2019, 2019, TemperatureStatistic.VARIANCE, false).get(0).getValue());
+    }
+
+    @Test
+    public void testTotal() {
+        CityStatistics statistics = sampleStatistics();
+
+        TemperatureStatisticDTO total = statistics.total(Integer.MIN_VALUE, Integer.MAX_VALUE, TemperatureStatistic.MIN);
+
+        assertEquals(6, total.getCount());
+        assertEquals(-5.0, total.getValue());
+        assertNull(total.getYear());
+        assertNull(statistics.total(2020, 2020, TemperatureStatistic.MIN));
+    }
+
+    @Test
+    public void testStatisticsAreNotAffectedByLaterReadings() {
+        TemperatureAggregates aggregates = new TemperatureAggregates();
+        aggregates.onRow("Szczecin", "2019", 3, 100);
+        Map<String, TemperatureAccumulator> annualData = aggregates.getCities().get("Szczecin");
+        CityStatistics statistics = CityStatistics.of(annualData);
+
+        aggregates.onRow("Szczecin", "2019", 3, 300);
+
+        assertEquals(1, statistics.query(2019, 2019, TemperatureStatistic.COUNT, false).get(0).getCount());
+    }
+
+    private static CityStatistics sampleStatistics() {
+        TemperatureAggregates aggregates = new TemperatureAggregates();
+        aggregates.onRow("Szczecin", "2019", 1, 100);
+        aggregates.onRow("Szczecin", "2019", 7, 100);
+        aggregates.onRow("Szczecin", "2019", 7, 400);
+        aggregates.onRow("Szczecin", "2018", 5, 1000);
+        aggregates.onRow("Szczecin", "2021", 2, -500);
+        aggregates.onRow("Szczecin", "2021", 2, -400);
+        return CityStatistics.of(aggregates.getCities().get("Szczecin"));
+    }
+}
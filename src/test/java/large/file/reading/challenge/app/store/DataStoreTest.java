@@ -0,0 +1,225 @@
+package large.file.reading.challenge.app.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import large.file.reading.challenge.app.aggregate.TemperatureStatistic;
+import large.file.reading.challenge.app.cluster.ClusterPartitioning;
+import large.file.reading.challenge.app.dto.AnnualAverageTemperatureDTO;
+import large.file.reading.challenge.app.service.CsvFileDataLoaderService;
+import large.file.reading.challenge.app.service.LoadProgress;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataStoreTest {
+
+    private static final List<String> CITIES = List.of("Gdańsk", "Kraków", "Poznań", "Warszawa", "Wrocław", "Łódź");
+
+    @Test
+    public void testGetDataNeverMissesDuringReload() throws Exception {
+        DataStore dataStore = new DataStore();
+        CsvFileDataLoaderService csvFileDataLoaderService = new CsvFileDataLoaderService(dataStore, new LoadProgress(), new ClusterPartitioning());
+        ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", "src/test/resources/test.csv");
+        ReflectionTestUtils.invokeMethod(csvFileDataLoaderService, "loadCsvData");
+
+        AtomicBoolean reloading = new AtomicBoolean(true);
+        AtomicLong misses = new AtomicLong();
+        AtomicLong reads = new AtomicLong();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> {
+                while (reloading.get()) {
+                    for (String city : CITIES) {
+                        List<AnnualAverageTemperatureDTO> data = dataStore.getData(city);
+                        if (data == null || data.size() != 6) {
+                            misses.incrementAndGet();
+                        }
+                        reads.incrementAndGet();
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        long initialVersion = dataStore.getSnapshot().getVersion();
+        for (int i = 0; i < 20; i++) {
+            ReflectionTestUtils.invokeMethod(csvFileDataLoaderService, "loadCsvData");
+        }
+        reloading.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertEquals(initialVersion + 20, dataStore.getSnapshot().getVersion());
+        assertTrue(reads.get() > 0);
+        assertEquals(0, misses.get());
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByLaterUpdates() {
+        DataStore dataStore = new DataStore();
+        dataStore.addData("Szczecin", List.of(new AnnualAverageTemperatureDTO("2018", 19.5)));
+        DataSnapshot snapshot = dataStore.getSnapshot();
+
+        dataStore.remove("Szczecin");
+
+        assertNotNull(snapshot.getData("Szczecin"));
+        assertNull(dataStore.getData("Szczecin"));
+        assertTrue(dataStore.getSnapshot().getVersion() > snapshot.getVersion());
+    }
+
+    @Test
+    public void testJsonIsSerializedWithGivenObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        DataStore dataStore = new DataStore(objectMapper);
+        dataStore.publish(Map.of("Szczecin", List.of(new AnnualAverageTemperatureDTO("2018", 19.5))));
+
+        assertEquals("{\"city\":\"Szczecin\",\"data\":[{\"year\":\"2018\",\"average_temperature\":19.5}]}",
+                new String(dataStore.getSnapshot().getJson("Szczecin"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testJsonIsSerializedOncePerLoad() {
+        DataStore dataStore = new DataStore();
+        List<AnnualAverageTemperatureDTO> szczecin = List.of(new AnnualAverageTemperatureDTO("2018", 19.5));
+        dataStore.publish(Map.of("Szczecin", szczecin));
+        DataSnapshot first = dataStore.getSnapshot();
+
+        assertEquals("{\"city\":\"Szczecin\",\"data\":[{\"year\":\"2018\",\"averageTemperature\":19.5}]}",
+                new String(first.getJson("Szczecin"), StandardCharsets.UTF_8));
+        assertNull(first.getJson("Łódź"));
+
+        dataStore.addData("Łódź", List.of(new AnnualAverageTemperatureDTO("2018", 9.75)));
+        DataSnapshot second = dataStore.getSnapshot();
+
+        assertSame(first.getJson("Szczecin"), second.getJson("Szczecin"));
+        assertEquals("{\"city\":\"Łódź\",\"data\":[{\"year\":\"2018\",\"averageTemperature\":9.75}]}",
+                new String(second.getJson("Łódź"), StandardCharsets.UTF_8));
+        assertNotEquals(first.getETag(), second.getETag());
+    }
+
+    @Test
+    public void testReloadKeepsDataAndReusesUnchangedJson() {
+        DataStore dataStore = new DataStore();
+        dataStore.publish(Map.of(
+                "Szczecin", List.of(new AnnualAverageTemperatureDTO("2019", 9.5), new AnnualAverageTemperatureDTO("2018", 19.5)),
+                "Łódź", List.of(new AnnualAverageTemperatureDTO("2018", 9.75))));
+        DataSnapshot first = dataStore.getSnapshot();
+
+        dataStore.publish(Map.of(
+                "Szczecin", List.of(new AnnualAverageTemperatureDTO("2019", 9.5), new AnnualAverageTemperatureDTO("2018", 19.5)),
+                "Łódź", List.of(new AnnualAverageTemperatureDTO("2018", 10.0))));
+        DataSnapshot second = dataStore.getSnapshot();
+
+        assertSame(first.getJson("Szczecin"), second.getJson("Szczecin"));
+        assertNotSame(first.getJson("Łódź"), second.getJson("Łódź"));
+        List<AnnualAverageTemperatureDTO> szczecin = dataStore.getData("Szczecin");
+        assertEquals(2, szczecin.size());
+        assertEquals("2019", szczecin.get(0).getYear());
+        assertEquals(9.5, szczecin.get(0).getAverageTemperature());
+        assertEquals("2018", szczecin.get(1).getYear());
+        assertEquals(10.0, dataStore.getData("Łódź").get(0).getAverageTemperature());
+        assertEquals(List.of("Szczecin", "Łódź"), dataStore.getAllStoredCities().sorted().toList());
+    }
+
+    @Test
+    public void testTieredStoreAnswersLikeHeapStore(@TempDir Path directory) {
+        DataStore heapStore = new DataStore();
+        DataStore tieredStore = new DataStore();
+        ReflectionTestUtils.setField(tieredStore, "tieredDirectory", directory.toString());
+        for (DataStore dataStore : List.of(heapStore, tieredStore)) {
+            CsvFileDataLoaderService csvFileDataLoaderService = new CsvFileDataLoaderService(dataStore, new LoadProgress(), new ClusterPartitioning());
+            ReflectionTestUtils.setField(csvFileDataLoaderService, "csvFilePath", "src/test/resources/test.csv");
+            ReflectionTestUtils.invokeMethod(csvFileDataLoaderService, "loadCsvData");
+        }
+        DataSnapshot heap = heapStore.getSnapshot();
+        DataSnapshot tiered = tieredStore.getSnapshot();
+        assertEquals(0, tiered.getHotTierBytes());
+        assertTrue(tiered.getMemoryFootprint() < heap.getMemoryFootprint());
+
+        for (int i = 0; i < 2; i++) {
+            for (String city : CITIES) {
+                assertArrayEquals(heap.getJson(city), tiered.getJson(city));
+                List<AnnualAverageTemperatureDTO> heapData = heap.getData(city);
+                List<AnnualAverageTemperatureDTO> tieredData = tiered.getData(city);
+                assertEquals(heapData.size(), tieredData.size());
+                for (int row = 0; row < heapData.size(); row++) {
+                    assertEquals(heapData.get(row).getYear(), tieredData.get(row).getYear());
+                    assertEquals(heapData.get(row).getAverageTemperature(), tieredData.get(row).getAverageTemperature());
+                }
+                assertEquals(heap.getStatistics(city).total(0, 9999, TemperatureStatistic.VARIANCE).getValue(),
+                        tiered.getStatistics(city).total(0, 9999, TemperatureStatistic.VARIANCE).getValue());
+            }
+        }
+        assertArrayEquals(heap.getJson("lodz"), tiered.getJson("lodz"));
+        assertNull(tiered.getJson("Londyn"));
+        assertEquals(heap.getRowCount(), tiered.getRowCount());
+        assertEquals(heap.getRankings().getNationalAverages().size(), tiered.getRankings().getNationalAverages().size());
+
+        CacheStats stats = tieredStore.getHotTierStats();
+        assertEquals(CITIES.size(), stats.missCount());
+        assertEquals(CITIES.size() * 3 * 2 + 1, stats.requestCount());
+        assertTrue(tiered.getHotTierBytes() > 0);
+        assertEquals(0, heapStore.getHotTierStats().requestCount());
+    }
+
+    @Test
+    public void testForEachCityReadsColdTierWithoutCaching(@TempDir Path directory) throws Exception {
+        DataStore dataStore = new DataStore();
+        ReflectionTestUtils.setField(dataStore, "tieredDirectory", directory.toString());
+        dataStore.publish(Map.of(
+                "Szczecin", List.of(new AnnualAverageTemperatureDTO("2018", 19.5)),
+                "Łódź", List.of(new AnnualAverageTemperatureDTO("2019", 9.75), new AnnualAverageTemperatureDTO("2020", 10.0))));
+        DataSnapshot snapshot = dataStore.getSnapshot();
+
+        Map<String, List<AnnualAverageTemperatureDTO>> visited = new HashMap<>();
+        snapshot.forEachCity((city, json, data) -> {
+            assertTrue(new String(json, StandardCharsets.UTF_8).contains(city));
+            visited.put(city, data);
+        });
+
+        assertEquals(Set.of("Szczecin", "Łódź"), visited.keySet());
+        assertEquals(2, visited.get("Łódź").size());
+        assertEquals(9.75, visited.get("Łódź").get(0).getAverageTemperature());
+        assertEquals(0, dataStore.getHotTierStats().requestCount());
+        assertEquals(0, snapshot.getHotTierBytes());
+    }
+
+    @Test
+    public void testHotTierStaysWithinBudget(@TempDir Path directory) {
+        DataStore dataStore = new DataStore();
+        ReflectionTestUtils.setField(dataStore, "tieredDirectory", directory.toString());
+        ReflectionTestUtils.setField(dataStore, "hotTierMaxBytes", 4096L);
+        Map<String, List<AnnualAverageTemperatureDTO>> data = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            data.put("City " + i, List.of(new AnnualAverageTemperatureDTO("2018", i), new AnnualAverageTemperatureDTO("2019", -i)));
+        }
+        dataStore.publish(data);
+        dataStore.addData("Szczecin", List.of(new AnnualAverageTemperatureDTO("2018", 19.5)));
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 200; i++) {
+                assertEquals(-i, dataStore.getData("City " + i).get(1).getAverageTemperature());
+            }
+        }
+
+        assertEquals(19.5, dataStore.getData("Szczecin").get(0).getAverageTemperature());
+        assertEquals(201, dataStore.getSnapshot().getCityCount());
+        assertTrue(dataStore.getSnapshot().getHotTierBytes() <= 4096);
+        assertTrue(dataStore.getHotTierStats().evictionCount() > 0);
+    }
+}
@@ -0,0 +1,104 @@
+package large.file.reading.challenge.app.store;
+
+import large.file.reading.challenge.app.aggregate.TemperatureAggregates;
+import large.file.reading.challenge.app.dto.CityRankingDTO;
+import large.file.reading.challenge.app.dto.NationalAverageTemperatureDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TemperatureRankingsTest {
+
+    @Test
+    public void testTopCities() {
+        TemperatureRankings rankings = sampleRankings();
+
+        List<CityRankingDTO> warmest = rankings.top("2021", 2, true);
+        List<CityRankingDTO> coldest = rankings.top("2021", 10, false);
+
+        assertEquals(2, warmest.size());
+        assertEquals("Kraków", warmest.get(0).getCity());
+        assertEquals(1, warmest.get(0).getRank());
+        assertEquals(15.0, warmest.get(0).getAverageTemperature());
+        assertEquals("Gdańsk", warmest.get(1).getCity());
+        assertEquals(3, coldest.size());
+        assertEquals("Łódź", coldest.get(0).getCity());
+        assertEquals(3, coldest.get(0).getRank());
+        assertEquals(3, rankings.getCityCount("2021"));
+        assertTrue(rankings.top("1999", 10, true).isEmpty());
+    }
+
+    @Test
+    public void testRankOfCity() {
+        TemperatureRankings rankings = sampleRankings();
+
+        assertEquals(2, rankings.rankOf("Gdańsk", "2021").getRank());
+        assertEquals(1, rankings.rankOf("Gdańsk", "2020").getRank());
+        assertNull(rankings.rankOf("Kraków", "2020"));
+    }
+
+    @Test
+    public void testCitiesWithSameAverageAreRankedByName() {
+        TemperatureAggregates aggregates = new TemperatureAggregates();
+        aggregates.onRow("Radom", "2021", 6, 1001);
+        aggregates.onRow("Opole", "2021", 6, 999);
+        aggregates.onRow("Kielce", "2021", 6, 1000);
+        aggregates.onRow("Kielce", "2021", 7, 1001);
+
+        TemperatureRankings rankings = rankingsOf(aggregates);
+
+        List<CityRankingDTO> warmest = rankings.top("2021", 10, true);
+        assertEquals("Kielce", warmest.get(0).getCity());
+        assertEquals(10.01, warmest.get(0).getAverageTemperature());
+        assertEquals("Radom", warmest.get(1).getCity());
+        assertEquals(2, rankings.rankOf("Radom", "2021").getRank());
+    }
+
+    @Test
+    public void testCountRankedBefore() {
+        TemperatureRankings rankings = sampleRankings();
+
+        assertEquals(0, rankings.countRankedBefore("2021", 20.0, "Warszawa"));
+        assertEquals(1, rankings.countRankedBefore("2021", 10.0, "Bydgoszcz"));
+        assertEquals(2, rankings.countRankedBefore("2021", 10.0, "Opole"));
+        assertEquals(3, rankings.countRankedBefore("2021", -1.0, "Opole"));
+        assertEquals(0, rankings.countRankedBefore("1999", 10.0, "Opole"));
+    }
+
+    @Test
+    public void testNationalAverages() {
+        List<NationalAverageTemperatureDTO> nationalAverages = sampleRankings().getNationalAverages();
+
+        assertEquals(2, nationalAverages.size());
+        NationalAverageTemperatureDTO year2021 = nationalAverages.get(1);
+        assertEquals("2021", year2021.getYear());
+        assertEquals(3, year2021.getCities());
+        assertEquals(4, year2021.getCount());
+        assertEquals(10.0, year2021.getAverageTemperature());
+        assertEquals(5.0, year2021.getMinTemperature());
+        assertEquals(15.0, year2021.getMaxTemperature());
+        assertEquals(40.0, year2021.getSumTemperature());
+    }
+
+    private static TemperatureRankings sampleRankings() {
+        TemperatureAggregates aggregates = new TemperatureAggregates();
+        aggregates.onRow("Kraków", "2021", 6, 1500);
+        aggregates.onRow("Gdańsk", "2021", 6, 1000);
+        aggregates.onRow("Gdańsk", "2021", 7, 1000);
+        aggregates.onRow("Łódź", "2021", 6, 500);
+        aggregates.onRow("Gdańsk", "2020", 6, 800);
+        aggregates.onRow("Łódź", "2020", 6, 700);
+
+        return rankingsOf(aggregates);
+    }
+
+    private static TemperatureRankings rankingsOf(TemperatureAggregates aggregates) {
+        Map<String, CityStatistics> statistics = new HashMap<>();
+        aggregates.getCities().forEach((city, annualData) -> statistics.put(city, CityStatistics.of(annualData)));
+        return TemperatureRankings.of(statistics);
+    }
+}